@@ -6,8 +6,14 @@ import java.awt.event.KeyListener;
 import doharm.gui.view.MainWindow;
 import doharm.logic.AbstractGame;
 import doharm.logic.camera.Camera;
+import doharm.logic.entities.characters.players.HumanPlayer;
 import doharm.logic.entities.items.usable.UsableItem;
 
+/**
+ * Listens to the keyboard on the Swing thread, and queues what the keys do to the world
+ * to be done at the start of the next tick (see AbstractGame.queueInput()).
+ */
+
 public class KeyboardManager implements KeyListener
 {
 	private MainWindow window;
@@ -27,8 +33,17 @@ public class KeyboardManager implements KeyListener
 		
 		if (altDown)
 		{
-			if (game.getWorld().getHumanPlayer() != null)
-				game.getWorld().getHumanPlayer().getTaunts().taunt(e.getKeyChar());
+			final char key = e.getKeyChar();
+			game.queueInput(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					HumanPlayer player = game.getWorld().getHumanPlayer();
+					if (player != null)
+						player.getTaunts().taunt(key);
+				}
+			});
 		}
 	}
 
@@ -39,19 +54,35 @@ public class KeyboardManager implements KeyListener
 		{
 			if (e.getKeyCode() == i)
 			{
+				final int slot = i-KeyEvent.VK_1;
 				if (!jDown && !altDown)
 				{
-					if (game.getWorld().getHumanPlayer() != null)
+					game.queueInput(new Runnable()
 					{
-						UsableItem item = game.getWorld().getHumanPlayer().getInventory().getBelt().getItem(i-KeyEvent.VK_1);
-						if (item != null)
-							game.getWorld().getHumanPlayer().useItem(item);
-					}
+						@Override
+						public void run()
+						{
+							HumanPlayer player = game.getWorld().getHumanPlayer();
+							if (player == null)
+								return;
+							UsableItem item = player.getInventory().getBelt().getItem(slot);
+							if (item != null)
+								player.useItem(item);
+						}
+					});
 				}
 				else
 				{
-					if (game.getWorld().getHumanPlayer() != null)
-						game.getWorld().getHumanPlayer().joinAlliance(i-KeyEvent.VK_1);
+					game.queueInput(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							HumanPlayer player = game.getWorld().getHumanPlayer();
+							if (player != null)
+								player.joinAlliance(slot);
+						}
+					});
 				}
 			}
 		}
@@ -63,8 +94,19 @@ public class KeyboardManager implements KeyListener
 			break;
 			
 		case KeyEvent.VK_F9:
-			if (altDown && game.getWorld().getHumanPlayer() != null) //test suicide method
-				game.getWorld().getHumanPlayer().die(game.getWorld().getHumanPlayer());
+			if (altDown) //test suicide method
+			{
+				game.queueInput(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						HumanPlayer player = game.getWorld().getHumanPlayer();
+						if (player != null)
+							player.die(player);
+					}
+				});
+			}
 			break;
 		case KeyEvent.VK_F11:
 			window.toggleSize();
@@ -95,10 +137,24 @@ public class KeyboardManager implements KeyListener
 		switch(e.getKeyCode())
 		{
 		case KeyEvent.VK_LEFT: case KeyEvent.VK_A:
-			camera.turnLeft();
+			game.queueInput(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					camera.turnLeft();
+				}
+			});
 			break;
 		case KeyEvent.VK_RIGHT: case KeyEvent.VK_D:
-			camera.turnRight();
+			game.queueInput(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					camera.turnRight();
+				}
+			});
 			break;
 		case KeyEvent.VK_ALT:
 			altDown = false;
@@ -9,6 +9,10 @@ import doharm.logic.world.World;
 import doharm.logic.world.tiles.Tile;
 import doharm.rendering.WorldRenderer;
 
+/**
+ * Listens to the mouse on the Swing thread, and queues what it does to the world
+ * to be done at the start of the next tick (see AbstractGame.queueInput()).
+ */
 public class MouseManager implements MouseListener, MouseMotionListener
 {
 	private AbstractGame game;
@@ -25,23 +29,34 @@ public class MouseManager implements MouseListener, MouseMotionListener
 	
 	private void hover(int x, int y) 
 	{
-		int rgb = renderer.getPickColourAt(x, y);
+		final Tile tile = renderer.getTileAt(x, y);
 		
-		if (rgb == 0)
+		if (tile == null)
 			return; //outside area
 		
-		World world = game.getWorld();
-		
-		Tile tile = world.getTile(rgb);
-		
-		world.getHumanPlayer().hover(tile);
+		game.queueInput(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				World world = game.getWorld();
+				
+				world.getHumanPlayer().hover(tile);
+			}
+		});
 	}
 	
-	private void click(int button, boolean down)
+	private void click(final int button, final boolean down)
 	{
-		
-		World world = game.getWorld();
-		world.getHumanPlayer().click(button,down);
+		game.queueInput(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				World world = game.getWorld();
+				world.getHumanPlayer().click(button,down);
+			}
+		});
 	}
 	
 	
@@ -55,12 +55,19 @@ public class LevelUpMenu extends JFrame {
 		commit.addActionListener(new ActionListener() {			
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				for (int i = 0; i< changes.length; ++i){
-					while (changes[i]>0){
-						player.getCharacterClass().addPoint(AttributeType.values()[i]);
-						--changes[i];
+				//spent at the start of the next tick, not while one is running (see AbstractGame.queueInput())
+				final int[] spent = changes.clone();
+				player.getWorld().getGame().queueInput(new Runnable() {
+					@Override
+					public void run() {
+						for (int i = 0; i< spent.length; ++i){
+							for (int j = 0; j < spent[i]; ++j)
+								player.getCharacterClass().addPoint(AttributeType.values()[i]);
+						}
 					}
-				}
+				});
+				for (int i = 0; i< changes.length; ++i)
+					changes[i] = 0;
 				LevelUpMenu.this.dispose();
 			}
 		});
@@ -1,35 +1,87 @@
 package doharm.gui.view;
 
-import java.awt.Dimension;
+import java.awt.Component;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 
 import javax.swing.JPanel;
 
 import doharm.logic.AbstractGame;
+import doharm.rendering.AcceleratedCanvas;
+import doharm.rendering.RenderThread;
 import doharm.rendering.WorldRenderer;
 
+/**
+ * Shows the world, with the HUD and menus on top of it.
+ * 
+ * With -Ddoharm.accelerated=true the frames are shown through an AcceleratedCanvas filling the panel,
+ * otherwise they are painted by Swing.
+ */
 public class WorldCanvas extends JPanel
 {
 	private static final long serialVersionUID = 1L;
+	private static final boolean ACCELERATED = Boolean.getBoolean("doharm.accelerated");
+	
 	private WorldRenderer renderer;
 	private AbstractGame game;
+	private RenderThread renderThread;
+	private AcceleratedCanvas screen; //null if Swing paints the frames
 	
 	public WorldCanvas(AbstractGame game, WorldRenderer renderer)
 	{
 		super();
 		this.game = game;
 		this.renderer = renderer;
+		if (ACCELERATED)
+		{
+			screen = new AcceleratedCanvas();
+			add(screen);
+		}
+	}
+	
+	/**
+	 * Start drawing frames once the canvas is on screen.
+	 */
+	@Override
+	public void addNotify()
+	{
+		super.addNotify();
+		renderThread = new RenderThread(renderer, screen != null ? screen : this);
+		renderThread.start();
+	}
+	
+	@Override
+	public void removeNotify()
+	{
+		renderThread.finish();
+		super.removeNotify();
+	}
+	
+	/**
+	 * Everything added after the screen goes in front of it.
+	 */
+	@Override
+	protected void addImpl(Component comp, Object constraints, int index)
+	{
+		if (screen != null && comp != screen && index == -1)
+			index = getComponentCount() - 1;
+		super.addImpl(comp, constraints, index);
+	}
+	
+	@Override
+	public void doLayout()
+	{
+		super.doLayout();
+		if (screen != null)
+			screen.setBounds(0, 0, getWidth(), getHeight());
 	}
 	
 	@Override 
 	public void paintComponent(Graphics g)
 	{
 		super.paintComponent(g);
-		Dimension canvasSize = new Dimension(getWidth(),getHeight());		
-		game.run();
-		renderer.redraw(canvasSize);
-		g.drawImage(renderer.getImage(), 0,0,canvasSize.width,canvasSize.height,null);
+		//the frame has already been drawn by the render thread, the game is run by the clock.
+		if (screen == null)
+			renderer.paint(g, getWidth(), getHeight());
 		//paintChildren(g);
 	}
 	
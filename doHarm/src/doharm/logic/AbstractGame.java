@@ -1,10 +1,14 @@
 package doharm.logic;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import doharm.logic.camera.Camera;
 import doharm.logic.entities.characters.Character;
 import doharm.logic.time.Clock;
 import doharm.logic.world.World;
 import doharm.net.NetworkMode;
+import doharm.rendering.RenderSnapshot;
 
 /**
  * 
@@ -19,17 +23,21 @@ public abstract class AbstractGame
 	private boolean ended;
 	
 	private Clock clock;
+	private volatile RenderSnapshot renderSnapshot;
+	private Queue<Runnable> input; //what the player has done since the last tick, see queueInput()
 	
 	protected AbstractGame(NetworkMode mode)
+	{
+		this(mode, "world1");
+	}
+	
+	/**
+	 * @param worldName the world to load, from res/worlds (not used by a client, which is sent the world).
+	 */
+	protected AbstractGame(NetworkMode mode, String worldName)
 	{
 		this.networkMode = mode;
 		
-		
-
-		String worldName = "world1";
-
-		
-		
 		if (networkMode != NetworkMode.CLIENT)
 			world = new World(this, worldName, networkMode);
 		else
@@ -42,6 +50,8 @@ public abstract class AbstractGame
 		
 		clock = new Clock(this);
 		ended = false;
+		input = new ConcurrentLinkedQueue<Runnable>();
+		publishRenderSnapshot();
 	}
 	
 	public Camera getCamera()
@@ -59,7 +69,41 @@ public abstract class AbstractGame
 		if (ended)
 			return;
 		
+		for (Runnable action = input.poll(); action != null; action = input.poll())
+			action.run();
 		world.process();
+		publishRenderSnapshot();
+	}
+	
+	/**
+	 * Do something to the world at the start of the next tick, on the clock's thread.
+	 * The keyboard and mouse are listened to on the Swing thread, which mustn't change the world
+	 * while a tick is changing it too, so everything the player does goes through here.
+	 * Can be called from any thread.
+	 */
+	public void queueInput(Runnable action)
+	{
+		input.add(action);
+	}
+	
+	/**
+	 * Copy the world for the renderer, once the tick has finished changing it.
+	 * Nothing is copied when there is no camera to draw from (ie. on the server).
+	 * Can also be called between ticks to draw a change straight away, eg. the camera being moved.
+	 */
+	public void publishRenderSnapshot()
+	{
+		if (camera != null && world != null)
+			renderSnapshot = new RenderSnapshot(this, renderSnapshot);
+	}
+	
+	/**
+	 * @return the world as it was at the end of the last tick, for drawing.
+	 * Null if there isn't one yet.
+	 */
+	public RenderSnapshot getRenderSnapshot()
+	{
+		return renderSnapshot;
 	}
 
 	public World getWorld()
@@ -22,7 +22,6 @@ public class ClientGame extends AbstractGame
 	public ClientGame(MainWindow window, Client client)
 	{
 		super(NetworkMode.CLIENT);
-		getClock().setWindow(window);
 		this.client = client;
 		this.window = window;
 	}
@@ -74,13 +74,35 @@ public class Camera
 	 */
 	public Vector getRenderPosition() 
 	{
-		renderPosition.setX(position.getX());
-		renderPosition.setY(position.getY());
+		return getRenderPosition(position.getX(), position.getY());
+	}
+	
+	/**
+	 * The render position the camera would have if it was at (x,y) instead,
+	 * eg. part of the way between where it was last tick and where it is now.
+	 * 
+	 * @return the render position of the camera
+	 */
+	public Vector getRenderPosition(float x, float y) 
+	{
+		return getRenderPosition(x, y, direction);
+	}
+	
+	/**
+	 * The render position the camera would have at (x,y) facing the given direction,
+	 * eg. the way it was facing when the frame being drawn was copied from the world.
+	 * 
+	 * @return the render position of the camera
+	 */
+	public Vector getRenderPosition(float x, float y, CameraDirection direction) 
+	{
+		renderPosition.setX(x);
+		renderPosition.setY(y);
 		renderPosition.divide(tileWidth, tileHeight);
 		
 		
 		
-	    RenderUtil.convertCoordsToIso(renderPosition.getX(), renderPosition.getY(), 0, this, renderPosition);
+	    RenderUtil.convertCoordsToIso(renderPosition.getX(), renderPosition.getY(), 0, direction, renderPosition);
 		
 		
 		renderPosition.addX(-canvasDimensions.width/2);
@@ -18,16 +18,16 @@ import doharm.logic.world.tiles.Tile;
 public abstract class AbstractEntity
 {
 	
-	private Vector position;
-	private Vector oldPosition;
-	private Vector velocity;
+	private static final float FRICTION = 0.6f;
+	
+	//position, velocity, angle etc. are kept in the store
+	private EntityStore store;
+	private int slot;
 	private Dimension size;
-	/** Angle this entity is facing */
-	private float angle;
-	private float friction = 0.6f;
 	
 	private Layer currentLayer;
 	private Tile currentTile;
+	private Tile layerTransition; //the tile on another layer we are about to step onto, via a ramp.
 	
 	private int id; //unique id used for networking
 	private World world;
@@ -36,10 +36,13 @@ public abstract class AbstractEntity
 	
 	private boolean fromNetwork;
 	private boolean alive;
+	private EntityFactory registry; //the factory keeping track of whether we are alive or dead
+	private int registryIndex; //where we are in the registry's list of entities of our type
 	//private Vector renderPos;
 	private static BufferedImage unknownImage;
 	private BufferedImage image;
 	private static Map<String, BufferedImage> imageCache;
+	private static float largestDiagonal; //see getLargestDiagonal()
 	
 	
 	static
@@ -52,8 +55,10 @@ public abstract class AbstractEntity
 	public AbstractEntity(EntityType entityType)
 	{
 		this.entityType = entityType;
-		size = new Dimension(32,32);
-		reset();
+		setSize(new Dimension(32,32));
+		store = EntityStore.getUnplaced();
+		slot = store.add(this);
+		store.setFriction(slot, FRICTION);
 	}
 	
 	
@@ -76,6 +81,15 @@ public abstract class AbstractEntity
 	public void setSize(Dimension size)
 	{
 		this.size = size;
+		largestDiagonal = Math.max(largestDiagonal, (float)Math.hypot(size.width, size.height));
+	}
+	
+	/**
+	 * @return the diagonal of the biggest entity there has been, ie. the furthest the mouse can be from an entity and still be over it.
+	 */
+	public static float getLargestDiagonal()
+	{
+		return largestDiagonal;
 	}
 	
 	public boolean fromNetwork()
@@ -93,26 +107,70 @@ public abstract class AbstractEntity
 		return alive;
 	}
 	
-	private void reset() 
+	/**
+	 * @return how brightly this entity lights up the tiles around it, 0 if it doesn't give off light.
+	 */
+	public float getLightIntensity()
 	{
-		position = new Vector();
-		velocity = new Vector();
-		oldPosition = new Vector();
-		angle = 0;
+		return 0;
 	}
-
+	
 	public void spawn(Tile spawnTile)
 	{
-		reset();
+		store.reset(slot);
 		setPosition(spawnTile.getX(),spawnTile.getY(), spawnTile.getLayer());
 		
-		angle = 0;
-		alive = true;
+		store.setAngle(slot, 0);
+		setAlive(true);
 	}
 	
 	public void die()
 	{
-		alive = false;
+		setAlive(false);
+	}
+	
+	private void setAlive(boolean alive)
+	{
+		if (this.alive == alive)
+			return;
+		this.alive = alive;
+		store.setMoving(slot, alive);
+		if (registry != null)
+			registry.aliveChanged(this);
+	}
+	
+	/**
+	 * Called when the entity is taken out of the world for good, to stop anything it has scheduled.
+	 */
+	protected void removed()
+	{
+		if (store == EntityStore.REMOVED)
+			return; //the entity factory and the factory for its type both remove it
+		
+		//anything still holding on to the entity can keep reading it, but nothing needs what it reads
+		store.remove(slot);
+		store = EntityStore.REMOVED;
+		slot = 0;
+	}
+	
+	EntityFactory getRegistry()
+	{
+		return registry;
+	}
+	
+	void setRegistry(EntityFactory registry)
+	{
+		this.registry = registry;
+	}
+	
+	int getRegistryIndex()
+	{
+		return registryIndex;
+	}
+	
+	void setRegistryIndex(int registryIndex)
+	{
+		this.registryIndex = registryIndex;
 	}
 	
 	
@@ -150,9 +208,15 @@ public abstract class AbstractEntity
 	{
 		
 		
-		position.set(x, y);
+		store.setPosition(slot, x, y);
 		currentLayer = layer;
-		Tile tile = currentLayer.getTileAt(position.getX(), position.getY());
+		Tile tile = currentLayer.getTileAt(x, y);
+		
+		if (layerTransition != null && tile != null && tile.getRow() == layerTransition.getRow() && tile.getCol() == layerTransition.getCol())
+		{
+			tile = layerTransition;
+			layerTransition = null;
+		}
 		
 		if (currentTile == tile || tile == null)
 			return;
@@ -160,7 +224,7 @@ public abstract class AbstractEntity
 		if (!tile.isWalkable())
 		{
 			System.out.println("Invalid.");
-			setPosition(oldPosition.getX(), oldPosition.getY(), layer);
+			setPosition(store.getOldX(slot), store.getOldY(slot), layer);
 			return;
 		}
 		
@@ -170,8 +234,9 @@ public abstract class AbstractEntity
 		this.currentTile = tile;
 		currentLayer = currentTile.getLayer();
 		currentTile.addEntity(this);
+		currentLayer.getWorld().getSpatialIndex().move(this, currentTile);
 		
-		oldPosition.set(position);
+		store.savePosition(slot);
 		
 		/*float row = y / tile.getHeight();
 		float col = x / tile.getWidth();
@@ -201,64 +266,105 @@ public abstract class AbstractEntity
 		return new Dimension(size);
 	}
 	
+	/**
+	 * @return a copy of the position. Use getX() and getY() where possible, they don't make a new Vector.
+	 */
 	public Vector getPosition() 
 	{
-		return new Vector(position);
+		return new Vector(getX(), getY());
 	}
 	
 	
 
+	/**
+	 * @return a copy of the velocity. Use getVelocityX() and getVelocityY() where possible.
+	 */
 	public Vector getVelocity() 
 	{
-		return new Vector(velocity);
+		return new Vector(store.getVelocityX(slot), store.getVelocityY(slot));
 	}
 	public void setVelocity(Vector velocity)
 	{
-		this.velocity.set(velocity);
+		setVelocity(velocity.getX(), velocity.getY());
+	}
+	public void setVelocity(float x, float y)
+	{
+		store.setVelocity(slot, x, y);
+	}
+	public float getVelocityX()
+	{
+		return store.getVelocityX(slot);
+	}
+	public float getVelocityY()
+	{
+		return store.getVelocityY(slot);
 	}
 	
+	public float getSpeed()
+	{
+		float x = store.getVelocityX(slot);
+		float y = store.getVelocityY(slot);
+		return (float)Math.sqrt(x*x + y*y);
+	}
 	
 
+	/** Angle this entity is facing */
 	public float getAngle() 
 	{
-		return angle;
+		return store.getAngle(slot);
 	}
 	public void setAngle(float angle)
 	{
-		this.angle = angle;
+		store.setAngle(slot, angle);
 	}
 	
 	
 	
 	
+	/**
+	 * Called every tick, before the entity is moved. 
+	 * The world moves all the entities at once afterwards, using the EntityStore.
+	 */
 	public void process()
+	{
+	}
+	
+	/**
+	 * Called once the store has moved the entity, to keep it on the right tile.
+	 */
+	public void updateTile()
 	{
 		if (!alive)
 			return;
 		
-		position.add(velocity.getX(),velocity.getY()*0.5f); //move half speed up/down due to isometric view
-		
-		//Tile newTile = currentLayer.getTileAt(position.getX()+velocity.getX(),position.getY()+velocity.getY());
-
-
-		
-		setPosition(position.getX(), position.getY(), currentTile.getLayer());
-		
-		
-		
-		
-		velocity.multiply(friction);
-		
-		if (velocity.getLength() > 0)
-			angle = (float) Math.atan2(velocity.getY(), velocity.getX());
-		else
-			angle = 0;
-		
+		setPosition(getX(), getY(), currentTile.getLayer());
+	}
+	
+	/**
+	 * Move this entity on its own, for when the rest of the world isn't being processed (ie. on a client).
+	 */
+	public void move()
+	{
+		if (!alive)
+			return;
+		store.integrate(slot);
+		updateTile();
+		store.applyFriction(slot);
 	}
 	
 	public float distanceTo(AbstractEntity other)
 	{
-		return (float)Math.hypot(other.position.getX() - position.getX(), other.position.getY() - position.getY());
+		return (float)Math.sqrt(distanceSquaredTo(other));
+	}
+	
+	/**
+	 * @return the distance squared, which is cheaper to work out. Use it for comparing distances.
+	 */
+	public float distanceSquaredTo(AbstractEntity other)
+	{
+		float x = other.getX() - getX();
+		float y = other.getY() - getY();
+		return x*x + y*y;
 	}
 	
 	
@@ -272,10 +378,52 @@ public abstract class AbstractEntity
 	{
 		return currentTile;
 	}
+	
+	/**
+	 * Tiles on different layers share the same x,y coordinates, so tell the entity which
+	 * layer to end up on when it walks off a ramp (or onto one from above).
+	 * @param tile the linked tile on another layer, or null to stay on the current layer.
+	 */
+	public void setLayerTransition(Tile tile)
+	{
+		layerTransition = tile;
+	}
 
 	public void setWorld(World world) 
 	{
 		this.world = world;
+		if (world != null && world.getEntityStore() != store)
+		{
+			if (store == EntityStore.REMOVED)
+				slot = world.getEntityStore().add(this); //back again, with nothing to bring with it
+			else
+				slot = store.moveTo(slot, world.getEntityStore());
+			store = world.getEntityStore();
+		}
+	}
+	
+	/**
+	 * The store moves entities between slots to keep them packed.
+	 */
+	void setSlot(int slot)
+	{
+		this.slot = slot;
+	}
+	
+	/**
+	 * @return the store holding this entity's position, velocity, angle and health.
+	 */
+	protected EntityStore getStore()
+	{
+		return store;
+	}
+	
+	/**
+	 * @return where this entity is in its store. Can change, so don't keep it.
+	 */
+	protected int getSlot()
+	{
+		return slot;
 	}
 
 	public EntityType getEntityType() 
@@ -284,11 +432,11 @@ public abstract class AbstractEntity
 	}
 
 	public float getX() {
-		return position.getX();
+		return store.getX(slot);
 	}
 	
 	public float getY() {
-		return position.getY();
+		return store.getY(slot);
 	}
 	
 	
@@ -28,12 +28,15 @@ public abstract class AbstractEntityFactory<T extends AbstractEntity>
 	protected void addEntity(T entity, int id, boolean fromNetwork)
 	{
 		entities.put(id, entity);
+		entity.setWorld(world);
 		if (observer != null)
 			observer.addEntity(entity,id, fromNetwork);
 	}
 	protected void removeEntity(T entity)
 	{
-		entities.remove(entity);
+		entities.remove(entity.getID());
+		world.getSpatialIndex().remove(entity);
+		entity.removed();
 		if (observer != null)
 			observer.removeEntity(entity);
 	}
@@ -1,16 +1,27 @@
 package doharm.logic.entities;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import doharm.logic.world.World;
 
+/**
+ * Keeps every entity in the world, whichever factory made it.
+ * 
+ * As well as the map by id, the entities of each EntityType are kept in a dense list with the
+ * alive ones at the front and the dead ones at the back. The lists are kept up to date as entities 
+ * are added, removed, spawned and killed, so each part of the world's tick can go straight to the
+ * entities it needs (eg. dead characters to respawn) instead of checking the type of every entity.
+ */
 public class EntityFactory extends AbstractEntityFactory<AbstractEntity>
 {
 	private IDManager idManager;
 	private Set<AbstractEntity> addedEntities;
 	private Set<AbstractEntity> removedEntities;
+	private TypeList[] typeLists; //indexed by EntityType.ordinal()
 	
 	public EntityFactory(World world, IDManager idManager) 
 	{
@@ -18,6 +29,10 @@ public class EntityFactory extends AbstractEntityFactory<AbstractEntity>
 		this.idManager = idManager;
 		addedEntities = new HashSet<AbstractEntity>();
 		removedEntities = new HashSet<AbstractEntity>();
+		
+		typeLists = new TypeList[EntityType.values().length];
+		for (int i = 0; i < typeLists.length; i++)
+			typeLists[i] = new TypeList();
 	}
 	
 	@Override
@@ -26,6 +41,11 @@ public class EntityFactory extends AbstractEntityFactory<AbstractEntity>
 		super.removeEntity(entity);
 		idManager.freeID(entity.getID());
 		removedEntities.add(entity);
+		if (entity.getRegistry() == this)
+		{
+			typeLists[entity.getEntityType().ordinal()].remove(entity);
+			entity.setRegistry(null);
+		}
 	}
 	@Override
 	public void addEntity(AbstractEntity entity, int id, boolean fromNetwork)
@@ -34,6 +54,65 @@ public class EntityFactory extends AbstractEntityFactory<AbstractEntity>
 		entity.setID(id);
 		entity.setFromNetwork(fromNetwork);
 		addedEntities.add(entity);
+		if (entity.getRegistry() == null)
+		{
+			entity.setRegistry(this);
+			typeLists[entity.getEntityType().ordinal()].add(entity);
+		}
+	}
+	
+	/**
+	 * Called by an entity when it spawns or dies.
+	 */
+	void aliveChanged(AbstractEntity entity)
+	{
+		typeLists[entity.getEntityType().ordinal()].aliveChanged(entity);
+	}
+	
+	public int getNumAlive(EntityType type)
+	{
+		return typeLists[type.ordinal()].numAlive;
+	}
+	
+	public int getNumDead(EntityType type)
+	{
+		TypeList list = typeLists[type.ordinal()];
+		return list.entities.size() - list.numAlive;
+	}
+	
+	/**
+	 * Copy the entities of a type into a list, so that they can be looped over while they spawn, die or are removed.
+	 * @param result the list to fill. Its type must match the type of entity asked for (eg. Character for CHARACTER).
+	 * @param alive true for the entities that are alive, false for the dead ones.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends AbstractEntity> void getEntities(EntityType type, boolean alive, List<T> result)
+	{
+		TypeList list = typeLists[type.ordinal()];
+		int start = alive ? 0 : list.numAlive;
+		int end = alive ? list.numAlive : list.entities.size();
+		for (int i = start; i < end; i++)
+			result.add((T)list.entities.get(i));
+	}
+	
+	/**
+	 * Copy every entity into a list, alive or dead, for the same reason as above.
+	 */
+	public void getAllEntities(List<AbstractEntity> result)
+	{
+		for (TypeList list: typeLists)
+			result.addAll(list.entities);
+	}
+	
+	/**
+	 * @return a random living entity of a type, or null if there aren't any.
+	 */
+	public AbstractEntity getRandomAlive(EntityType type)
+	{
+		TypeList list = typeLists[type.ordinal()];
+		if (list.numAlive == 0)
+			return null;
+		return list.entities.get((int)(Math.random()*list.numAlive));
 	}
 	
 	public Set<AbstractEntity> getAddedEntities()
@@ -54,4 +133,52 @@ public class EntityFactory extends AbstractEntityFactory<AbstractEntity>
 		removedEntities.clear();
 	}
 	
+	/**
+	 * The entities of one type, alive ones first. Each entity knows where it is in the list,
+	 * so moving it between the alive and dead parts is a single swap.
+	 */
+	private static class TypeList
+	{
+		private List<AbstractEntity> entities = new ArrayList<AbstractEntity>();
+		private int numAlive;
+		
+		private void add(AbstractEntity entity)
+		{
+			entity.setRegistryIndex(entities.size());
+			entities.add(entity);
+			if (entity.isAlive())
+				swap(entity.getRegistryIndex(), numAlive++);
+		}
+		
+		private void remove(AbstractEntity entity)
+		{
+			int index = entity.getRegistryIndex();
+			if (index < numAlive)
+			{
+				swap(index, --numAlive);
+				index = numAlive;
+			}
+			swap(index, entities.size()-1);
+			entities.remove(entities.size()-1);
+		}
+		
+		private void aliveChanged(AbstractEntity entity)
+		{
+			int index = entity.getRegistryIndex();
+			if (entity.isAlive() && index >= numAlive)
+				swap(index, numAlive++);
+			else if (!entity.isAlive() && index < numAlive)
+				swap(index, --numAlive);
+		}
+		
+		private void swap(int i, int j)
+		{
+			AbstractEntity a = entities.get(i);
+			AbstractEntity b = entities.get(j);
+			entities.set(i, b);
+			entities.set(j, a);
+			a.setRegistryIndex(j);
+			b.setRegistryIndex(i);
+		}
+	}
 }
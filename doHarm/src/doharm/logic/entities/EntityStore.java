@@ -0,0 +1,309 @@
+package doharm.logic.entities;
+
+import java.util.Arrays;
+
+/**
+ * Holds the position, velocity, angle and health of a world's entities in one array per value,
+ * rather than in objects belonging to each entity. An entity just remembers its slot in the arrays.
+ *
+ * The slots are kept packed at the front of the arrays, so moving every entity
+ * and slowing them all down by friction are simple loops over the arrays, without making any garbage.
+ *
+ * Entities start off in a store shared by every entity made on the same thread (see getUnplaced()),
+ * and are moved into the world's store when they are added to it. Once taken out of the world
+ * they all share one slot of REMOVED, since nothing needs their values any more.
+ * @author Roland
+ */
+public class EntityStore
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	//entities are made and added to their world on the same thread, so each thread can have its own
+	private static final ThreadLocal<EntityStore> UNPLACED = new ThreadLocal<EntityStore>()
+	{
+		@Override
+		protected EntityStore initialValue()
+		{
+			return new EntityStore();
+		}
+	};
+
+	/** One slot (0) shared by every entity that has been removed, so they can still be read without a store each. */
+	static final EntityStore REMOVED = new EntityStore(1);
+	static
+	{
+		REMOVED.size = 1;
+	}
+
+	private float[] x;
+	private float[] y;
+	private float[] oldX; //the last position that was on a walkable tile
+	private float[] oldY;
+	private float[] velocityX;
+	private float[] velocityY;
+	private float[] angle;
+	private float[] friction;
+	private float[] health;
+	private boolean[] moving; //only living entities move
+
+	private AbstractEntity[] owners;
+	private int size;
+
+	public EntityStore()
+	{
+		this(INITIAL_CAPACITY);
+	}
+
+	public EntityStore(int capacity)
+	{
+		x = new float[capacity];
+		y = new float[capacity];
+		oldX = new float[capacity];
+		oldY = new float[capacity];
+		velocityX = new float[capacity];
+		velocityY = new float[capacity];
+		angle = new float[capacity];
+		friction = new float[capacity];
+		health = new float[capacity];
+		moving = new boolean[capacity];
+		owners = new AbstractEntity[capacity];
+	}
+
+	/**
+	 * @return the store for entities made on this thread that haven't been added to a world yet.
+	 */
+	static EntityStore getUnplaced()
+	{
+		return UNPLACED.get();
+	}
+
+	private void grow()
+	{
+		int capacity = Math.max(owners.length*2, 1);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		oldX = Arrays.copyOf(oldX, capacity);
+		oldY = Arrays.copyOf(oldY, capacity);
+		velocityX = Arrays.copyOf(velocityX, capacity);
+		velocityY = Arrays.copyOf(velocityY, capacity);
+		angle = Arrays.copyOf(angle, capacity);
+		friction = Arrays.copyOf(friction, capacity);
+		health = Arrays.copyOf(health, capacity);
+		moving = Arrays.copyOf(moving, capacity);
+		owners = Arrays.copyOf(owners, capacity);
+	}
+
+	/**
+	 * @return the slot given to the entity, with everything set to 0.
+	 */
+	int add(AbstractEntity owner)
+	{
+		if (size == owners.length)
+			grow();
+		int slot = size++;
+		owners[slot] = owner;
+		reset(slot);
+		friction[slot] = 0;
+		health[slot] = 0;
+		moving[slot] = false;
+		return slot;
+	}
+
+	/**
+	 * Free a slot. The last entity is moved into it to keep the slots packed.
+	 */
+	void remove(int slot)
+	{
+		int last = --size;
+		if (slot != last)
+		{
+			copy(last, this, slot);
+			owners[slot] = owners[last];
+			owners[slot].setSlot(slot);
+		}
+		owners[last] = null;
+	}
+
+	/**
+	 * Move an entity's values to another store.
+	 * @return its slot in the other store.
+	 */
+	int moveTo(int slot, EntityStore other)
+	{
+		int newSlot = other.add(owners[slot]);
+		copy(slot, other, newSlot);
+		remove(slot);
+		return newSlot;
+	}
+
+	private void copy(int from, EntityStore other, int to)
+	{
+		other.x[to] = x[from];
+		other.y[to] = y[from];
+		other.oldX[to] = oldX[from];
+		other.oldY[to] = oldY[from];
+		other.velocityX[to] = velocityX[from];
+		other.velocityY[to] = velocityY[from];
+		other.angle[to] = angle[from];
+		other.friction[to] = friction[from];
+		other.health[to] = health[from];
+		other.moving[to] = moving[from];
+	}
+
+	/**
+	 * Put an entity back at 0,0, not moving or facing anywhere.
+	 */
+	void reset(int slot)
+	{
+		x[slot] = 0;
+		y[slot] = 0;
+		oldX[slot] = 0;
+		oldY[slot] = 0;
+		velocityX[slot] = 0;
+		velocityY[slot] = 0;
+		angle[slot] = 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public AbstractEntity getOwner(int slot)
+	{
+		return owners[slot];
+	}
+
+	/**
+	 * Move every living entity by its velocity, at half speed up and down because of the isometric view.
+	 * The entities still have to be told to update which tile they are on.
+	 */
+	public void integrate()
+	{
+		for (int i = 0; i < size; i++)
+		{
+			if (moving[i])
+			{
+				x[i] += velocityX[i];
+				y[i] += velocityY[i]*0.5f;
+			}
+		}
+	}
+
+	public void integrate(int slot)
+	{
+		if (moving[slot])
+		{
+			x[slot] += velocityX[slot];
+			y[slot] += velocityY[slot]*0.5f;
+		}
+	}
+
+	/**
+	 * Slow down every living entity, and turn it to face the way it is going.
+	 */
+	public void applyFriction()
+	{
+		for (int i = 0; i < size; i++)
+		{
+			if (moving[i])
+				applyFriction(i);
+		}
+	}
+
+	public void applyFriction(int slot)
+	{
+		velocityX[slot] *= friction[slot];
+		velocityY[slot] *= friction[slot];
+		if (velocityX[slot] != 0 || velocityY[slot] != 0)
+			angle[slot] = (float)Math.atan2(velocityY[slot], velocityX[slot]);
+		else
+			angle[slot] = 0;
+	}
+
+	public float getX(int slot)
+	{
+		return x[slot];
+	}
+
+	public float getY(int slot)
+	{
+		return y[slot];
+	}
+
+	public void setPosition(int slot, float x, float y)
+	{
+		this.x[slot] = x;
+		this.y[slot] = y;
+	}
+
+	public float getOldX(int slot)
+	{
+		return oldX[slot];
+	}
+
+	public float getOldY(int slot)
+	{
+		return oldY[slot];
+	}
+
+	/**
+	 * Remember the current position as the last good one.
+	 */
+	public void savePosition(int slot)
+	{
+		oldX[slot] = x[slot];
+		oldY[slot] = y[slot];
+	}
+
+	public float getVelocityX(int slot)
+	{
+		return velocityX[slot];
+	}
+
+	public float getVelocityY(int slot)
+	{
+		return velocityY[slot];
+	}
+
+	public void setVelocity(int slot, float x, float y)
+	{
+		velocityX[slot] = x;
+		velocityY[slot] = y;
+	}
+
+	public float getAngle(int slot)
+	{
+		return angle[slot];
+	}
+
+	public void setAngle(int slot, float angle)
+	{
+		this.angle[slot] = angle;
+	}
+
+	public float getFriction(int slot)
+	{
+		return friction[slot];
+	}
+
+	public void setFriction(int slot, float friction)
+	{
+		this.friction[slot] = friction;
+	}
+
+	public float getHealth(int slot)
+	{
+		return health[slot];
+	}
+
+	public void setHealth(int slot, float health)
+	{
+		this.health[slot] = health;
+	}
+
+	public void setMoving(int slot, boolean moving)
+	{
+		this.moving[slot] = moving;
+	}
+}
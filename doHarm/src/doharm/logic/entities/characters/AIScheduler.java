@@ -0,0 +1,89 @@
+package doharm.logic.entities.characters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import doharm.logic.entities.characters.players.Player;
+import doharm.logic.entities.characters.players.PlayerType;
+import doharm.logic.world.World;
+
+/**
+ * Decides which AI characters (monsters and AI players) get to think each tick.
+ *
+ * AIs near a human or network player think every tick. Further away they only think every FAR_INTERVAL ticks,
+ * and out of everyone's range they stop thinking altogether, unless something attacks them.
+ * On the ticks in between they carry on with whatever they last decided (see CharacterState.interpolate()),
+ * which is much cheaper than deciding again.
+ *
+ * Each AI thinks on a different tick depending on its ID, so the work is spread out evenly
+ * rather than everyone far away thinking on the same tick.
+ * @author Roland
+ */
+public class AIScheduler
+{
+	/** Within this many tiles of a player, an AI thinks every tick. */
+	public static final float NEAR_DISTANCE = 20;
+	/** Beyond this many tiles from every player, an AI doesn't think at all. */
+	public static final float FAR_DISTANCE = 60;
+	/** How often (in ticks) an AI thinks when it is between the two. */
+	public static final int FAR_INTERVAL = 8;
+	/** The think interval of an AI that isn't thinking at all. */
+	public static final int DORMANT = 0;
+
+	private World world;
+	private List<Character> watchers; //the players that AIs need to look lively for, reused
+
+	public AIScheduler(World world)
+	{
+		this.world = world;
+		watchers = new ArrayList<Character>();
+	}
+
+	/**
+	 * Decide whether each character thinks this tick. Characters that aren't AIs always think.
+	 */
+	public void update(List<? extends Character> characters)
+	{
+		watchers.clear();
+		for (Player player: world.getPlayerFactory().getEntities())
+		{
+			if (player.isAlive() && player.getPlayerType() != PlayerType.AI)
+				watchers.add(player);
+		}
+
+		long tick = world.getTimers().getTick();
+		for (int i = 0; i < characters.size(); i++)
+		{
+			Character character = characters.get(i);
+			if (!character.isAI())
+			{
+				character.setThinking(true);
+				character.setThinkInterval(1);
+				continue;
+			}
+
+			int interval = getThinkInterval(character);
+			character.setThinkInterval(interval);
+			character.setThinking(interval != DORMANT && (tick + character.getID()) % interval == 0);
+		}
+	}
+
+	/**
+	 * @return how often (in ticks) the AI should think, or DORMANT if it shouldn't.
+	 */
+	public int getThinkInterval(Character character)
+	{
+		float distance = Float.MAX_VALUE;
+		for (int i = 0; i < watchers.size(); i++)
+		{
+			Character watcher = watchers.get(i);
+			distance = Math.min(distance, character.getCurrentTile().distanceToTile(watcher.getCurrentTile()));
+		}
+
+		if (distance < NEAR_DISTANCE)
+			return 1;
+		if (distance < FAR_DISTANCE || character.getAttackedBy() != null)
+			return FAR_INTERVAL;
+		return DORMANT;
+	}
+}
@@ -21,6 +21,8 @@ import doharm.logic.entities.characters.states.CharacterStateType;
 import doharm.logic.entities.characters.states.IdleState;
 import doharm.logic.entities.items.usable.UsableItem;
 import doharm.logic.inventory.Inventory;
+import doharm.logic.time.TimedEvent;
+import doharm.logic.time.TimerWheel;
 import doharm.logic.world.tiles.Tile;
 
 /**
@@ -30,6 +32,7 @@ import doharm.logic.world.tiles.Tile;
 
 public abstract class Character extends AbstractEntity
 {
+	private static final float RAGE_DECAY = 0.001f; //fraction of max rage lost per tick
 	
 	private String name;
 	private CharacterClass characterClass;
@@ -38,13 +41,16 @@ public abstract class Character extends AbstractEntity
 	
 	private Taunts taunts;
 	
-	private float health;
 	private float mana;
-	private float rage;
+	private float rage; //as it was on rageTick, it decays from then on
+	private long rageTick;
 	private Alliance alliance;
 	
 	private CharacterState state;
-	private long spawnTime;
+	private TimedEvent respawnEvent;
+	private boolean thinking = true; //see AIScheduler
+	private int ticksSinceThought;
+	private int thinkInterval = 1;
 	private Character attackedBy;
 	private CharacterType characterType;
 	private Color colour = Color.white;
@@ -57,6 +63,14 @@ public abstract class Character extends AbstractEntity
 		inventory = new Inventory();
 		taunts = new Taunts(this);
 		frame = 0;
+		respawnEvent = new TimedEvent()
+		{
+			@Override
+			public void run()
+			{
+				respawn();
+			}
+		};
 	}
 	
 	
@@ -125,29 +139,76 @@ public abstract class Character extends AbstractEntity
 	{
 		if (!isAlive())
 			return;
-		characterClass.process();
-		
-		health += characterClass.getAttributes().getHealthRegeneration();
-		health = Math.min(health, getMaxHealth());
-		decreaseRage();
+		increaseHealth(characterClass.getAttributes().getHealthRegeneration());
 		
-		state.process(this);
+		ticksSinceThought++;
+		if (thinking)
+		{
+			state.process(this);
+			ticksSinceThought = 0;
+		}
+		else
+			state.interpolate(this);
 		
-		frame += getVelocity().getLength() * 0.1f;
+		frame += getSpeed() * 0.1f;
 		
 		super.process();
 	}
 	
-	private void decreaseRage() {
-		rage -= characterClass.getAttributes().getMaxRage() *0.001f;
-		if (rage < 0) rage = 0;
+	/**
+	 * The first half of the tick, see ParallelPlanner. May be called from any thread.
+	 */
+	public void plan()
+	{
+		if (isAlive() && state != null && thinking)
+			state.plan(this);
 	}
-
-
+	
+	/**
+	 * @return whether this character is controlled by the computer, so can think less often when no one is watching.
+	 */
+	public boolean isAI()
+	{
+		return false;
+	}
+	
+	public boolean isThinking()
+	{
+		return thinking;
+	}
+	
+	public void setThinking(boolean thinking)
+	{
+		this.thinking = thinking;
+	}
+	
+	/**
+	 * @param thinkInterval how often (in ticks) the character thinks, or AIScheduler.DORMANT if it doesn't.
+	 */
+	public void setThinkInterval(int thinkInterval)
+	{
+		this.thinkInterval = thinkInterval;
+		if (thinkInterval == AIScheduler.DORMANT)
+			ticksSinceThought = 0; //nothing to make up for when it wakes up
+	}
+	
+	public int getThinkInterval()
+	{
+		return thinkInterval;
+	}
+	
+	/**
+	 * @return how many ticks the current thought has to make up for, 1 if the character thinks every tick.
+	 * Never more than the think interval, so a long sleep or a change of state isn't made up for all at once.
+	 */
+	public int getTicksSinceThought()
+	{
+		return Math.min(ticksSinceThought, Math.max(1, thinkInterval));
+	}
+	
 	public void increaseRage() 
 	{
-		rage += characterClass.getAttributes().getMaxRage() *0.002f;
-		if (rage > getMaxRage()) rage = getMaxRage();
+		setRage(Math.min(getRage() + getMaxRage()*0.002f, getMaxRage()));
 	}
 	
 	public float getFrame()
@@ -183,13 +244,14 @@ public abstract class Character extends AbstractEntity
 		super.spawn(spawnTile);
 		
 		state = new IdleState();
+		ticksSinceThought = 0;
 		
 		//Vector position = getPosition();
 		resetAttackedBy();
-		health = getMaxHealth();
+		setHealth(getMaxHealth());
 		mana = getMaxMana();
-		rage = 0;
-		
+		setRage(0);
+		characterClass.spawned();
 	}
 	
 	
@@ -210,16 +272,16 @@ public abstract class Character extends AbstractEntity
 	
 	public float getHealth()
 	{
-		return health;
+		return getStore().getHealth(getSlot());
 	}
 	public void setHealth(float health)
 	{
-		this.health = health;
+		getStore().setHealth(getSlot(), health);
 	}
 	
 	public float getHealthRatio() 
 	{
-		return health / getMaxHealth();
+		return getHealth() / getMaxHealth();
 	}
 	
 	public float getMaxHealth()
@@ -227,14 +289,19 @@ public abstract class Character extends AbstractEntity
 		return characterClass.getAttributes().getMaxHealth();
 	}
 	
+	/**
+	 * Rage decays a little every tick. Rather than taking it off every tick, it is worked out
+	 * from how many ticks have passed since it was last set.
+	 */
 	public float getRage() 
 	{
-		return rage;
+		long ticks = getWorld().getTimers().getTick() - rageTick;
+		return Math.max(rage - getMaxRage()*RAGE_DECAY*ticks, 0);
 	}
 	
 	public float getRageRatio()
 	{
-		return rage / getMaxRage();
+		return getRage() / getMaxRage();
 	}
 	public float getMaxRage()
 	{
@@ -244,6 +311,7 @@ public abstract class Character extends AbstractEntity
 	public void setRage(float rage)
 	{
 		this.rage = rage;
+		rageTick = getWorld().getTimers().getTick();
 	}
 	
 	public float getMana() {
@@ -259,7 +327,7 @@ public abstract class Character extends AbstractEntity
 		if (getMaxMana() == 0)
 			return 0;
 		
-		return rage / getMaxMana();
+		return getRage() / getMaxMana();
 	}
 	
 	public float getMaxMana() {
@@ -289,6 +357,7 @@ public abstract class Character extends AbstractEntity
 	public void setState(CharacterState state) 
 	{
 		this.state = state;
+		ticksSinceThought = 0;
 	}
 
 	public float getMovementSpeed() 
@@ -305,12 +374,10 @@ public abstract class Character extends AbstractEntity
 		if (!isAlive())
 			return;
 		
-		health -= damage;
-		rage += damage;
-		if (rage > getMaxRage())
-			rage = getMaxRage();
+		setHealth(getHealth() - damage);
+		setRage(Math.min(getRage() + damage, getMaxRage()));
 		
-		if (health <= 0)
+		if (getHealth() <= 0)
 		{
 			//kill me now
 			
@@ -323,7 +390,7 @@ public abstract class Character extends AbstractEntity
 	
 	public void die(Character attacker) 
 	{
-		health = 0;
+		setHealth(0);
 		
 		//drop all the character's items and gold
 		Tile dropTile = getCurrentTile();
@@ -345,22 +412,56 @@ public abstract class Character extends AbstractEntity
 			
 		}
 		
-		spawnTime = System.currentTimeMillis() + Math.max((int)(1000*(Math.pow(characterClass.getLevel(), 2))),5000);
+		respawnIn(Math.max((int)(1000*(Math.pow(characterClass.getLevel(), 2))),5000));
 		
 		getWorld().addMessage(new Message(-1, true, new MessagePart(attacker.getName() + " killed " + getName()+".")));
 		
 		die();
 	}
 	
+	@Override
+	public void die()
+	{
+		super.die();
+		characterClass.died();
+	}
+	
 	private void halveRage() 
 	{
-		rage *= 0.5f;
+		setRage(getRage() * 0.5f);
 	}
 
 
-	public void setSpawnTime(long time)
+	/**
+	 * Come back to life after a while (in game time, it takes longer if the game slows down).
+	 * Replaces any respawn already waiting.
+	 */
+	public void respawnIn(long millis)
+	{
+		getWorld().getTimers().schedule(respawnEvent, TimerWheel.toTicks(millis));
+	}
+	
+	private void respawn()
+	{
+		if (isAlive())
+			return;
+		
+		Tile tile = getWorld().getRandomEmptyTile();
+		if (tile == null)
+		{
+			//nowhere to go, try again next tick
+			getWorld().getTimers().schedule(respawnEvent, 1);
+			return;
+		}
+		spawn(tile);
+	}
+	
+	@Override
+	protected void removed()
 	{
-		spawnTime = time;
+		super.removed();
+		getWorld().getTimers().cancel(respawnEvent);
+		characterClass.removed();
 	}
 
 
@@ -383,17 +484,14 @@ public abstract class Character extends AbstractEntity
 		return characterClass.getLevel();
 	}
 
-	public void tryRespawn() 
-	{
-		if (getTimeTillSpawn() == 0)
-		{
-			spawn(getWorld().getRandomEmptyTile());
-		}
-	}
-
+	/**
+	 * @return how many milliseconds until this character respawns, at the normal game speed. 0 if it isn't waiting to.
+	 */
 	public int getTimeTillSpawn() 
 	{
-		return Math.max((int)(spawnTime - System.currentTimeMillis()),0);
+		if (!respawnEvent.isScheduled())
+			return 0;
+		return (int)TimerWheel.toMillis(respawnEvent.getDueTick() - getWorld().getTimers().getTick());
 	}
 
 	public boolean isHumanPlayer() 
@@ -415,13 +513,11 @@ public abstract class Character extends AbstractEntity
 
 	public void increaseHealth(float increase) 
 	{
-		health += increase;
-		health = Math.min (health, getMaxHealth());
+		setHealth(Math.min(getHealth() + increase, getMaxHealth()));
 	}
 	public void increaseMana(float increase) 
 	{
-		health += increase;
-		health = Math.min (health, getMaxHealth());
+		setHealth(Math.min(getHealth() + increase, getMaxHealth()));
 	}
 	
 	public void levelUp()
@@ -430,6 +526,7 @@ public abstract class Character extends AbstractEntity
 	}
 
 
+	@Override
 	public float getLightIntensity() 
 	{
 		float lightIntensity = 1.0f;
@@ -9,6 +9,7 @@ import doharm.logic.entities.characters.Character;
 import doharm.logic.entities.characters.classes.attributes.AttributeType;
 import doharm.logic.entities.characters.classes.attributes.Attributes;
 import doharm.logic.entities.characters.classes.attributes.LevelupAttributes;
+import doharm.logic.time.TimedEvent;
 
 /**
  * A character class stores all the properties of a character - their attributes 
@@ -23,7 +24,8 @@ public class CharacterClass
 	private static final int ATTRIBUTEPOINTS_PER_LEVEL = 3;
 	
 	private float experience;
-	private float experienceToAdd;
+	private float experienceToAdd; //trickles into experience a bit every tick
+	private TimedEvent experienceEvent;
 	private float lastLevelExperience;
 	private float nextLevelExperience;
 	private int level;
@@ -49,6 +51,14 @@ public class CharacterClass
 		
 		attributePoints = ATTRIBUTEPOINTS_PER_LEVEL;
 		
+		experienceEvent = new TimedEvent()
+		{
+			@Override
+			public void run()
+			{
+				trickleExperience();
+			}
+		};
 	}
 	
 	public void setSize(Dimension size)
@@ -56,19 +66,47 @@ public class CharacterClass
 		this.size = size;
 	}
 	
-	public void process()
+	/**
+	 * Only scheduled while there is experience left to add and the character is alive.
+	 */
+	private void trickleExperience()
 	{
-		if (experienceToAdd > 0)
+		float delayedExperience = Math.max(experienceToAdd * 0.075f,0.01f);
+		experienceToAdd = Math.max(experienceToAdd-delayedExperience,0);
+		
+		experience += delayedExperience;
+		if (experience >= nextLevelExperience)
 		{
-			float delayedExperience = Math.max(experienceToAdd * 0.075f,0.01f);
-			experienceToAdd = Math.max(experienceToAdd-delayedExperience,0);
-			
-			experience += delayedExperience;
-			if (experience >= nextLevelExperience)
-			{
-				levelup();
-			}
+			levelup();
 		}
+		
+		if (experienceToAdd > 0)
+			character.getWorld().getTimers().schedule(experienceEvent, 1);
+	}
+	
+	/**
+	 * Called when the character dies, experience doesn't trickle in while it is dead.
+	 */
+	public void died()
+	{
+		character.getWorld().getTimers().cancel(experienceEvent);
+	}
+	
+	/**
+	 * Called when the character comes (back) to life, to carry on adding any experience left.
+	 */
+	public void spawned()
+	{
+		if (experienceToAdd > 0 && !experienceEvent.isScheduled())
+			character.getWorld().getTimers().schedule(experienceEvent, 1);
+	}
+	
+	/**
+	 * Called when the character is taken out of the world.
+	 */
+	public void removed()
+	{
+		character.getWorld().getTimers().cancel(experienceEvent);
 	}
 	
 	public Attributes getAttributes()
@@ -101,7 +139,8 @@ public class CharacterClass
 	public void addExperience(float experience)
 	{
 		experienceToAdd += experience;
-		
+		if (character.isAlive())
+			spawned();
 	}
 	
 	private void levelup()
@@ -17,7 +17,7 @@ public class Monster extends Character
 
 	public void spawnEventually() 
 	{
-		setSpawnTime(System.currentTimeMillis() + (int)(Math.random()*MAX_SPAWN_TIME) * 1000);
+		respawnIn((int)(Math.random()*MAX_SPAWN_TIME) * 1000);
 		levelup();
 	}
 
@@ -30,6 +30,12 @@ public class Monster extends Character
 		super.process();
 	}
 	
+	@Override
+	public boolean isAI()
+	{
+		return true;
+	}
+	
 	@Override 
 	public void die()
 	{
@@ -74,7 +74,14 @@ public class AIPlayer extends Player
 		super.process();
 		
 		//Strategy pattern, process a state depending on the AI's state type.
-		states.get(getStateType()).process(this);
+		if (isThinking())
+			states.get(getStateType()).process(this);
+	}
+	
+	@Override
+	public boolean isAI()
+	{
+		return true;
 	}
 	
 	
@@ -1,5 +1,8 @@
 package doharm.logic.entities.characters.players;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import doharm.logic.entities.AbstractEntity;
 import doharm.logic.entities.EntityType;
 import doharm.logic.entities.characters.Character;
@@ -11,6 +14,7 @@ import doharm.logic.entities.characters.states.PickupState;
 import doharm.logic.entities.items.Item;
 import doharm.logic.entities.items.misc.dragonballs.DragonRadar;
 import doharm.logic.entities.items.usable.UsableItem;
+import doharm.logic.world.SpatialIndex;
 import doharm.logic.world.tiles.Tile;
 
 /**
@@ -30,11 +34,13 @@ public class HumanPlayer extends Player
 	private boolean[] mouseDown; //whether or not the mouse buttons are down.
 	private CharacterStateType mouseIcon; //the current icon of what we are hovering over.
 	private AbstractEntity hoverEntity; //the entity we are hovering over with the mouse
+	private List<AbstractEntity> nearbyEntities; //reused every tick when looking for the hover entity
 	
 	protected HumanPlayer() 
 	{
 		super(PlayerType.HUMAN);
 		mouseDown = new boolean[NUM_MOUSE_BUTTONS];
+		nearbyEntities = new ArrayList<AbstractEntity>();
 	}
 	
 	@Override
@@ -57,8 +63,16 @@ public class HumanPlayer extends Player
 			hoverEntity = null;
 			float closestDistance = MAX_DISTANCE;
 			
-			for (AbstractEntity entity: getWorld().getEntityFactory().getEntities())
+			//only entities near the mouse could be under it, no further away than the diagonal of the biggest one.
+			SpatialIndex index = getWorld().getSpatialIndex();
+			float radius = AbstractEntity.getLargestDiagonal();
+			nearbyEntities.clear();
+			for (int layer = 0; layer < getWorld().getNumLayers(); layer++)
+				index.getEntitiesInRadius(layer, hoveringTile.getX(), hoveringTile.getY(), radius, null, nearbyEntities);
+			
+			for (int i = 0; i < nearbyEntities.size(); i++)
 			{
+				AbstractEntity entity = nearbyEntities.get(i);
 				if (!entity.isAlive())
 					continue;
 				
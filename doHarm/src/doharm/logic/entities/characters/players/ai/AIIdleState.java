@@ -6,6 +6,7 @@ import doharm.logic.entities.characters.players.Player;
 import doharm.logic.entities.characters.states.AttackState;
 import doharm.logic.entities.characters.states.MoveState;
 import doharm.logic.entities.characters.Character;
+import doharm.logic.world.tiles.Tile;
 
 /**
  * Choose random actions when this AI is doing nothing.
@@ -27,16 +28,17 @@ public class AIIdleState extends AIState
 		if (Math.random() > 0.9f)
 		{
 			if (Math.random() > 0.1f)
-				player.setState(new MoveState(player.getWorld().getRandomEmptyTile(),true));
+			{
+				Tile destination = player.getWorld().getRandomEmptyTile(player.getCurrentTile());
+				if (destination != null)
+					player.setState(new MoveState(destination,true));
+			}
 			else
 			{
-				Character victim = null;
-				do
-				{
-					victim = player.getWorld().getRandomCharacter();
-				} while(victim == player);
-				
-				player.setState(new AttackState(victim));
+				//try again next time if we picked someone we can't get to.
+				Character victim = player.getWorld().getRandomCharacter();
+				if (victim != null && victim != player && player.getWorld().isReachable(player.getCurrentTile(), victim.getCurrentTile()))
+					player.setState(new AttackState(victim));
 			}
 			
 			
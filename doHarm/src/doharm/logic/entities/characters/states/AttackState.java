@@ -11,6 +11,8 @@ import doharm.logic.inventory.SlotType;
 
 public class AttackState extends CharacterState
 {
+	private static final float MIN_DISTANCE = 3;
+	
 	private MoveState moveState;
 	private Character victim;
 	public AttackState(Character victim)
@@ -22,6 +24,26 @@ public class AttackState extends CharacterState
 		moveState = new MoveState(victim.getCurrentTile(),false);
 	}
 
+	@Override
+	public void plan(Character character)
+	{
+		if (!victim.isAlive() || character.fromNetwork())
+			return;
+		if (character.getCurrentTile().distanceToTile(victim.getCurrentTile()) < MIN_DISTANCE)
+			return; //close enough to hit, no need to move
+		moveState.setDestination(victim.getCurrentTile());
+		moveState.plan(character);
+	}
+
+	@Override
+	public void interpolate(Character character)
+	{
+		if (!victim.isAlive() || character.fromNetwork())
+			return;
+		if (character.getCurrentTile().distanceToTile(victim.getCurrentTile()) >= MIN_DISTANCE)
+			moveState.interpolate(character);
+	}
+
 	@Override
 	public void process(Character character) 
 	{
@@ -36,9 +58,6 @@ public class AttackState extends CharacterState
 		if (character.fromNetwork())
 			return;
 		
-		float minDistance = 3;
-		
-		
 		WearableItem weapon = character.getInventory().getSlots()[SlotType.WEAPON.ordinal()];
 		
 		if (weapon != null)
@@ -49,14 +68,20 @@ public class AttackState extends CharacterState
 		
 		float distance = character.getCurrentTile().distanceToTile(victim.getCurrentTile());
 		
-		if (distance < minDistance)
+		if (distance < MIN_DISTANCE)
 		{
-			float damage = 1 + character.getCharacterClass().getAttributes().getStrength();
+			//make up for the ticks it didn't think, if it's far from the players
+			float damage = (1 + character.getCharacterClass().getAttributes().getStrength()) * character.getTicksSinceThought();
 			victim.receiveDamage(damage,character);
 		}
 		else
 		{
 			moveState.setDestination(victim.getCurrentTile());
+			if (!moveState.canReach(character))
+			{
+				character.setState(new IdleState());
+				return;
+			}
 			moveState.process(character);
 		}
 		
@@ -13,6 +13,22 @@ public abstract class CharacterState
 	
 	public abstract void process(Character character);
 	
+	/**
+	 * Work out anything expensive ahead of process(), eg. a path, using the world as it was at the start of the tick.
+	 * Characters plan at the same time on different threads, so this must not change anything but the state itself.
+	 */
+	public void plan(Character character)
+	{
+	}
+	
+	/**
+	 * Called instead of process() on the ticks an AI doesn't think (see AIScheduler).
+	 * Carry on with whatever was decided last time, without doing anything expensive.
+	 */
+	public void interpolate(Character character)
+	{
+	}
+	
 	public CharacterState(CharacterStateType type)
 	{
 		this.type = type;
@@ -1,7 +1,6 @@
 package doharm.logic.entities.characters.states;
 
 import doharm.logic.entities.characters.Character;
-import doharm.logic.physics.Vector;
 
 /**
  * A state where you do nothing - but respond to attacks.
@@ -27,10 +26,12 @@ public class IdleState extends CharacterState
 			return;
 		}
 		
-		Vector velocity = character.getVelocity();
-		
-		velocity.multiply(IDLE_FRICTION);
-
-		character.setVelocity(velocity);
+		character.setVelocity(character.getVelocityX()*IDLE_FRICTION, character.getVelocityY()*IDLE_FRICTION);
+	}
+	
+	@Override
+	public void interpolate(Character character)
+	{
+		character.setVelocity(character.getVelocityX()*IDLE_FRICTION, character.getVelocityY()*IDLE_FRICTION);
 	}
 }
\ No newline at end of file
@@ -1,10 +1,7 @@
 package doharm.logic.entities.characters.states;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Stack;
-
 import doharm.logic.physics.Vector;
+import doharm.logic.world.tiles.Path;
 import doharm.logic.world.tiles.PathFinder;
 import doharm.logic.world.tiles.Tile;
 import doharm.logic.entities.characters.Character;
@@ -16,10 +13,18 @@ import doharm.logic.entities.characters.Character;
 
 public class MoveState extends CharacterState
 {
-	private Stack<Tile> path;
+	private Path path;
 	private Tile destination;	
+	private Tile next; //the tile being walked to now
 	private Vector nextNodeInPath;
+	private Vector direction; //reused every tick
 	private boolean switchStateAtGoal;
+	
+	//the path worked out by plan() this tick, if any
+	private boolean planned;
+	private boolean plannedFound;
+	private Tile plannedStart;
+	private Tile plannedGoal;
 	private static final float MIN_NODE_DISTANCE = 10;
 	private static final float MIN_DESTINATION_DISTANCE = 1;
 	
@@ -28,8 +33,9 @@ public class MoveState extends CharacterState
 		super(CharacterStateType.MOVE);
 		setDestination(destination);
 		this.switchStateAtGoal = switchStateAtGoal;
-		path = new Stack<Tile>();
+		path = new Path();
 		nextNodeInPath = new Vector();
+		direction = new Vector();
 		
 	}
 
@@ -38,59 +44,115 @@ public class MoveState extends CharacterState
 		this.destination = destination;
 	}
 
+	@Override
+	public void plan(Character character)
+	{
+		planned = false;
+		if (character.fromNetwork() || !canReach(character))
+			return;
+		
+		plannedStart = character.getCurrentTile();
+		plannedGoal = destination;
+		plannedFound = PathFinder.calculatePath(character.getWorld(), plannedStart, plannedGoal, path);
+		planned = true;
+	}
+
 	@Override
 	public void process(Character character) 
 	{
 		//dynamically calculate path.
+		boolean usePlan = planned && plannedStart == character.getCurrentTile() && plannedGoal == destination;
+		planned = false;
+		next = null;
 		
 		if (character.fromNetwork())
 			return;
 		
-		path = PathFinder.calculatePath(character.getWorld(), character.getCurrentTile(), destination);
-		
-		float distanceToDestination = character.getCurrentTile().distanceToTile(destination);
-		
-		
-		
-		if (path == null || path.isEmpty() || distanceToDestination < MIN_DESTINATION_DISTANCE)
+		if (!canReach(character))
 		{
 			if(switchStateAtGoal)
 				character.setState(new IdleState());
 			return;
 		}
 		
+		boolean found = usePlan ? plannedFound : 
+			PathFinder.calculatePath(character.getWorld(), character.getCurrentTile(), destination, path);
 		
+		float distanceToDestination = character.getCurrentTile().distanceToTile(destination);
 		
 		
-		Tile next = path.pop();
-		
-		nextNodeInPath.set(next.getX(), next.getY());
 		
+		if (!found || path.isEmpty() || distanceToDestination < MIN_DESTINATION_DISTANCE)
+		{
+			if(switchStateAtGoal)
+				character.setState(new IdleState());
+			return;
+		}
 		
 		
 		
-		Vector direction = nextNodeInPath.subtract(character.getCurrentTile().getX(),character.getCurrentTile().getY());//character.getPosition());
 		
-		Vector velocity = character.getVelocity();
+		next = character.getWorld().getTileByIndex(path.pop());
+		walkTowards(character, next);
+	}
+	
+	/**
+	 * Keep following the path from last time, without finding a new one.
+	 */
+	@Override
+	public void interpolate(Character character)
+	{
+		if (character.fromNetwork() || next == null)
+			return;
 		
+		if (character.getCurrentTile() == next)
+		{
+			if (path.isEmpty())
+			{
+				next = null;
+				return;
+			}
+			next = character.getWorld().getTileByIndex(path.pop());
+		}
+		walkTowards(character, next);
+	}
+	
+	private void walkTowards(Character character, Tile next)
+	{
+		if (next.getLayer() != character.getCurrentLayer())
+			character.setLayerTransition(next);
+		else
+			character.setLayerTransition(null);
 		
+		nextNodeInPath.set(next.getX(), next.getY());
 		
+		nextNodeInPath.subtractInto(character.getCurrentTile().getX(),character.getCurrentTile().getY(), direction);
 		
 		direction.multiply(1, 2);
 		direction.normalize();
 		direction.multiply(character.getMovementSpeed());
-		velocity.add(direction);
-		character.setVelocity(velocity);
+		character.setVelocity(character.getVelocityX() + direction.getX(), character.getVelocityY() + direction.getY());
 		
 	}
 	
+	/**
+	 * @return false if the destination is walled off from the character, so there's no point trying.
+	 */
+	public boolean canReach(Character character)
+	{
+		return character.getWorld().isReachable(character.getCurrentTile(), destination);
+	}
+	
 	public Vector getDestination() 
 	{
 		return new Vector(destination.getX(),destination.getY());
 	}
-	public Collection<Tile> getPath()
+	/**
+	 * @return the rest of the path, reused every tick so don't hold on to it.
+	 */
+	public Path getPath()
 	{
-		return Collections.unmodifiableCollection(path);
+		return path;
 	}
 	
 	/*private void nextNodeInPath() 
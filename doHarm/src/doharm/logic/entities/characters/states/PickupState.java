@@ -23,6 +23,20 @@ public class PickupState extends CharacterState
 		moveState = new MoveState(itemToPickup.getCurrentTile(),false);
 	}
 
+	@Override
+	public void plan(Character character)
+	{
+		if (itemToPickup.isAlive() && itemToPickup.isOnGround())
+			moveState.plan(character);
+	}
+
+	@Override
+	public void interpolate(Character character)
+	{
+		if (itemToPickup.isAlive() && itemToPickup.isOnGround())
+			moveState.interpolate(character);
+	}
+
 	@Override
 	public void process(Character character) 
 	{
@@ -110,6 +124,11 @@ public class PickupState extends CharacterState
 		else
 		{
 			moveState.setDestination(itemToPickup.getCurrentTile());
+			if (!moveState.canReach(character))
+			{
+				character.setState(new IdleState());
+				return;
+			}
 			moveState.process(character);
 		}
 		
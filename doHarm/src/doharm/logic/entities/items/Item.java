@@ -37,6 +37,7 @@ public abstract class Item extends AbstractEntity
 
 	private boolean onGround;
 	private boolean unique;
+	private Vector direction = new Vector(); //reused when pushing other items away
 	
 	
 	
@@ -83,35 +84,28 @@ public abstract class Item extends AbstractEntity
 		if (!onGround)
 			return;
 		
+		Dimension size = getSize();
+		float pushDistance = size.width*size.height*2;
 		for (Item item: getCurrentTile().getItems())
 		{
 			if (item == this || !item.onGround)
 				continue;
 			
-			float distance = distanceTo(item);
-			
-			if (distance < getSize().width*getSize().height*2)
+			if (distanceSquaredTo(item) < pushDistance*pushDistance)
 			{
-				Vector direction = item.getPosition().subtract(getPosition());
+				direction.set(item.getX() - getX(), item.getY() - getY());
 				
-				if (direction.getLength() == 0)
+				if (direction.lengthSquared() == 0)
 				{
 					direction.set((float)Math.random(), (float)Math.random());
-					if (direction.getLength() == 0)
+					if (direction.lengthSquared() == 0)
 						direction.set(1,0);
 				}
 				direction.normalize();
 				direction.multiply(1);
 				
-				Vector velocity = item.getVelocity();
-				velocity.add(direction.getX(), direction.getY());
-				item.setVelocity(velocity);
-				
-				
-				velocity = getVelocity();
-				velocity.add(-direction.getX(), -direction.getY());
-				
-				setVelocity(velocity);
+				item.setVelocity(item.getVelocityX() + direction.getX(), item.getVelocityY() + direction.getY());
+				setVelocity(getVelocityX() - direction.getX(), getVelocityY() - direction.getY());
 			}
 			
 		}
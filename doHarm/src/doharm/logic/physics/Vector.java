@@ -7,6 +7,7 @@ public class Vector
 	private float x;
 	private float y;
 	private float length;
+	private boolean lengthKnown; //length is only worked out again after the vector changes
 	
 	public Vector(float x, float y) 
 	{
@@ -35,6 +36,15 @@ public class Vector
 		updateLength();
 		return length;
 	}
+	
+	/**
+	 * @return the length squared, which doesn't need a square root. Use it for comparing lengths.
+	 */
+	public float lengthSquared()
+	{
+		return x*x+y*y;
+	}
+	
 	public void normalize()
 	{
 		updateLength();
@@ -46,7 +56,10 @@ public class Vector
 
 	private void updateLength() 
 	{
+		if (lengthKnown)
+			return;
 		length = (float) Math.sqrt(x*x+y*y);
+		lengthKnown = true;
 	}
 
 	public float getX() 
@@ -89,6 +102,7 @@ public class Vector
 	{
 		this.x = x;
 		this.y = y;
+		lengthKnown = false;
 	}
 	public void set(Vector v) 
 	{
@@ -134,6 +148,21 @@ public class Vector
 	{
 		return new Vector(this.x-x,this.y-y);
 	}
+	
+	/**
+	 * Like subtract(), but puts the answer in a vector that already exists instead of making a new one.
+	 * @return result
+	 */
+	public Vector subtractInto(Vector v, Vector result)
+	{
+		return subtractInto(v.x, v.y, result);
+	}
+	
+	public Vector subtractInto(float x, float y, Vector result)
+	{
+		result.set(this.x-x,this.y-y);
+		return result;
+	}
 
 	@Override 
 	public boolean equals(Object other)
@@ -149,8 +178,7 @@ public class Vector
 
 	public void reset() 
 	{
-		x = 0;
-		y = 0;
+		set(0,0);
 	}
 
 	public void divide(float x, float y) {
@@ -0,0 +1,160 @@
+package doharm.logic.testing;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import doharm.logic.entities.EntityType;
+import doharm.logic.entities.characters.AIScheduler;
+import doharm.logic.entities.characters.Character;
+import doharm.logic.entities.characters.classes.CharacterClassType;
+import doharm.logic.entities.characters.players.Player;
+import doharm.logic.entities.characters.players.PlayerType;
+import doharm.logic.entities.characters.states.AttackState;
+import doharm.logic.entities.characters.states.IdleState;
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Tile;
+import doharm.net.NetworkMode;
+
+public class AISchedulerTests {
+
+	private World world;
+	private Player watcher;
+	private Character monster;
+
+	/**
+	 * A network player to look lively for, and a monster (not spawned yet) to schedule.
+	 */
+	@Before
+	public void setUp()
+	{
+		world = new World(null, "world1", NetworkMode.OFFLINE);
+		//no one else for the AIs to look lively for
+		for (Player player: new ArrayList<Player>(world.getPlayerFactory().getEntities()))
+		{
+			if (player.getPlayerType() != PlayerType.AI)
+				player.die();
+		}
+		watcher = world.getPlayerFactory().createPlayer(getTile(0, Float.MAX_VALUE), "Watcher", CharacterClassType.WARRIOR,
+				world.getIDManager().takeID(), PlayerType.NETWORK, Color.white, false);
+		List<Character> dead = new ArrayList<Character>();
+		world.getEntityFactory().getEntities(EntityType.CHARACTER, false, dead);
+		assertFalse(dead.isEmpty());
+		monster = dead.get(0);
+		assertTrue(monster.isAI());
+	}
+
+	/**
+	 * @return a walkable tile at least min and less than max tiles from the watcher (or from the top left if there is none yet).
+	 */
+	private Tile getTile(float min, float max)
+	{
+		Tile from = watcher == null ? world.getTileByIndex(0) : watcher.getCurrentTile();
+		for (int i = 0; i < world.getNumTiles(); i++)
+		{
+			Tile tile = world.getTileByIndex(i);
+			float distance = tile.distanceToTile(from);
+			if (tile.isWalkable() && distance >= min && distance < max)
+				return tile;
+		}
+		fail("No walkable tile between " + min + " and " + max + " tiles away");
+		return null;
+	}
+
+	@Test
+	public void testThinkIntervals()
+	{
+		AIScheduler scheduler = new AIScheduler(world);
+		List<Character> characters = new ArrayList<Character>();
+		characters.add(monster);
+		characters.add(watcher);
+
+		monster.spawn(getTile(0, AIScheduler.NEAR_DISTANCE));
+		scheduler.update(characters);
+		assertEquals(1, monster.getThinkInterval());
+		assertTrue(monster.isThinking());
+		assertEquals(1, watcher.getThinkInterval());
+		assertTrue(watcher.isThinking());
+
+		monster.spawn(getTile(AIScheduler.NEAR_DISTANCE, AIScheduler.FAR_DISTANCE));
+		int thoughts = 0;
+		for (int i = 0; i < AIScheduler.FAR_INTERVAL*4; i++)
+		{
+			world.getTimers().advance();
+			scheduler.update(characters);
+			assertEquals(AIScheduler.FAR_INTERVAL, monster.getThinkInterval());
+			if (monster.isThinking())
+				thoughts++;
+		}
+		assertEquals(4, thoughts);
+
+		monster.spawn(getTile(AIScheduler.FAR_DISTANCE, Float.MAX_VALUE));
+		scheduler.update(characters);
+		assertEquals(AIScheduler.DORMANT, monster.getThinkInterval());
+		assertFalse(monster.isThinking());
+
+		//something attacking it wakes it up
+		monster.receiveDamage(0, watcher);
+		scheduler.update(characters);
+		assertEquals(AIScheduler.FAR_INTERVAL, monster.getThinkInterval());
+	}
+
+	@Test
+	public void testTicksSinceThoughtIsCapped()
+	{
+		monster.spawn(watcher.getCurrentTile());
+		monster.setThinkInterval(AIScheduler.FAR_INTERVAL);
+		monster.setThinking(false);
+		for (int i = 0; i < AIScheduler.FAR_INTERVAL*3; i++)
+			monster.process();
+		assertEquals(AIScheduler.FAR_INTERVAL, monster.getTicksSinceThought());
+
+		//a new state has nothing to make up for
+		monster.setState(new IdleState());
+		assertEquals(0, monster.getTicksSinceThought());
+		for (int i = 0; i < 3; i++)
+			monster.process();
+		assertEquals(3, monster.getTicksSinceThought());
+
+		//neither does one that has been dormant
+		monster.setThinkInterval(AIScheduler.DORMANT);
+		assertEquals(0, monster.getTicksSinceThought());
+
+		//nor one that thinks every tick
+		monster.setThinkInterval(AIScheduler.FAR_INTERVAL);
+		for (int i = 0; i < AIScheduler.FAR_INTERVAL; i++)
+			monster.process();
+		monster.setThinkInterval(1);
+		assertEquals(1, monster.getTicksSinceThought());
+	}
+
+	@Test
+	public void testDamageScalesWithTicksSinceThought()
+	{
+		monster.spawn(watcher.getCurrentTile());
+		monster.setState(new AttackState(watcher));
+		float strength = monster.getCharacterClass().getAttributes().getStrength();
+
+		//thinking every tick, it hits once a tick
+		monster.setThinkInterval(1);
+		monster.setThinking(true);
+		float health = watcher.getHealth();
+		monster.process();
+		assertEquals(1 + strength, health - watcher.getHealth(), 0.001f);
+
+		//thinking every FAR_INTERVAL ticks, it hits that much harder, however long it has been
+		monster.setThinkInterval(AIScheduler.FAR_INTERVAL);
+		monster.setThinking(false);
+		for (int i = 0; i < AIScheduler.FAR_INTERVAL*3; i++)
+			monster.process();
+		monster.setThinking(true);
+		health = watcher.getHealth();
+		monster.process();
+		assertEquals((1 + strength)*AIScheduler.FAR_INTERVAL, health - watcher.getHealth(), 0.001f);
+	}
+}
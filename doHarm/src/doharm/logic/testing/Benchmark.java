@@ -0,0 +1,103 @@
+package doharm.logic.testing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Times an operation and measures how much it allocates, so that changes made for performance
+ * can be compared against what was there before.
+ * Subclasses run one operation per call to runOperation().
+ * @author Roland
+ */
+public abstract class Benchmark 
+{
+	private String name;
+	
+	public Benchmark(String name)
+	{
+		this.name = name;
+	}
+	
+	/**
+	 * Run a single operation.
+	 * @param i how many operations have been run before this one.
+	 */
+	protected abstract void runOperation(int i);
+	
+	/**
+	 * Run the operation enough times for the JIT to settle, then measure it.
+	 * @return the results, which are also printed.
+	 */
+	public Result measure(int warmupOperations, int operations)
+	{
+		for (int i = 0; i < warmupOperations; i++)
+			runOperation(i);
+		
+		long bytesBefore = getAllocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < operations; i++)
+			runOperation(i);
+		long nanos = System.nanoTime() - start;
+		long bytes = getAllocatedBytes() - bytesBefore;
+		
+		Result result = new Result(name, operations, nanos, bytesBefore < 0 ? -1 : bytes);
+		System.out.println(result);
+		return result;
+	}
+	
+	/**
+	 * @return the number of bytes the current thread has allocated so far, or -1 if this JVM can't tell us.
+	 */
+	public static long getAllocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+	
+	public static class Result
+	{
+		private String name;
+		private int operations;
+		private long nanos;
+		private long bytes;
+		
+		public Result(String name, int operations, long nanos, long bytes)
+		{
+			this.name = name;
+			this.operations = operations;
+			this.nanos = nanos;
+			this.bytes = bytes;
+		}
+		
+		public double getOperationsPerSecond()
+		{
+			return operations * 1e9 / nanos;
+		}
+		
+		public double getMicrosPerOperation()
+		{
+			return nanos / 1e3 / operations;
+		}
+		
+		/**
+		 * @return bytes allocated per operation, or -1 if unknown.
+		 */
+		public double getBytesPerOperation()
+		{
+			return bytes < 0 ? -1 : (double)bytes / operations;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return String.format("%-32s %12.1f ops/s %10.2f us/op %10.1f B/op", 
+					name, getOperationsPerSecond(), getMicrosPerOperation(), getBytesPerOperation());
+		}
+	}
+}
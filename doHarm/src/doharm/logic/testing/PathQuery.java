@@ -0,0 +1,108 @@
+package doharm.logic.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import doharm.logic.world.ConnectedComponents;
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Tile;
+
+/**
+ * A start and goal tile, and repeatable sets of them, for testing and benchmarking the path finder.
+ * @author Roland
+ */
+public class PathQuery 
+{
+	public enum QueryType
+	{
+		SHORT, //a few tiles away
+		LONG, //a good way across the world
+		UNREACHABLE, //a wall, or a region that can't be walked to
+		CROSS_LAYER; //on another layer, through a ramp
+	}
+	
+	private static final int SHORT_DISTANCE = 8;
+	private static final int ATTEMPTS_PER_QUERY = 200;
+	
+	private Tile start;
+	private Tile goal;
+	
+	private PathQuery(Tile start, Tile goal)
+	{
+		this.start = start;
+		this.goal = goal;
+	}
+	
+	public Tile getStart()
+	{
+		return start;
+	}
+	
+	public Tile getGoal()
+	{
+		return goal;
+	}
+	
+	/**
+	 * @param seed the same seed and world always give the same queries.
+	 * @return up to count queries. Fewer are returned if the world doesn't have enough of them (eg. no ramps).
+	 */
+	public static List<PathQuery> generate(World world, QueryType type, int count, long seed)
+	{
+		Random random = new Random(seed);
+		ConnectedComponents components = world.getComponents();
+		List<Tile> open = new ArrayList<Tile>();
+		for (int i = 0; i < world.getNumTiles(); i++)
+		{
+			Tile tile = world.getTileByIndex(i);
+			if (tile.isEmpty() && components.getComponent(tile) != ConnectedComponents.NO_COMPONENT)
+				open.add(tile);
+		}
+		
+		List<PathQuery> queries = new ArrayList<PathQuery>();
+		if (open.isEmpty())
+			return queries;
+		
+		int longDistance = (world.getNumRows() + world.getNumCols()) / 4;
+		
+		for (int attempt = 0; attempt < count*ATTEMPTS_PER_QUERY && queries.size() < count; attempt++)
+		{
+			Tile start = open.get(random.nextInt(open.size()));
+			Tile goal;
+			if (type == QueryType.UNREACHABLE)
+				goal = world.getTileByIndex(random.nextInt(world.getNumTiles()));
+			else
+				goal = open.get(random.nextInt(open.size()));
+			
+			if (goal == start)
+				continue;
+			boolean sameComponent = components.getComponent(goal) == components.getComponent(start);
+			
+			int rows = Math.abs(goal.getRow() - start.getRow());
+			int cols = Math.abs(goal.getCol() - start.getCol());
+			boolean sameLayer = goal.getLayer() == start.getLayer();
+			
+			boolean accept = false;
+			switch (type)
+			{
+			case SHORT:
+				accept = sameComponent && sameLayer && Math.max(rows, cols) <= SHORT_DISTANCE;
+				break;
+			case LONG:
+				accept = sameComponent && sameLayer && rows + cols >= longDistance;
+				break;
+			case UNREACHABLE:
+				accept = !sameComponent;
+				break;
+			case CROSS_LAYER:
+				accept = sameComponent && !sameLayer;
+				break;
+			}
+			
+			if (accept)
+				queries.add(new PathQuery(start, goal));
+		}
+		return queries;
+	}
+}
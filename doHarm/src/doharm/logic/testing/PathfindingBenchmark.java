@@ -0,0 +1,113 @@
+package doharm.logic.testing;
+
+import java.util.List;
+
+import doharm.logic.testing.PathQuery.QueryType;
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Path;
+import doharm.logic.world.tiles.PathFinder;
+import doharm.net.NetworkMode;
+
+/**
+ * Measures how fast the path finder is, and how much it allocates, on each of the worlds.
+ * Paths are checked against a reference Dijkstra search first, so a faster path finder can't be a wrong one.
+ *
+ * Run from the project directory (so that res/ can be found), optionally with the names of the worlds to use.
+ * Worlds are loaded as a client, so no entities are spawned and the same seed always gives the same queries.
+ * @author Roland
+ */
+public class PathfindingBenchmark 
+{
+	private static final String[] WORLDS = {"world1", "world2", "world3", "world4", "world5"};
+	private static final int NUM_QUERIES = 200;
+	private static final int WARMUP_OPERATIONS = 2000;
+	private static final int OPERATIONS = 5000;
+	private static final long SEED = 1234;
+	
+	public static void main(String[] args)
+	{
+		String[] worlds = args.length > 0 ? args : WORLDS;
+		
+		int numErrors = 0;
+		for (String worldName: worlds)
+		{
+			World world = new World(null, worldName, NetworkMode.CLIENT);
+			System.out.println(worldName + ": " + world.getNumCols() + "x" + world.getNumRows() + 
+					"x" + world.getNumLayers() + ", " + world.getLayerTransitions().getRamps().size() + " ramps");
+			
+			for (QueryType type: QueryType.values())
+			{
+				List<PathQuery> queries = PathQuery.generate(world, type, NUM_QUERIES, SEED + type.ordinal());
+				String name = worldName + " " + type.toString().toLowerCase();
+				if (queries.isEmpty())
+				{
+					System.out.println(name + ": no queries of this type in this world");
+					continue;
+				}
+				
+				numErrors += check(world, name, queries);
+				new PathBenchmark(name, world, queries).measure(WARMUP_OPERATIONS, OPERATIONS);
+			}
+		}
+		
+		if (numErrors > 0)
+		{
+			System.out.println(numErrors + " paths did not match the reference search!");
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * @return the number of queries where the path finder disagreed with the reference search.
+	 */
+	private static int check(World world, String name, List<PathQuery> queries)
+	{
+		int numErrors = 0;
+		Path path = new Path();
+		for (PathQuery query: queries)
+		{
+			boolean found = PathFinder.calculatePath(world, query.getStart(), query.getGoal(), path);
+			float expected = ReferenceDijkstra.shortestPathLength(world, query.getStart(), query.getGoal());
+			
+			if (!found)
+			{
+				if (expected != ReferenceDijkstra.UNREACHABLE)
+				{
+					System.out.println(name + ": no path found, expected " + expected);
+					numErrors++;
+				}
+				continue;
+			}
+			
+			float length = ReferenceDijkstra.pathLength(world, query.getStart(), query.getGoal(), path);
+			if (Math.abs(length - expected) > 1e-3f * Math.max(1, expected))
+			{
+				System.out.println(name + ": path length " + length + ", expected " + expected);
+				numErrors++;
+			}
+		}
+		return numErrors;
+	}
+	
+	private static class PathBenchmark extends Benchmark
+	{
+		private World world;
+		private List<PathQuery> queries;
+		private Path path;
+		
+		public PathBenchmark(String name, World world, List<PathQuery> queries)
+		{
+			super(name);
+			this.world = world;
+			this.queries = queries;
+			path = new Path();
+		}
+		
+		@Override
+		protected void runOperation(int i)
+		{
+			PathQuery query = queries.get(i % queries.size());
+			PathFinder.calculatePath(world, query.getStart(), query.getGoal(), path);
+		}
+	}
+}
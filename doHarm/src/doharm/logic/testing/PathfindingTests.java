@@ -1,5 +1,229 @@
 package doharm.logic.testing;
 
-public class PathfindingTests {
+import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import doharm.logic.entities.EntityType;
+import doharm.logic.entities.characters.Character;
+import doharm.logic.entities.characters.states.MoveState;
+import doharm.logic.entities.objects.scenery.Tree;
+import doharm.logic.testing.PathQuery.QueryType;
+import doharm.logic.world.ConnectedComponents;
+import doharm.logic.world.ParallelPlanner;
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Path;
+import doharm.logic.world.tiles.PathFinder;
+import doharm.logic.world.tiles.Tile;
+import doharm.net.NetworkMode;
+
+public class PathfindingTests 
+{
+	private static final String[] WORLDS = {"world1", "world2", "world3", "world4", "world5"};
+	private static final int NUM_QUERIES = 50;
+	private static final long SEED = 42;
+	
+	@Test
+	public void testShortPathsAreShortest()
+	{
+		for (String worldName: WORLDS)
+			checkShortest(new World(null, worldName, NetworkMode.CLIENT), QueryType.SHORT);
+	}
+	
+	@Test
+	public void testLongPathsAreShortest()
+	{
+		for (String worldName: WORLDS)
+			checkShortest(new World(null, worldName, NetworkMode.CLIENT), QueryType.LONG);
+	}
+	
+	@Test
+	public void testUnreachable()
+	{
+		Path path = new Path();
+		for (String worldName: WORLDS)
+		{
+			World world = new World(null, worldName, NetworkMode.CLIENT);
+			for (PathQuery query: PathQuery.generate(world, QueryType.UNREACHABLE, NUM_QUERIES, SEED))
+			{
+				assertFalse(world.isReachable(query.getStart(), query.getGoal()));
+				assertFalse(PathFinder.calculatePath(world, query.getStart(), query.getGoal(), path));
+				assertTrue(path.isEmpty());
+				assertEquals(ReferenceDijkstra.UNREACHABLE, 
+						ReferenceDijkstra.shortestPathLength(world, query.getStart(), query.getGoal()), 0);
+			}
+		}
+	}
+	
+	@Test
+	public void testRegionsAreWhatCanBeWalked()
+	{
+		for (String worldName: WORLDS)
+		{
+			World world = new World(null, worldName, NetworkMode.CLIENT);
+			checkRegions(world);
+			
+			//trees on both sides of diagonal steps past walls, so only the diagonal step is left
+			List<Tile> corners = new ArrayList<Tile>();
+			for (int i = 0; i < world.getNumTiles(); i++)
+			{
+				Tile tile = world.getTileByIndex(i);
+				if (!tile.isNextToWall() || world.getComponents().getComponent(tile) == ConnectedComponents.NO_COMPONENT)
+					continue;
+				for (Tile neighbour: tile.getNeighbours())
+				{
+					if (neighbour.getLayer() == tile.getLayer() && neighbour.getRow() != tile.getRow() &&
+							neighbour.getCol() != tile.getCol() && neighbour.isNextToWall() &&
+							world.getComponents().getComponent(neighbour) != ConnectedComponents.NO_COMPONENT)
+					{
+						Tile[][] tiles = tile.getLayer().getTiles();
+						corners.add(tiles[tile.getRow()][neighbour.getCol()]);
+						corners.add(tiles[neighbour.getRow()][tile.getCol()]);
+					}
+				}
+			}
+			List<Tree> trees = new ArrayList<Tree>();
+			for (Tile corner: corners)
+			{
+				Tree tree = new Tree();
+				corner.addEntity(tree);
+				trees.add(tree);
+			}
+			checkRegions(world);
+			
+			for (int i = 0; i < trees.size(); i++)
+				corners.get(i).removeEntity(trees.get(i));
+			checkRegions(world);
+		}
+	}
+	
+	@Test
+	public void testSameQueriesForSameSeed()
+	{
+		World world = new World(null, "world3", NetworkMode.CLIENT);
+		List<PathQuery> a = PathQuery.generate(world, QueryType.LONG, NUM_QUERIES, SEED);
+		List<PathQuery> b = PathQuery.generate(world, QueryType.LONG, NUM_QUERIES, SEED);
+		
+		assertEquals(a.size(), b.size());
+		for (int i = 0; i < a.size(); i++)
+		{
+			assertTrue(a.get(i).getStart() == b.get(i).getStart());
+			assertTrue(a.get(i).getGoal() == b.get(i).getGoal());
+		}
+	}
+	
+	@Test
+	public void testParallelPlansMatchSerial()
+	{
+		World world = new World(null, "world1", NetworkMode.OFFLINE);
+		List<Character> characters = new ArrayList<Character>();
+		world.getEntityFactory().getEntities(EntityType.CHARACTER, true, characters);
+		assertFalse(characters.isEmpty());
+		for (Character character: characters)
+		{
+			Tile destination = world.getRandomEmptyTile(character.getCurrentTile());
+			if (destination != null)
+				character.setState(new MoveState(destination, true));
+		}
+		
+		new ParallelPlanner(1).plan(characters);
+		List<int[]> serial = new ArrayList<int[]>();
+		for (Character character: characters)
+			serial.add(copyPath(character));
+		
+		new ParallelPlanner(4).plan(characters);
+		for (int i = 0; i < characters.size(); i++)
+		{
+			int[] parallel = copyPath(characters.get(i));
+			assertEquals(serial.get(i).length, parallel.length);
+			for (int j = 0; j < parallel.length; j++)
+				assertEquals(serial.get(i)[j], parallel[j]);
+		}
+	}
+	
+	/**
+	 * Every open tile that can be stepped to (in either direction) from another has the same label,
+	 * and each label is only one of these areas, not several joined together (eg. across a diagonal wall).
+	 */
+	private void checkRegions(World world)
+	{
+		ConnectedComponents components = world.getComponents();
+		boolean[] seen = new boolean[world.getNumTiles()];
+		Set<Integer> labels = new HashSet<Integer>();
+		List<Tile> stack = new ArrayList<Tile>();
+		for (int i = 0; i < world.getNumTiles(); i++)
+		{
+			Tile start = world.getTileByIndex(i);
+			int label = components.getComponent(start);
+			if (seen[i] || label == ConnectedComponents.NO_COMPONENT)
+				continue;
+			assertTrue(labels.add(label));
+			
+			stack.add(start);
+			seen[i] = true;
+			while (!stack.isEmpty())
+			{
+				Tile tile = stack.remove(stack.size()-1);
+				assertEquals(label, components.getComponent(tile));
+				for (Tile neighbour: tile.getNeighbours())
+				{
+					if (seen[neighbour.getIndex()] || components.getComponent(neighbour) == ConnectedComponents.NO_COMPONENT)
+						continue;
+					if (PathFinder.isTraversable(tile, neighbour, neighbour) || PathFinder.isTraversable(neighbour, tile, tile))
+					{
+						seen[neighbour.getIndex()] = true;
+						stack.add(neighbour);
+					}
+				}
+			}
+		}
+	}
+	
+	private int[] copyPath(Character character)
+	{
+		if (!(character.getState() instanceof MoveState))
+			return new int[0];
+		Path path = ((MoveState)character.getState()).getPath();
+		int[] copy = new int[path.size()];
+		for (int i = 0; i < copy.length; i++)
+			copy[i] = path.get(i);
+		return copy;
+	}
+	
+	private void checkShortest(World world, QueryType type)
+	{
+		List<PathQuery> queries = PathQuery.generate(world, type, NUM_QUERIES, SEED);
+		assertFalse(queries.isEmpty());
+		
+		Path path = new Path();
+		for (PathQuery query: queries)
+		{
+			Tile start = query.getStart();
+			Tile goal = query.getGoal();
+			float expected = ReferenceDijkstra.shortestPathLength(world, start, goal);
+			boolean found = PathFinder.calculatePath(world, start, goal, path);
+			
+			assertEquals(expected != ReferenceDijkstra.UNREACHABLE, found);
+			if (!found)
+				continue;
+			
+			//every step has to be a legal move to the next tile
+			Tile previous = start;
+			for (int i = 0; i < path.size(); i++)
+			{
+				Tile next = path.getTile(world, i);
+				assertTrue(previous.getNeighbours().contains(next));
+				assertTrue(PathFinder.isTraversable(previous, next, goal));
+				previous = next;
+			}
+			assertTrue(previous == goal);
+			
+			assertEquals(expected, ReferenceDijkstra.pathLength(world, start, goal, path), 1e-3f * expected);
+		}
+	}
 }
@@ -0,0 +1,96 @@
+package doharm.logic.testing;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Path;
+import doharm.logic.world.tiles.PathFinder;
+import doharm.logic.world.tiles.Tile;
+
+/**
+ * A plain Dijkstra search using the same movement rules as the PathFinder.
+ * It's slow and makes plenty of garbage, but it's simple enough to trust,
+ * so the lengths of the paths the PathFinder finds can be checked against it.
+ * @author Roland
+ */
+public class ReferenceDijkstra 
+{
+	public static final float UNREACHABLE = Float.POSITIVE_INFINITY;
+	
+	/**
+	 * @return the length of the shortest path from start to goal, or UNREACHABLE.
+	 */
+	public static float shortestPathLength(World world, Tile start, Tile goal)
+	{
+		float[] lengths = new float[world.getNumTiles()];
+		Arrays.fill(lengths, UNREACHABLE);
+		lengths[start.getIndex()] = 0;
+		
+		PriorityQueue<Node> queue = new PriorityQueue<Node>();
+		queue.add(new Node(start, 0));
+		
+		while (!queue.isEmpty())
+		{
+			Node node = queue.poll();
+			Tile tile = node.tile;
+			if (node.length > lengths[tile.getIndex()])
+				continue; //already found a shorter way here
+			
+			if (tile == goal)
+				return node.length;
+			
+			for (Tile neighbour: tile.getNeighbours())
+			{
+				if (!PathFinder.isTraversable(tile, neighbour, goal))
+					continue;
+				
+				float length = node.length + tile.distanceToTile(neighbour);
+				if (length < lengths[neighbour.getIndex()])
+				{
+					lengths[neighbour.getIndex()] = length;
+					queue.add(new Node(neighbour, length));
+				}
+			}
+		}
+		return UNREACHABLE;
+	}
+	
+	/**
+	 * @return the length of a path found by the PathFinder, from the start to the goal.
+	 */
+	public static float pathLength(World world, Tile start, Tile goal, Path path)
+	{
+		float length = 0;
+		Tile previous = start;
+		for (int i = 0; i < path.size(); i++)
+		{
+			Tile next = path.getTile(world, i);
+			length += previous.distanceToTile(next);
+			previous = next;
+		}
+		
+		//the goal is left off the path if something is standing on it
+		if (previous != goal)
+			length += previous.distanceToTile(goal);
+		return length;
+	}
+	
+	private static class Node implements Comparable<Node>
+	{
+		private Tile tile;
+		private float length;
+		
+		public Node(Tile tile, float length)
+		{
+			this.tile = tile;
+			this.length = length;
+		}
+		
+		@Override
+		public int compareTo(Node node)
+		{
+			return Float.compare(length, node.length);
+		}
+	}
+}
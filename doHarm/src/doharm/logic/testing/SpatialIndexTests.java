@@ -0,0 +1,241 @@
+package doharm.logic.testing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import doharm.logic.entities.AbstractEntity;
+import doharm.logic.entities.EntityType;
+import doharm.logic.entities.characters.Character;
+import doharm.logic.world.SpatialIndex;
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Tile;
+import doharm.net.NetworkMode;
+
+/**
+ * Checks every query the SpatialIndex answers against looking at every entity in the world.
+ * @author Roland
+ */
+public class SpatialIndexTests
+{
+	private static final long SEED = 42;
+	private static final int NUM_QUERIES = 300;
+	private static final int NUM_MOVES = 2000;
+	private static final EntityType[] TYPES = {null, EntityType.CHARACTER, EntityType.ITEM, EntityType.OBJECT};
+
+	private World world;
+	private SpatialIndex index;
+	private Random random;
+	private Map<AbstractEntity, Integer> layers; //the layer each entity in the index should be on
+
+	@Before
+	public void setUp()
+	{
+		world = new World(null, "world1", NetworkMode.OFFLINE);
+		index = world.getSpatialIndex();
+		random = new Random(SEED);
+		layers = new HashMap<AbstractEntity, Integer>();
+		List<AbstractEntity> entities = new ArrayList<AbstractEntity>();
+		world.getEntityFactory().getAllEntities(entities);
+		for (AbstractEntity entity: entities)
+		{
+			if (entity.getCurrentTile() != null)
+				layers.put(entity, entity.getCurrentLayer().getLayerNumber());
+		}
+	}
+
+	@Test
+	public void testQueries()
+	{
+		checkLayers();
+		checkQueries();
+	}
+
+	@Test
+	public void testMovingBetweenCellsAndLayers()
+	{
+		//only the ground can be walked on, so the characters are put on the other layers of a new index by hand
+		index = new SpatialIndex(world);
+		for (AbstractEntity entity: layers.keySet())
+			index.move(entity, entity.getCurrentTile());
+		checkLayers();
+
+		List<Character> characters = new ArrayList<Character>();
+		world.getEntityFactory().getEntities(EntityType.CHARACTER, true, characters);
+		assertFalse(characters.isEmpty());
+		List<Tile> walkable = new ArrayList<Tile>();
+		for (int i = 0; i < world.getNumTiles(); i++)
+		{
+			Tile tile = world.getTileByIndex(i);
+			if (tile.isWalkable())
+				walkable.add(tile);
+		}
+
+		for (int i = 0; i < NUM_MOVES; i++)
+		{
+			Character character = characters.get(random.nextInt(characters.size()));
+			if (random.nextInt(10) == 0)
+			{
+				index.remove(character);
+				layers.remove(character);
+				continue;
+			}
+
+			//anywhere on the tile, often far away
+			Tile tile;
+			if (random.nextBoolean())
+				tile = walkable.get(random.nextInt(walkable.size()));
+			else
+				tile = nearby(character.getCurrentTile(), walkable);
+			character.setPosition(tile.getX() + random.nextFloat()*world.getTileWidth(),
+					tile.getY() + random.nextFloat()*world.getTileHeight(), tile.getLayer());
+
+			//and sometimes onto another layer
+			int layer = random.nextInt(3) == 0 ? random.nextInt(world.getNumLayers()) : tile.getLayer().getLayerNumber();
+			tile = world.getLayer(layer).getTiles()[character.getCurrentTile().getRow()][character.getCurrentTile().getCol()];
+			index.move(character, tile);
+			layers.put(character, layer);
+		}
+		checkLayers();
+		checkQueries();
+	}
+
+	/**
+	 * @return a walkable tile a couple of cells away at most, so characters also move to the cells next to theirs.
+	 */
+	private Tile nearby(Tile from, List<Tile> walkable)
+	{
+		for (int attempt = 0; attempt < 100; attempt++)
+		{
+			Tile tile = walkable.get(random.nextInt(walkable.size()));
+			if (tile.getLayer() == from.getLayer() && Math.abs(tile.getRow() - from.getRow()) <= SpatialIndex.CELL_SIZE*2 &&
+					Math.abs(tile.getCol() - from.getCol()) <= SpatialIndex.CELL_SIZE*2)
+				return tile;
+		}
+		return from;
+	}
+
+	/**
+	 * @return every entity the index should have on a layer.
+	 */
+	private List<AbstractEntity> getExpected(int layer)
+	{
+		List<AbstractEntity> expected = new ArrayList<AbstractEntity>();
+		for (Map.Entry<AbstractEntity, Integer> entry: layers.entrySet())
+		{
+			if (entry.getValue() == layer)
+				expected.add(entry.getKey());
+		}
+		return expected;
+	}
+
+	private void checkLayers()
+	{
+		for (int layer = 0; layer < world.getNumLayers(); layer++)
+		{
+			List<AbstractEntity> entities = index.getEntities(layer);
+			assertEquals(new HashSet<AbstractEntity>(getExpected(layer)), new HashSet<AbstractEntity>(entities));
+			assertEquals(new HashSet<AbstractEntity>(entities).size(), entities.size());
+		}
+	}
+
+	private void checkQueries()
+	{
+		float width = world.getNumCols()*world.getTileWidth();
+		float height = world.getNumRows()*world.getTileHeight();
+		List<AbstractEntity> result = new ArrayList<AbstractEntity>();
+		for (int i = 0; i < NUM_QUERIES; i++)
+		{
+			int layer = random.nextInt(world.getNumLayers());
+			List<AbstractEntity> expected = getExpected(layer);
+			EntityType type = TYPES[random.nextInt(TYPES.length)];
+			//some just outside the world too
+			float x = random.nextFloat()*width*1.2f - width*0.1f;
+			float y = random.nextFloat()*height*1.2f - height*0.1f;
+			float radius = random.nextFloat()*world.getTileWidth()*SpatialIndex.CELL_SIZE*5;
+
+			//the result list may already have something in it, which has to be left alone
+			result.clear();
+			result.add(null);
+			index.getEntitiesInRadius(layer, x, y, radius, type, result);
+			assertTrue(result.remove(0) == null);
+			Set<AbstractEntity> inRadius = new HashSet<AbstractEntity>();
+			for (AbstractEntity entity: expected)
+			{
+				if (isType(entity, type) && getDistance(entity, x, y) <= radius*radius)
+					inRadius.add(entity);
+			}
+			assertEquals(inRadius.size(), result.size());
+			assertEquals(inRadius, new HashSet<AbstractEntity>(result));
+
+			float maxX = x + random.nextFloat()*width*0.3f;
+			float maxY = y + random.nextFloat()*height*0.3f;
+			result.clear();
+			index.getEntitiesInRect(layer, x, y, maxX, maxY, type, result);
+			Set<AbstractEntity> inRect = new HashSet<AbstractEntity>();
+			for (AbstractEntity entity: expected)
+			{
+				if (isType(entity, type) && entity.getX() >= x && entity.getX() <= maxX && entity.getY() >= y && entity.getY() <= maxY)
+					inRect.add(entity);
+			}
+			assertEquals(inRect.size(), result.size());
+			assertEquals(inRect, new HashSet<AbstractEntity>(result));
+
+			//from one to more than there are, and with or without a limit on how far to look
+			int k = 1 + random.nextInt(random.nextBoolean() ? 5 : expected.size() + 5);
+			float maxRadius = random.nextBoolean() ? Float.MAX_VALUE : radius;
+			checkNearest(layer, x, y, k, maxRadius, type, expected);
+		}
+	}
+
+	private void checkNearest(int layer, float x, float y, int k, float maxRadius, EntityType type, List<AbstractEntity> expected)
+	{
+		List<Float> distances = new ArrayList<Float>();
+		for (AbstractEntity entity: expected)
+		{
+			float distance = getDistance(entity, x, y);
+			if (isType(entity, type) && distance <= maxRadius*maxRadius)
+				distances.add(distance);
+		}
+		float[] sorted = new float[distances.size()];
+		for (int i = 0; i < sorted.length; i++)
+			sorted[i] = distances.get(i);
+		Arrays.sort(sorted);
+
+		List<AbstractEntity> result = new ArrayList<AbstractEntity>();
+		index.getNearest(layer, x, y, k, maxRadius, type, result);
+		assertEquals(Math.min(k, sorted.length), result.size());
+		assertEquals(result.size(), new HashSet<AbstractEntity>(result).size());
+		//closest first, and no closer one left out (which one of a tie is found doesn't matter)
+		for (int i = 0; i < result.size(); i++)
+		{
+			assertTrue(isType(result.get(i), type));
+			assertTrue(getDistance(result.get(i), x, y) == sorted[i]);
+		}
+	}
+
+	private boolean isType(AbstractEntity entity, EntityType type)
+	{
+		return type == null || entity.getEntityType() == type;
+	}
+
+	/**
+	 * @return the distance squared, worked out the same way as the index does.
+	 */
+	private float getDistance(AbstractEntity entity, float x, float y)
+	{
+		float dx = entity.getX() - x;
+		float dy = entity.getY() - y;
+		return dx*dx + dy*dy;
+	}
+}
@@ -1,5 +1,88 @@
 package doharm.logic.testing;
 
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import doharm.logic.entities.EntityType;
+import doharm.logic.entities.characters.Character;
+import doharm.logic.time.TimedEvent;
+import doharm.logic.time.TimerWheel;
+import doharm.logic.world.World;
+import doharm.net.NetworkMode;
+
 public class SpawnTests {
 
+	@Test
+	public void testEventsRunOnTheirTick()
+	{
+		final TimerWheel timers = new TimerWheel();
+		final List<Long> ran = new ArrayList<Long>();
+		int[] delays = {1, 44, 300, 556}; //some further away than one turn of the wheel
+		for (int delay: delays)
+		{
+			timers.schedule(new TimedEvent()
+			{
+				@Override
+				public void run()
+				{
+					ran.add(timers.getTick());
+				}
+			}, delay);
+		}
+
+		for (int i = 0; i < 600; i++)
+			timers.advance();
+
+		assertEquals(delays.length, ran.size());
+		for (int i = 0; i < delays.length; i++)
+			assertEquals(delays[i], (long)ran.get(i));
+		assertEquals(0, timers.size());
+	}
+
+	@Test
+	public void testCancelledEventsDontRun()
+	{
+		TimerWheel timers = new TimerWheel();
+		final boolean[] ran = new boolean[1];
+		TimedEvent event = new TimedEvent()
+		{
+			@Override
+			public void run()
+			{
+				ran[0] = true;
+			}
+		};
+		timers.schedule(event, 10);
+		timers.cancel(event);
+		for (int i = 0; i < 20; i++)
+			timers.advance();
+
+		assertFalse(ran[0]);
+		assertFalse(event.isScheduled());
+	}
+
+	@Test
+	public void testRespawnAfterTicks()
+	{
+		World world = new World(null, "world1", NetworkMode.OFFLINE);
+		List<Character> dead = new ArrayList<Character>();
+		world.getEntityFactory().getEntities(EntityType.CHARACTER, false, dead);
+		assertFalse(dead.isEmpty());
+
+		Character character = dead.get(0);
+		character.respawnIn(1000);
+		int ticks = TimerWheel.toTicks(1000);
+		for (int i = 1; i < ticks; i++)
+		{
+			world.process();
+			assertFalse(character.isAlive());
+		}
+		world.process();
+		assertTrue(character.isAlive());
+		assertEquals(0, character.getTimeTillSpawn());
+	}
 }
@@ -12,7 +12,6 @@ public class TestGame extends AbstractGame
 	public TestGame(MainWindow window)
 	{
 		super(NetworkMode.OFFLINE);
-		getClock().setWindow(window);
 		getClock().start();
 	}
 }
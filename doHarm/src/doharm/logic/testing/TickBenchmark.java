@@ -0,0 +1,54 @@
+package doharm.logic.testing;
+
+import java.awt.Color;
+
+import doharm.logic.entities.EntityType;
+import doharm.logic.entities.characters.classes.CharacterClassType;
+import doharm.logic.entities.characters.players.PlayerType;
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Tile;
+import doharm.net.NetworkMode;
+
+/**
+ * Measures how long a whole World.process() takes, and how much it allocates, 
+ * on a busy world with lots of AI players wandering around and fighting.
+ *
+ * Run from the project directory (so that res/ can be found), optionally with the name of the world
+ * and the number of AI players to add.
+ * @author Roland
+ */
+public class TickBenchmark 
+{
+	private static final String WORLD = "world1";
+	private static final int NUM_AI_PLAYERS = 100;
+	private static final int WARMUP_TICKS = 2500; //long enough for every monster to have spawned
+	private static final int TICKS = 5000;
+	
+	public static void main(String[] args)
+	{
+		String worldName = args.length > 0 ? args[0] : WORLD;
+		int numPlayers = args.length > 1 ? Integer.parseInt(args[1]) : NUM_AI_PLAYERS;
+		
+		final World world = new World(null, worldName, NetworkMode.OFFLINE);
+		for (int i = 0; i < numPlayers; i++)
+		{
+			Tile tile = world.getRandomEmptyTile();
+			if (tile == null)
+				break;
+			world.getPlayerFactory().createPlayer(tile, "Bench" + i, CharacterClassType.WARRIOR, 
+					world.getIDManager().takeID(), PlayerType.AI, Color.gray, false);
+		}
+		
+		Benchmark benchmark = new Benchmark(worldName + " tick") 
+		{
+			@Override
+			protected void runOperation(int i)
+			{
+				world.process();
+			}
+		};
+		benchmark.measure(WARMUP_TICKS, TICKS);
+		System.out.println(world.getEntityFactory().getNumAlive(EntityType.CHARACTER) + " characters alive, " +
+				world.getEntityFactory().getNumDead(EntityType.CHARACTER) + " dead");
+	}
+}
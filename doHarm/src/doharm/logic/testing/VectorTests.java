@@ -1,5 +1,61 @@
 package doharm.logic.testing;
 
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import doharm.logic.physics.Vector;
+
 public class VectorTests {
 
+	@Test
+	public void testLength()
+	{
+		Vector v = new Vector(3, 4);
+		assertEquals(5, v.getLength(), 1e-6);
+		assertEquals(25, v.lengthSquared(), 1e-6);
+	}
+	
+	@Test
+	public void testLengthChangesWithVector()
+	{
+		Vector v = new Vector(3, 4);
+		assertEquals(5, v.getLength(), 1e-6);
+		v.multiply(2);
+		assertEquals(10, v.getLength(), 1e-6);
+		v.add(-6, -8);
+		assertEquals(0, v.getLength(), 1e-6);
+		v.setX(1);
+		assertEquals(1, v.getLength(), 1e-6);
+		v.reset();
+		assertEquals(0, v.getLength(), 1e-6);
+	}
+	
+	@Test
+	public void testNormalize()
+	{
+		Vector v = new Vector(10, 0);
+		v.normalize();
+		assertEquals(new Vector(1, 0), v);
+		assertEquals(1, v.getLength(), 1e-6);
+		
+		v.set(0, 0);
+		v.normalize();
+		assertEquals(new Vector(0, 0), v);
+	}
+	
+	@Test
+	public void testSubtractInto()
+	{
+		Vector a = new Vector(5, 7);
+		Vector result = new Vector(100, 100);
+		assertSame(result, a.subtractInto(2, 3, result));
+		assertEquals(new Vector(3, 4), result);
+		assertEquals(5, result.getLength(), 1e-6);
+		
+		a.subtractInto(new Vector(5, 7), result);
+		assertEquals(new Vector(0, 0), result);
+		assertEquals(0, result.getLength(), 1e-6);
+		assertEquals(a.subtract(1, 1), a.subtractInto(1, 1, result));
+	}
 }
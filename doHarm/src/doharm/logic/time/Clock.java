@@ -1,38 +1,44 @@
 package doharm.logic.time;
 
-import doharm.gui.view.MainWindow;
 import doharm.logic.AbstractGame;
 
+/**
+ * Runs the game at a fixed rate, one tick every CLOCK_INTERVAL milliseconds, however long the frames take to draw.
+ * Drawing happens on its own thread (see RenderThread), from what the last tick left behind.
+ * 
+ * If a tick takes too long the next ones run straight away to catch up,
+ * but if the game falls more than MAX_BEHIND ticks behind it gives up and carries on from now.
+ */
 public class Clock extends Thread
 {
 	public static final int CLOCK_INTERVAL = 30;
+	public static final int MAX_BEHIND = 5;
 	
-	private MainWindow window;
 	private AbstractGame game;
 			
 	public Clock(AbstractGame game)
 	{
+		super("clock");
 		this.game = game;
 	}
 	
-	public void setWindow(MainWindow window) 
-	{
-		this.window = window;
-	}
-	
 	public void run()
 	{
+		long interval = CLOCK_INTERVAL * 1000000L;
+		long next = System.nanoTime();
 		while(true)
 		{
-			if (window != null && window.hasGame() )
-				window.repaint(); //calls game.run(); immediately before painting, as we can't guarantee when the game will be repainted.
-			else
-			{
-				game.run();
-			}
+			game.run();
+			
+			next += interval;
+			long wait = next - System.nanoTime();
+			if (wait < -MAX_BEHIND*interval)
+				next = System.nanoTime();
+			if (wait <= 0)
+				continue;
 			try 
 			{
-				Thread.sleep(CLOCK_INTERVAL);
+				Thread.sleep(wait / 1000000, (int)(wait % 1000000));
 			} 
 			catch (InterruptedException e){}
 		}
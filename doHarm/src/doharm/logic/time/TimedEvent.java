@@ -0,0 +1,34 @@
+package doharm.logic.time;
+
+/**
+ * Something that happens after a number of ticks, eg. a character respawning.
+ * Events are scheduled on the world's TimerWheel, and can be rescheduled or cancelled at any time.
+ * @author Roland
+ */
+public abstract class TimedEvent
+{
+	//where the event is in the wheel, set by TimerWheel
+	long dueTick;
+	int slot;
+	TimedEvent next;
+	TimedEvent previous;
+	boolean scheduled;
+	
+	/**
+	 * Called once, on the tick the event is due.
+	 */
+	public abstract void run();
+	
+	public boolean isScheduled()
+	{
+		return scheduled;
+	}
+	
+	/**
+	 * @return the tick the event will run on. Only meaningful while it is scheduled.
+	 */
+	public long getDueTick()
+	{
+		return dueTick;
+	}
+}
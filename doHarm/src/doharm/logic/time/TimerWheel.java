@@ -0,0 +1,137 @@
+package doharm.logic.time;
+
+/**
+ * Runs TimedEvents once a number of simulation ticks have passed, without looking at them until they are due.
+ *
+ * Events are hashed by the tick they are due on into a ring of slots, one slot per tick,
+ * and each tick only the events in the current slot are checked.
+ * Events due further away than the number of slots just stay in their slot until their tick comes around.
+ * Scheduling and cancelling are constant time.
+ *
+ * Everything is counted in ticks rather than milliseconds, so timing stays the same
+ * however fast or slow the simulation is actually running.
+ * @author Roland
+ */
+public class TimerWheel
+{
+	private static final int NUM_SLOTS = 256; //a power of two, so the slot is the bottom bits of the tick
+	private static final int MASK = NUM_SLOTS - 1;
+	private static final int DUE = NUM_SLOTS; //an extra slot for the events about to run this tick
+	
+	private TimedEvent[] slots; //the first event in each slot's list
+	private long tick;
+	private int size;
+	
+	public TimerWheel()
+	{
+		slots = new TimedEvent[NUM_SLOTS + 1];
+	}
+	
+	/**
+	 * @return how many ticks the millis would take at the normal speed, at least 1.
+	 */
+	public static int toTicks(long millis)
+	{
+		return (int)Math.max(1, (millis + Clock.CLOCK_INTERVAL - 1) / Clock.CLOCK_INTERVAL);
+	}
+	
+	/**
+	 * @return how long a number of ticks takes at the normal speed.
+	 */
+	public static long toMillis(long ticks)
+	{
+		return ticks * Clock.CLOCK_INTERVAL;
+	}
+	
+	public long getTick()
+	{
+		return tick;
+	}
+	
+	/**
+	 * @return the number of events waiting to run.
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Run the event after a number of ticks. If it is already scheduled, it is moved.
+	 * @param delay number of ticks from now, at least 1.
+	 */
+	public void schedule(TimedEvent event, int delay)
+	{
+		if (event.scheduled)
+			cancel(event);
+		
+		event.dueTick = tick + Math.max(delay, 1);
+		link(event, (int)(event.dueTick & MASK));
+		event.scheduled = true;
+		size++;
+	}
+	
+	private void link(TimedEvent event, int slot)
+	{
+		event.slot = slot;
+		event.previous = null;
+		event.next = slots[slot];
+		if (event.next != null)
+			event.next.previous = event;
+		slots[slot] = event;
+	}
+	
+	private void unlink(TimedEvent event)
+	{
+		if (event.previous != null)
+			event.previous.next = event.next;
+		else
+			slots[event.slot] = event.next;
+		if (event.next != null)
+			event.next.previous = event.previous;
+		event.next = null;
+		event.previous = null;
+	}
+	
+	/**
+	 * Stop the event from running. Does nothing if it isn't scheduled.
+	 */
+	public void cancel(TimedEvent event)
+	{
+		if (!event.scheduled)
+			return;
+		
+		unlink(event);
+		event.scheduled = false;
+		size--;
+	}
+	
+	/**
+	 * Move on to the next tick, and run everything due on it.
+	 * Events can schedule other events (or themselves) while they run.
+	 */
+	public void advance()
+	{
+		tick++;
+		
+		//take out the events due now first, so that running one can safely cancel or move any other
+		TimedEvent event = slots[(int)(tick & MASK)];
+		while (event != null)
+		{
+			TimedEvent next = event.next;
+			if (event.dueTick == tick)
+			{
+				unlink(event);
+				link(event, DUE);
+			}
+			event = next;
+		}
+		
+		while (slots[DUE] != null)
+		{
+			event = slots[DUE];
+			cancel(event);
+			event.run();
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package doharm.logic.world;
+
+import java.util.Arrays;
+
+import doharm.logic.world.tiles.Tile;
+
+/**
+ * Labels every tile that can be walked through with the connected region it belongs to.
+ * Two tiles with different labels can never reach each other, so unreachable goals
+ * can be rejected straight away instead of searching until the path finder runs out of nodes.
+ *
+ * Tiles blocked by objects (trees, chests...) are left unlabelled, and the labels are kept up to date
+ * as objects are placed or removed and as tiles change, rather than relabelling the whole world.
+ *
+ * Two tiles are only joined if a character could step between them, so diagonal steps onto tiles next to walls
+ * (see PathFinder.isTraversable) only count if the step the other way is allowed.
+ * Characters and items aren't counted, so a path may still not be found between two tiles with the same label.
+ * FreeTiles is told whenever a tile's label changes, since it keeps the free tiles of each region together.
+ *
+ * @author Roland
+ */
+public class ConnectedComponents
+{
+	public static final int NO_COMPONENT = -1;
+
+	private World world;
+	private int[] components; //indexed by Tile.getIndex()
+	private int[] sizes; //number of tiles with each label
+	private int numComponents; //labels handed out so far, some may now be empty
+	private int[] stack;
+	private Tile[] ringTiles = new Tile[9]; //the 3x3 tiles around a closed tile, see neighboursStayConnected
+	private boolean[] ringOpen = new boolean[9];
+	private boolean[] ringLinked = new boolean[9];
+	private int[] ring = new int[8];
+
+	public ConnectedComponents(World world)
+	{
+		this.world = world;
+		components = new int[world.getNumTiles()];
+		sizes = new int[16];
+		stack = new int[components.length];
+
+		labelAll();
+	}
+
+	private boolean isOpen(Tile tile)
+	{
+		return tile.isPassable() && !tile.isBlocked();
+	}
+
+	/**
+	 * @return whether a character could step from one of these neighbouring tiles to the other, in at least one direction.
+	 */
+	private static boolean isLinked(Tile a, Tile b)
+	{
+		return a.getRow() == b.getRow() || a.getCol() == b.getCol() || !a.isNextToWall() || !b.isNextToWall();
+	}
+
+	private void labelAll()
+	{
+		Arrays.fill(components, NO_COMPONENT);
+		Arrays.fill(sizes, 0);
+		numComponents = 0;
+
+		for (int index = 0; index < components.length; index++)
+		{
+			if (components[index] == NO_COMPONENT && isOpen(world.getTileByIndex(index)))
+				flood(index, NO_COMPONENT, newLabel());
+		}
+	}
+
+	private int newLabel()
+	{
+		if (numComponents == sizes.length)
+			sizes = Arrays.copyOf(sizes, sizes.length*2);
+		sizes[numComponents] = 0;
+		return numComponents++;
+	}
+
+	/**
+	 * Give every open tile connected to start that currently has the label from the label to.
+	 */
+	private void flood(int start, int from, int to)
+	{
+		int size = 0;
+		stack[size++] = start;
+		setComponent(start, to);
+		sizes[to]++;
+
+		while (size > 0)
+		{
+			Tile tile = world.getTileByIndex(stack[--size]);
+			for (int i = 0; i < tile.getNumNeighbours(); i++)
+			{
+				Tile neighbour = tile.getNeighbour(i);
+				int index = neighbour.getIndex();
+				if (components[index] == from && isOpen(neighbour) && isLinked(tile, neighbour))
+				{
+					setComponent(index, to);
+					sizes[to]++;
+					if (from != NO_COMPONENT)
+						sizes[from]--;
+					stack[size++] = index;
+				}
+			}
+		}
+	}
+
+	private void setComponent(int index, int label)
+	{
+		components[index] = label;
+		FreeTiles freeTiles = world.getFreeTiles();
+		if (freeTiles != null) //not made yet while the world is first labelled
+			freeTiles.componentChanged(world.getTileByIndex(index));
+	}
+
+	/**
+	 * Called whenever something changes whether a tile can be walked through
+	 * (an object placed on it or removed, or the tile itself changing).
+	 */
+	public void update(Tile tile)
+	{
+		int index = tile.getIndex();
+		boolean open = isOpen(tile);
+		boolean labelled = components[index] != NO_COMPONENT;
+
+		if (open && !labelled)
+			open(tile);
+		else if (!open && labelled)
+			close(tile);
+	}
+
+	/**
+	 * The tile joins the biggest region it is linked to, and any other regions it links to are merged into that one.
+	 */
+	private void open(Tile tile)
+	{
+		int index = tile.getIndex();
+		int largest = NO_COMPONENT;
+		for (int i = 0; i < tile.getNumNeighbours(); i++)
+		{
+			Tile neighbour = tile.getNeighbour(i);
+			int label = components[neighbour.getIndex()];
+			if (label != NO_COMPONENT && isLinked(tile, neighbour) && (largest == NO_COMPONENT || sizes[label] > sizes[largest]))
+				largest = label;
+		}
+
+		if (largest == NO_COMPONENT)
+		{
+			flood(index, NO_COMPONENT, newLabel());
+			return;
+		}
+
+		setComponent(index, largest);
+		sizes[largest]++;
+
+		for (int i = 0; i < tile.getNumNeighbours(); i++)
+		{
+			Tile neighbour = tile.getNeighbour(i);
+			int label = components[neighbour.getIndex()];
+			if (label != NO_COMPONENT && label != largest && isLinked(tile, neighbour))
+				flood(neighbour.getIndex(), label, largest);
+		}
+	}
+
+	/**
+	 * Removing a tile can split its region into pieces.
+	 * Usually the open tiles around it still touch each other, in which case nothing else changes.
+	 * Otherwise every piece is flooded with a new label, and the old label is left empty.
+	 */
+	private void close(Tile tile)
+	{
+		int index = tile.getIndex();
+		int label = components[index];
+		setComponent(index, NO_COMPONENT);
+		sizes[label]--;
+
+		if (neighboursStayConnected(tile))
+			return;
+
+		for (int i = 0; i < tile.getNumNeighbours(); i++)
+		{
+			Tile neighbour = tile.getNeighbour(i);
+			if (components[neighbour.getIndex()] == label)
+				flood(neighbour.getIndex(), label, newLabel());
+		}
+	}
+
+	/**
+	 * Checks whether the open tiles that were linked to a tile that was just closed can still reach each other
+	 * through the ring of tiles around it, without going through the middle.
+	 * Tiles joined to another layer by a ramp are never assumed to stay connected.
+	 */
+	private boolean neighboursStayConnected(Tile tile)
+	{
+		for (int i = 0; i < tile.getNumNeighbours(); i++)
+		{
+			Tile neighbour = tile.getNeighbour(i);
+			if (components[neighbour.getIndex()] != NO_COMPONENT && neighbour.getLayer() != tile.getLayer() &&
+					isLinked(tile, neighbour))
+				return false;
+		}
+
+		int numLinked = 0;
+		int start = 0;
+		for (int i = 0; i < tile.getNumNeighbours(); i++)
+		{
+			Tile neighbour = tile.getNeighbour(i);
+			if (components[neighbour.getIndex()] == NO_COMPONENT || neighbour.getLayer() != tile.getLayer())
+				continue;
+			boolean linked = isLinked(tile, neighbour);
+
+			int cell = (neighbour.getRow() - tile.getRow() + 1)*3 + neighbour.getCol() - tile.getCol() + 1;
+			ringTiles[cell] = neighbour;
+			ringOpen[cell] = true;
+			ringLinked[cell] = linked;
+			if (linked)
+			{
+				start = cell;
+				numLinked++;
+			}
+		}
+
+		//flood around the ring, through any open tile but only counting the linked ones
+		int found = 0;
+		int size = 0;
+		if (numLinked > 1)
+		{
+			ring[size++] = start;
+			ringOpen[start] = false;
+		}
+		while (size > 0)
+		{
+			int cell = ring[--size];
+			if (ringLinked[cell])
+				found++;
+			for (int y = -1; y <= 1; y++)
+			{
+				for (int x = -1; x <= 1; x++)
+				{
+					int row = cell/3 + y;
+					int col = cell%3 + x;
+					int next = row*3 + col;
+					if (row >= 0 && col >= 0 && row < 3 && col < 3 && ringOpen[next] &&
+							isLinked(ringTiles[cell], ringTiles[next]))
+					{
+						ringOpen[next] = false;
+						ring[size++] = next;
+					}
+				}
+			}
+		}
+		Arrays.fill(ringTiles, null);
+		Arrays.fill(ringOpen, false);
+		Arrays.fill(ringLinked, false);
+		return numLinked <= 1 || found == numLinked;
+	}
+
+	/**
+	 * @return the label of the region this tile is in, or NO_COMPONENT if it can't be walked through.
+	 */
+	public int getComponent(Tile tile)
+	{
+		return components[tile.getIndex()];
+	}
+
+	/**
+	 * Constant time check for whether a path could possibly exist.
+	 * @param start where the path starts from. Doesn't have to be open itself (eg. after being pushed).
+	 * @param goal the destination. If an object is on it, it is reachable if a tile next to it is.
+	 * @return false if the goal can never be reached from the start.
+	 */
+	public boolean isReachable(Tile start, Tile goal)
+	{
+		int startComponent = getComponent(start);
+		int goalComponent = getComponent(goal);
+		if (startComponent != NO_COMPONENT && goalComponent != NO_COMPONENT)
+			return startComponent == goalComponent;
+
+		if (goalComponent == NO_COMPONENT && !goal.isPassable())
+			return false;
+
+		if (startComponent != NO_COMPONENT)
+			return touches(goal, startComponent);
+		if (goalComponent != NO_COMPONENT)
+			return touches(start, goalComponent);
+
+		for (int i = 0; i < start.getNumNeighbours(); i++)
+		{
+			Tile neighbour = start.getNeighbour(i);
+			int label = getComponent(neighbour);
+			if (label != NO_COMPONENT && isLinked(start, neighbour) && touches(goal, label))
+				return true;
+		}
+		return false;
+	}
+
+	private boolean touches(Tile tile, int label)
+	{
+		for (int i = 0; i < tile.getNumNeighbours(); i++)
+		{
+			Tile neighbour = tile.getNeighbour(i);
+			if (getComponent(neighbour) == label && isLinked(tile, neighbour))
+				return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,240 @@
+package doharm.logic.world;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import doharm.logic.entities.AbstractEntity;
+import doharm.logic.world.tiles.Tile;
+import doharm.logic.world.tiles.TileType;
+
+/**
+ * Works out which tiles can be seen from a tile, with walls blocking the view, using recursive shadowcasting.
+ * Each of the eight octants around the origin is scanned row by row, moving outwards,
+ * and a wall narrows the range of slopes that the rows behind it can see.
+ *
+ * The result for each entity is cached and only worked out again when it moves to another tile
+ * (or a wall changes), so lighting, and later fog of war, can share it.
+ * Only tiles on the same layer can be seen, as the floors in between get in the way.
+ * @author Roland
+ */
+public class FieldOfView
+{
+	//how to turn (row, column) in the first octant into (x, y) offsets for each of the eight octants
+	private static final int[][] OCTANTS = {
+		{1, 0, 0, -1, -1, 0, 0, 1},
+		{0, 1, -1, 0, 0, -1, 1, 0},
+		{0, 1, 1, 0, 0, -1, -1, 0},
+		{1, 0, 0, 1, -1, 0, 0, -1},
+	};
+
+	private int numRows;
+	private int numCols;
+	private boolean[][] opaque; //[layer][row*numCols + col]
+	private int version; //goes up every time a wall changes, so cached results know they're out of date
+
+	private Map<AbstractEntity, Visibility> cache;
+
+	//the search currently being done
+	private Visibility result;
+	private boolean[] layerOpaque;
+	private int radius;
+
+	public FieldOfView(World world)
+	{
+		numRows = world.getNumRows();
+		numCols = world.getNumCols();
+		cache = new WeakHashMap<AbstractEntity, Visibility>();
+
+		opaque = new boolean[world.getNumLayers()][numRows*numCols];
+		for (int i = 0; i < world.getNumTiles(); i++)
+			updateOpacity(world.getTileByIndex(i));
+	}
+
+	private void updateOpacity(Tile tile)
+	{
+		opaque[tile.getLayer().getLayerNumber()][tile.getRow()*numCols + tile.getCol()] = tile.getType() == TileType.WALL;
+	}
+
+	/**
+	 * Called by the world when a tile changes, in case it has become (or stopped being) a wall.
+	 */
+	public void tileChanged(Tile tile)
+	{
+		updateOpacity(tile);
+		version++;
+	}
+
+	/**
+	 * @return what the entity can see within the radius, worked out again only if it has moved to another tile
+	 * or a wall has changed. The result is reused, so copy anything that needs to be kept after the entity moves.
+	 */
+	public Visibility getVisibility(AbstractEntity entity, int radius)
+	{
+		Visibility visibility = cache.get(entity);
+		if (visibility == null)
+		{
+			visibility = new Visibility(numRows, numCols);
+			cache.put(entity, visibility);
+		}
+
+		Tile tile = entity.getCurrentTile();
+		if (visibility.origin != tile || visibility.radius != radius || visibility.version != version)
+			calculate(tile, radius, visibility);
+		return visibility;
+	}
+
+	/**
+	 * Work out everything that can be seen from a tile, within a radius.
+	 * @param result filled in with the tiles that can be seen, including the origin.
+	 */
+	public void calculate(Tile origin, int radius, Visibility result)
+	{
+		result.clear();
+		result.origin = origin;
+		result.radius = radius;
+		result.version = version;
+		if (origin == null)
+			return;
+
+		this.result = result;
+		this.radius = radius;
+		layerOpaque = opaque[origin.getLayer().getLayerNumber()];
+
+		result.add(origin.getRow()*numCols + origin.getCol());
+		for (int octant = 0; octant < 8; octant++)
+		{
+			castLight(origin.getCol(), origin.getRow(), 1, 1.0f, 0.0f,
+					OCTANTS[0][octant], OCTANTS[1][octant], OCTANTS[2][octant], OCTANTS[3][octant]);
+		}
+
+		this.result = null;
+		layerOpaque = null;
+	}
+
+	/**
+	 * Scan the rows of one octant, from the given row outwards, between a start and end slope.
+	 * When a wall is found, the part of the next row behind it is scanned with a narrower range of slopes.
+	 */
+	private void castLight(int originX, int originY, int row, float start, float end, int xx, int xy, int yx, int yy)
+	{
+		if (start < end)
+			return;
+
+		int radiusSquared = radius*radius;
+		float newStart = 0;
+		for (int j = row; j <= radius; j++)
+		{
+			boolean blocked = false;
+			int dy = -j;
+			for (int dx = -j; dx <= 0; dx++)
+			{
+				float leftSlope = (dx - 0.5f) / (dy + 0.5f);
+				float rightSlope = (dx + 0.5f) / (dy - 0.5f);
+				if (start < rightSlope)
+					continue;
+				if (end > leftSlope)
+					break;
+
+				int x = originX + dx*xx + dy*xy;
+				int y = originY + dx*yx + dy*yy;
+				boolean inside = x >= 0 && y >= 0 && x < numCols && y < numRows;
+				int index = y*numCols + x;
+				boolean wall = !inside || layerOpaque[index];
+
+				//walls themselves can be seen, so that they can be lit up.
+				if (inside && dx*dx + dy*dy < radiusSquared)
+					result.add(index);
+
+				if (blocked)
+				{
+					if (wall)
+					{
+						newStart = rightSlope;
+						continue;
+					}
+					blocked = false;
+					start = newStart;
+				}
+				else if (wall && j < radius)
+				{
+					blocked = true;
+					castLight(originX, originY, j+1, start, leftSlope, xx, xy, yx, yy);
+					newStart = rightSlope;
+				}
+			}
+			if (blocked)
+				break;
+		}
+	}
+
+	/**
+	 * The tiles that can be seen from an origin tile, all on the same layer as it.
+	 */
+	public static class Visibility
+	{
+		private Tile origin;
+		private int radius;
+		private int version;
+
+		private int numCols;
+		private int[] tiles; //row*numCols + col of each tile that can be seen
+		private int size;
+		private boolean[] visible; //indexed the same way
+
+		public Visibility(int numRows, int numCols)
+		{
+			this.numCols = numCols;
+			tiles = new int[64];
+			visible = new boolean[numRows*numCols];
+		}
+
+		private void clear()
+		{
+			for (int i = 0; i < size; i++)
+				visible[tiles[i]] = false;
+			size = 0;
+		}
+
+		private void add(int index)
+		{
+			if (visible[index])
+				return; //the edges of the octants overlap
+			visible[index] = true;
+			if (size == tiles.length)
+				tiles = Arrays.copyOf(tiles, size*2);
+			tiles[size++] = index;
+		}
+
+		public Tile getOrigin()
+		{
+			return origin;
+		}
+		
+		/**
+		 * @return a number that changes whenever a wall changes, so results worked out before can be told apart.
+		 */
+		public int getVersion()
+		{
+			return version;
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		/**
+		 * @return row*numCols + col of the i'th tile that can be seen, on the origin's layer.
+		 */
+		public int getTile(int i)
+		{
+			return tiles[i];
+		}
+
+		public boolean isVisible(Tile tile)
+		{
+			return origin != null && tile.getLayer() == origin.getLayer() && visible[tile.getRow()*numCols + tile.getCol()];
+		}
+	}
+}
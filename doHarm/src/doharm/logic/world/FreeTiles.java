@@ -0,0 +1,229 @@
+package doharm.logic.world;
+
+import java.util.Arrays;
+
+import doharm.logic.world.tiles.Tile;
+import doharm.logic.world.tiles.TileType;
+
+/**
+ * Keeps track of the free tiles in the world, ie. those that can be walked on, aren't under a roof
+ * and have nothing on them, so that one can be picked at random straight away
+ * instead of trying random tiles until a free one turns up.
+ *
+ * The free tiles are kept in a separate set for each layer and tile type, and again in a set for each
+ * connected region (see ConnectedComponents), so a tile that can be walked to from somewhere can be picked
+ * straight away too. Each set is an array with a tile's position in it remembered, so adding, removing
+ * and picking a random tile are all constant time.
+ * @author Roland
+ */
+public class FreeTiles
+{
+	private static final int NOT_FREE = -1;
+	private static final int NUM_TYPES = TileType.values().length;
+
+	private World world;
+	private int[][] sets; //[layer*NUM_TYPES + type] = indices of the free tiles
+	private int[] sizes;
+	private int[] positions; //indexed by Tile.getIndex(), where the tile is in its set
+	private int[] tileSets; //and which set it is in
+	private int size;
+
+	private int[][] componentSets; //[component] = indices of the free tiles in that region, null if there are none
+	private int[] componentSizes;
+	private int[] componentPositions; //indexed by Tile.getIndex(), where the tile is in its region's set
+	private int[] tileComponents; //and which region's set it is in, NO_COMPONENT if none
+
+	public FreeTiles(World world)
+	{
+		this.world = world;
+		sets = new int[world.getNumLayers()*NUM_TYPES][];
+		for (int i = 0; i < sets.length; i++)
+			sets[i] = new int[16];
+		sizes = new int[sets.length];
+		positions = new int[world.getNumTiles()];
+		tileSets = new int[world.getNumTiles()];
+		Arrays.fill(positions, NOT_FREE);
+		componentSets = new int[16][];
+		componentSizes = new int[componentSets.length];
+		componentPositions = new int[world.getNumTiles()];
+		tileComponents = new int[world.getNumTiles()];
+		Arrays.fill(tileComponents, ConnectedComponents.NO_COMPONENT);
+
+		for (int i = 0; i < world.getNumTiles(); i++)
+			update(world.getTileByIndex(i));
+	}
+
+	private boolean isFree(Tile tile)
+	{
+		return tile.isWalkable() && (tile.getRoof() == null || !tile.getRoof().isVisible()) && tile.isEmpty();
+	}
+
+	private int getSet(int layer, TileType type)
+	{
+		return layer*NUM_TYPES + type.ordinal();
+	}
+
+	/**
+	 * Called whenever something steps onto or off a tile, or the tile changes.
+	 */
+	public void update(Tile tile)
+	{
+		int index = tile.getIndex();
+		boolean free = isFree(tile);
+		if (free == (positions[index] != NOT_FREE))
+		{
+			componentChanged(tile);
+			return;
+		}
+
+		if (free)
+		{
+			int set = getSet(tile.getLayer().getLayerNumber(), tile.getType());
+			tileSets[index] = set;
+			if (sizes[set] == sets[set].length)
+				sets[set] = Arrays.copyOf(sets[set], sizes[set]*2);
+			positions[index] = sizes[set];
+			sets[set][sizes[set]++] = index;
+			size++;
+		}
+		else
+		{
+			//move the last tile into the gap
+			int set = tileSets[index];
+			int last = sets[set][--sizes[set]];
+			sets[set][positions[index]] = last;
+			positions[last] = positions[index];
+			positions[index] = NOT_FREE;
+			size--;
+		}
+		componentChanged(tile);
+	}
+
+	/**
+	 * Called by ConnectedComponents whenever a tile is given a different region, so it can be moved to that region's set.
+	 */
+	public void componentChanged(Tile tile)
+	{
+		int index = tile.getIndex();
+		int component = positions[index] == NOT_FREE ? ConnectedComponents.NO_COMPONENT
+				: world.getComponents().getComponent(tile);
+		int old = tileComponents[index];
+		if (component == old)
+			return;
+
+		if (old != ConnectedComponents.NO_COMPONENT)
+		{
+			//move the last tile into the gap
+			int last = componentSets[old][--componentSizes[old]];
+			componentSets[old][componentPositions[index]] = last;
+			componentPositions[last] = componentPositions[index];
+			if (componentSizes[old] == 0)
+				componentSets[old] = null; //regions that have been split or merged are never used again
+		}
+
+		tileComponents[index] = component;
+		if (component == ConnectedComponents.NO_COMPONENT)
+			return;
+		if (component >= componentSets.length)
+		{
+			componentSets = Arrays.copyOf(componentSets, Math.max(component+1, componentSets.length*2));
+			componentSizes = Arrays.copyOf(componentSizes, componentSets.length);
+		}
+		if (componentSets[component] == null)
+			componentSets[component] = new int[16];
+		else if (componentSizes[component] == componentSets[component].length)
+			componentSets[component] = Arrays.copyOf(componentSets[component], componentSizes[component]*2);
+		componentPositions[index] = componentSizes[component];
+		componentSets[component][componentSizes[component]++] = index;
+	}
+
+	public boolean isFree(int tileIndex)
+	{
+		return positions[tileIndex] != NOT_FREE;
+	}
+
+	/**
+	 * @return the number of free tiles in the whole world.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public int size(int layer, TileType type)
+	{
+		return sizes[getSet(layer, type)];
+	}
+
+	/**
+	 * @return a free tile anywhere in the world, or null if there aren't any.
+	 */
+	public Tile getRandom()
+	{
+		if (size == 0)
+			return null;
+
+		//there are only a few sets, so walking through them to find the n'th free tile is cheap
+		int n = (int)(Math.random()*size);
+		for (int set = 0; set < sets.length; set++)
+		{
+			if (n < sizes[set])
+				return world.getTileByIndex(sets[set][n]);
+			n -= sizes[set];
+		}
+		return null;
+	}
+
+	/**
+	 * @return a free tile of this type on any layer, or null if there aren't any.
+	 */
+	public Tile getRandom(TileType type)
+	{
+		int total = 0;
+		for (int layer = 0; layer < world.getNumLayers(); layer++)
+			total += size(layer, type);
+		if (total == 0)
+			return null;
+
+		int n = (int)(Math.random()*total);
+		for (int layer = 0; layer < world.getNumLayers(); layer++)
+		{
+			int set = getSet(layer, type);
+			if (n < sizes[set])
+				return world.getTileByIndex(sets[set][n]);
+			n -= sizes[set];
+		}
+		return null;
+	}
+
+	/**
+	 * @return how many free tiles there are in the region.
+	 */
+	public int sizeOfComponent(int component)
+	{
+		return component >= 0 && component < componentSizes.length ? componentSizes[component] : 0;
+	}
+
+	/**
+	 * @param component a region, see ConnectedComponents.getComponent()
+	 * @return a free tile in the region, or null if there aren't any.
+	 */
+	public Tile getRandomInComponent(int component)
+	{
+		int size = sizeOfComponent(component);
+		if (size == 0)
+			return null;
+		return world.getTileByIndex(componentSets[component][(int)(Math.random()*size)]);
+	}
+
+	/**
+	 * @return a free tile of this type on the layer, or null if there aren't any.
+	 */
+	public Tile getRandom(int layer, TileType type)
+	{
+		int set = getSet(layer, type);
+		if (sizes[set] == 0)
+			return null;
+		return world.getTileByIndex(sets[set][(int)(Math.random()*sizes[set])]);
+	}
+}
@@ -1,9 +1,12 @@
 package doharm.logic.world;
 
 import doharm.logic.physics.Vector;
+import doharm.logic.world.tiles.RampTile;
 import doharm.logic.world.tiles.Tile;
+import doharm.logic.world.tiles.TileType;
 import doharm.storage.LayerData;
 import doharm.storage.FloorTileData;
+import doharm.storage.RampTileData;
 import doharm.storage.TilesetLoader;
 import doharm.storage.WorldLoader;
 
@@ -34,8 +37,12 @@ public class Layer
 			for (int x= 0; x < tiles[0].length; x++)
 			{
 				FloorTileData data = tileLoader.getFloorTileData().get(layerData.getTileID(y,x));
-						
-				tiles[y][x] = new Tile(this, y,x,tileWidth,tileHeight,data, world.getColour(y, x, layerNumber));
+				RampTileData rampData = data.getType() == TileType.RAMP ? tileLoader.getRampTileData(data.getName()) : null;
+				
+				if (rampData != null)
+					tiles[y][x] = new RampTile(this, y,x,tileWidth,tileHeight,data, rampData);
+				else
+					tiles[y][x] = new Tile(this, y,x,tileWidth,tileHeight,data);
 			}
 		}
 	}
@@ -0,0 +1,93 @@
+package doharm.logic.world;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import doharm.logic.world.tiles.RampTile;
+import doharm.logic.world.tiles.Tile;
+
+/**
+ * Joins the layers of a world together through their ramps.
+ *
+ * A ramp on layer L leads up to every passable tile around it on layer L+1,
+ * as long as the tile directly above the ramp is open.
+ *
+ * @author Roland
+ */
+public class LayerTransitionGraph
+{
+	private World world;
+	private List<RampTile> ramps;
+	private boolean[][] layerLinks; //layerLinks[a][b] is true if a ramp joins layer a and layer b
+
+	public LayerTransitionGraph(World world)
+	{
+		this.world = world;
+		ramps = new ArrayList<RampTile>();
+		layerLinks = new boolean[world.getNumLayers()][world.getNumLayers()];
+
+		linkRamps();
+	}
+
+	private void linkRamps()
+	{
+		Layer[] layers = world.getLayers();
+		for (int l = 0; l < layers.length; l++)
+		{
+			for (Tile[] row: layers[l].getTiles())
+			{
+				for (Tile tile: row)
+				{
+					if (tile instanceof RampTile)
+						ramps.add((RampTile)tile);
+				}
+			}
+		}
+
+		for (RampTile ramp: ramps)
+		{
+			int l = ramp.getLayer().getLayerNumber();
+			if (l+1 >= layers.length || !ramp.isWalkable())
+				continue;
+
+			Tile[][] above = layers[l+1].getTiles();
+
+			//can't walk up a ramp with a floor over the top of it.
+			if (above[ramp.getRow()][ramp.getCol()].isPassable())
+				continue;
+
+			for (int y = -1; y <= 1; y++)
+			{
+				for (int x = -1; x <= 1; x++)
+				{
+					int row = ramp.getRow() + y;
+					int col = ramp.getCol() + x;
+					if ((x == 0 && y == 0) || row < 0 || col < 0 || row >= above.length || col >= above[0].length)
+						continue;
+
+					Tile top = above[row][col];
+					if (top.isPassable())
+					{
+						ramp.addTopTile(top);
+						layerLinks[l][l+1] = true;
+						layerLinks[l+1][l] = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return whether there is a ramp directly between the two layers.
+	 */
+	public boolean isLinked(int layerA, int layerB)
+	{
+		return layerLinks[layerA][layerB];
+	}
+
+	public List<RampTile> getRamps()
+	{
+		return Collections.unmodifiableList(ramps);
+	}
+}
@@ -0,0 +1,181 @@
+package doharm.logic.world;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import doharm.logic.entities.AbstractEntity;
+import doharm.logic.world.FieldOfView.Visibility;
+import doharm.logic.world.tiles.Tile;
+
+/**
+ * Keeps track of how much light is shining on each tile from entities that give off light (eg. characters, torches).
+ *
+ * Each light source stamps a precomputed circle of light into a buffer for its layer,
+ * but only onto the tiles it can see, so walls cast shadows.
+ * A source is only restamped when it moves to another tile or its brightness changes,
+ * so reading the light on a tile is an array lookup, and dark maps cost no more than lit ones.
+ *
+ * Light is stored as fixed point ints, so removing a stamp takes away exactly what adding it put in.
+ * @author Roland
+ */
+public class LightMap
+{
+	/** How many tiles away a light reaches. */
+	public static final int RADIUS = 10;
+	private static final int DIAMETER = 2*RADIUS + 1;
+	private static final float ONE = 1024; //fixed point scale
+
+	private World world;
+	private int numCols;
+	private int[][] light; //[layer][row*numCols + col]
+
+	/**
+	 * kernel[(y+RADIUS)*DIAMETER + x+RADIUS] is how bright a tile is (0..1)
+	 * when it's that far from a light with an intensity of 1.
+	 */
+	private float[] kernel;
+
+	private Map<AbstractEntity, Stamp> stamps;
+	private int tick;
+	private int[] versions; //[layer], goes up every time a light is added to or taken off the layer
+
+	public LightMap(World world)
+	{
+		this.world = world;
+		numCols = world.getNumCols();
+		light = new int[world.getNumLayers()][world.getNumRows()*numCols];
+		versions = new int[world.getNumLayers()];
+		stamps = new HashMap<AbstractEntity, Stamp>();
+
+		kernel = new float[DIAMETER*DIAMETER];
+		for (int y = -RADIUS; y <= RADIUS; y++)
+		{
+			for (int x = -RADIUS; x <= RADIUS; x++)
+			{
+				float distance = (float)Math.sqrt(x*x + y*y);
+				if (distance < RADIUS)
+					kernel[(y+RADIUS)*DIAMETER + x+RADIUS] = 1 - distance / RADIUS;
+			}
+		}
+	}
+
+	/**
+	 * Restamp any lights that have moved, brightened or dimmed, and remove the ones that have gone.
+	 */
+	public void update(Iterable<? extends AbstractEntity> entities)
+	{
+		tick++;
+		FieldOfView fieldOfView = world.getFieldOfView();
+		for (AbstractEntity entity: entities)
+		{
+			float intensity = entity.isAlive() ? entity.getLightIntensity() : 0;
+			Tile tile = entity.getCurrentTile();
+			Stamp stamp = stamps.get(entity);
+
+			if (intensity <= 0 || tile == null)
+			{
+				if (stamp != null)
+				{
+					stamp(stamp, -1);
+					stamps.remove(entity);
+				}
+				continue;
+			}
+
+			Visibility visibility = fieldOfView.getVisibility(entity, RADIUS);
+			if (stamp == null)
+			{
+				stamp = new Stamp();
+				stamps.put(entity, stamp);
+			}
+			else if (stamp.tile == tile && stamp.intensity == intensity && stamp.visibility == visibility.getVersion())
+			{
+				stamp.tick = tick;
+				continue;
+			}
+			else
+				stamp(stamp, -1);
+
+			stamp.set(tile, intensity, visibility);
+			stamp.tick = tick;
+			stamp(stamp, 1);
+		}
+
+		//entities that have been removed from the world
+		Iterator<Stamp> it = stamps.values().iterator();
+		while (it.hasNext())
+		{
+			Stamp stamp = it.next();
+			if (stamp.tick != tick)
+			{
+				stamp(stamp, -1);
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Add (sign = 1) or remove (sign = -1) a light.
+	 */
+	private void stamp(Stamp stamp, int sign)
+	{
+		int[] buffer = light[stamp.tile.getLayer().getLayerNumber()];
+		versions[stamp.tile.getLayer().getLayerNumber()]++;
+		int row = stamp.tile.getRow();
+		int col = stamp.tile.getCol();
+		float scale = stamp.intensity * ONE;
+
+		for (int i = 0; i < stamp.size; i++)
+		{
+			int index = stamp.tiles[i];
+			int y = index / numCols - row;
+			int x = index % numCols - col;
+			buffer[index] += sign * (int)(kernel[(y+RADIUS)*DIAMETER + x+RADIUS] * scale);
+		}
+	}
+
+	/**
+	 * @return how much light is shining on this tile from nearby lights. 0 if there aren't any.
+	 */
+	public float getLight(Tile tile)
+	{
+		return light[tile.getLayer().getLayerNumber()][tile.getRow()*numCols + tile.getCol()] / ONE;
+	}
+
+	/**
+	 * @return a number that changes whenever the light from the lights on a layer does,
+	 * so whoever copies the light can tell whether it needs copying again.
+	 */
+	public int getVersion(int layer)
+	{
+		return versions[layer];
+	}
+	
+	/**
+	 * What a light added to the map, so that exactly the same can be taken away again.
+	 * The tiles are copied, as the visibility they came from changes when the light moves.
+	 */
+	private static class Stamp
+	{
+		private Tile tile;
+		private float intensity;
+		private int visibility; //version of the visibility the tiles were copied from
+		private int[] tiles = new int[0];
+		private int size;
+		private int tick; //the last update this light was seen in
+
+		private void set(Tile tile, float intensity, Visibility visibility)
+		{
+			this.tile = tile;
+			this.intensity = intensity;
+			this.visibility = visibility.getVersion();
+			size = visibility.size();
+			if (tiles.length < size)
+				tiles = Arrays.copyOf(tiles, size);
+			for (int i = 0; i < size; i++)
+				tiles[i] = visibility.getTile(i);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package doharm.logic.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import doharm.logic.entities.characters.Character;
+
+/**
+ * The first half of a tick: every character works out what it wants to do (mostly finding paths),
+ * spread over a pool of threads.
+ *
+ * While this runs nothing in the world changes, so the characters only see the world as it was at the
+ * start of the tick, and it doesn't matter which thread plans which character or in what order.
+ * The second half of the tick (processing the characters, damage, moving between tiles) is still done
+ * on one thread, in ID order, so the result is the same however many threads are used.
+ *
+ * The number of threads can be set with -Ddoharm.planThreads=n. 1 plans everything on the calling thread.
+ * @author Roland
+ */
+public class ParallelPlanner
+{
+	private static final int NUM_THREADS = Math.max(1, Integer.getInteger("doharm.planThreads",
+			Runtime.getRuntime().availableProcessors()));
+
+	//shared by every world, the threads are daemons so they don't stop the game from exiting.
+	private static ExecutorService executor;
+
+	private int numThreads;
+	private List<PlanTask> tasks;
+
+	public ParallelPlanner()
+	{
+		this(NUM_THREADS);
+	}
+
+	public ParallelPlanner(int numThreads)
+	{
+		this.numThreads = Math.max(1, numThreads);
+		tasks = new ArrayList<PlanTask>();
+		for (int i = 0; i < this.numThreads; i++)
+			tasks.add(new PlanTask(i, this.numThreads));
+	}
+
+	private static synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newFixedThreadPool(NUM_THREADS, new ThreadFactory()
+			{
+				private int count;
+
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "planner-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	/**
+	 * Let every character plan, and wait for them all to finish.
+	 * Nothing else may change the world until this returns.
+	 */
+	public void plan(List<Character> characters)
+	{
+		if (numThreads == 1 || characters.size() < numThreads)
+		{
+			for (int i = 0; i < characters.size(); i++)
+				characters.get(i).plan();
+			return;
+		}
+
+		for (PlanTask task: tasks)
+			task.characters = characters;
+		try
+		{
+			for (Future<Void> future: getExecutor().invokeAll(tasks))
+				future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException("Planning failed", e.getCause());
+		}
+		finally
+		{
+			for (PlanTask task: tasks)
+				task.characters = null;
+		}
+	}
+
+	/**
+	 * Plans every numThreads'th character, so the expensive ones are spread out.
+	 */
+	private static class PlanTask implements Callable<Void>
+	{
+		private int first;
+		private int step;
+		private List<Character> characters;
+
+		public PlanTask(int first, int step)
+		{
+			this.first = first;
+			this.step = step;
+		}
+
+		@Override
+		public Void call()
+		{
+			for (int i = first; i < characters.size(); i += step)
+				characters.get(i).plan();
+			return null;
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package doharm.logic.world;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import doharm.logic.entities.AbstractEntity;
+import doharm.logic.entities.EntityType;
+import doharm.logic.world.tiles.Tile;
+
+/**
+ * Finds the entities near a point without looking at every entity in the world.
+ *
+ * Each layer is split into square cells of CELL_SIZE x CELL_SIZE tiles, and each cell keeps a list
+ * of the entities standing in it. Entities are moved between cells when they cross onto another tile,
+ * so a query only has to look at the cells it overlaps.
+ *
+ * Queries take a list to put their results in, and a type to look for (null for any type).
+ * @author Roland
+ */
+public class SpatialIndex
+{
+	/** The width and height of a cell, in tiles. */
+	public static final int CELL_SIZE = 4;
+
+	private int numCellRows;
+	private int numCellCols;
+	private float cellWidth; //in world coordinates
+	private float cellHeight;
+
+	private Cell[][] cells; //[layer][cellRow*numCellCols + cellCol]
+	private List<List<AbstractEntity>> layerEntities;
+	private Map<AbstractEntity, Entry> entries;
+
+	//reused by getNearest()
+	private float[] nearestDistances;
+
+	public SpatialIndex(World world)
+	{
+		numCellRows = (world.getNumRows() + CELL_SIZE - 1) / CELL_SIZE;
+		numCellCols = (world.getNumCols() + CELL_SIZE - 1) / CELL_SIZE;
+		cellWidth = world.getTileWidth() * CELL_SIZE;
+		cellHeight = world.getTileHeight() * CELL_SIZE;
+
+		cells = new Cell[world.getNumLayers()][numCellRows*numCellCols];
+		layerEntities = new ArrayList<List<AbstractEntity>>();
+		for (int l = 0; l < cells.length; l++)
+		{
+			for (int i = 0; i < cells[l].length; i++)
+				cells[l][i] = new Cell();
+			layerEntities.add(new ArrayList<AbstractEntity>());
+		}
+		entries = new HashMap<AbstractEntity, Entry>();
+		nearestDistances = new float[8];
+	}
+
+	/**
+	 * Called when an entity moves onto another tile.
+	 * @param tile the tile it is on now, or null to take it out of the index.
+	 */
+	public void move(AbstractEntity entity, Tile tile)
+	{
+		Entry entry = entries.get(entity);
+		if (tile == null)
+		{
+			if (entry != null)
+			{
+				removeFromLayer(entry, entity);
+				removeFromCell(entry);
+				entries.remove(entity);
+			}
+			return;
+		}
+
+		int layer = tile.getLayer().getLayerNumber();
+		int cell = (tile.getRow() / CELL_SIZE) * numCellCols + tile.getCol() / CELL_SIZE;
+
+		boolean changeLayer = entry == null || entry.layer != layer;
+		if (entry == null)
+		{
+			entry = new Entry(entity);
+			entries.put(entity, entry);
+		}
+		else if (!changeLayer && entry.cell == cell)
+			return;
+		else
+		{
+			removeFromCell(entry);
+			if (changeLayer)
+				removeFromLayer(entry, entity);
+		}
+
+		if (changeLayer)
+		{
+			List<AbstractEntity> list = layerEntities.get(layer);
+			entry.layerPosition = list.size();
+			list.add(entity);
+		}
+
+		entry.layer = layer;
+		entry.cell = cell;
+		Cell c = cells[layer][cell];
+		entry.cellPosition = c.entries.size();
+		c.entries.add(entry);
+	}
+
+	public void remove(AbstractEntity entity)
+	{
+		move(entity, null);
+	}
+
+	private void removeFromCell(Entry entry)
+	{
+		List<Entry> list = cells[entry.layer][entry.cell].entries;
+		Entry last = list.remove(list.size()-1);
+		if (last != entry)
+		{
+			list.set(entry.cellPosition, last);
+			last.cellPosition = entry.cellPosition;
+		}
+	}
+
+	private void removeFromLayer(Entry entry, AbstractEntity entity)
+	{
+		List<AbstractEntity> list = layerEntities.get(entry.layer);
+		AbstractEntity last = list.remove(list.size()-1);
+		if (last != entity)
+		{
+			list.set(entry.layerPosition, last);
+			entries.get(last).layerPosition = entry.layerPosition;
+		}
+	}
+
+	/**
+	 * @return every entity on a layer, in no particular order. Don't change it.
+	 */
+	public List<AbstractEntity> getEntities(int layer)
+	{
+		return layerEntities.get(layer);
+	}
+
+	/**
+	 * Find the entities inside a rectangle, in world coordinates.
+	 */
+	public void getEntitiesInRect(int layer, float minX, float minY, float maxX, float maxY, EntityType type, List<AbstractEntity> result)
+	{
+		int minCol = Math.max(0, (int)Math.floor(minX / cellWidth));
+		int minRow = Math.max(0, (int)Math.floor(minY / cellHeight));
+		int maxCol = Math.min(numCellCols-1, (int)Math.floor(maxX / cellWidth));
+		int maxRow = Math.min(numCellRows-1, (int)Math.floor(maxY / cellHeight));
+
+		Cell[] layerCells = cells[layer];
+		for (int row = minRow; row <= maxRow; row++)
+		{
+			for (int col = minCol; col <= maxCol; col++)
+			{
+				List<Entry> list = layerCells[row*numCellCols + col].entries;
+				for (int i = 0; i < list.size(); i++)
+				{
+					AbstractEntity entity = list.get(i).entity;
+					float x = entity.getX();
+					float y = entity.getY();
+					if ((type == null || entity.getEntityType() == type) && x >= minX && x <= maxX && y >= minY && y <= maxY)
+						result.add(entity);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the entities within a distance of a point, in world coordinates.
+	 */
+	public void getEntitiesInRadius(int layer, float x, float y, float radius, EntityType type, List<AbstractEntity> result)
+	{
+		int start = result.size();
+		getEntitiesInRect(layer, x-radius, y-radius, x+radius, y+radius, type, result);
+
+		//take out the corners of the square
+		float radiusSquared = radius*radius;
+		for (int i = result.size()-1; i >= start; i--)
+		{
+			AbstractEntity entity = result.get(i);
+			float dx = entity.getX() - x;
+			float dy = entity.getY() - y;
+			if (dx*dx + dy*dy > radiusSquared)
+			{
+				result.set(i, result.get(result.size()-1));
+				result.remove(result.size()-1);
+			}
+		}
+	}
+
+	/**
+	 * Find the k entities closest to a point, in world coordinates, closest first.
+	 * Cells are searched in rings around the point until nothing closer can be found.
+	 * @param maxRadius entities further away than this are ignored.
+	 */
+	public void getNearest(int layer, float x, float y, int k, float maxRadius, EntityType type, List<AbstractEntity> result)
+	{
+		if (k <= 0)
+			return;
+		if (nearestDistances.length < k)
+			nearestDistances = new float[k];
+
+		int start = result.size();
+		int centreCol = (int)Math.floor(x / cellWidth);
+		int centreRow = (int)Math.floor(y / cellHeight);
+		//far enough to reach the furthest cell, even from outside the world
+		int maxRing = Math.max(Math.max(centreRow, numCellRows-1 - centreRow), Math.max(centreCol, numCellCols-1 - centreCol));
+		float maxRadiusSquared = maxRadius*maxRadius;
+		Cell[] layerCells = cells[layer];
+
+		for (int ring = 0; ring <= maxRing; ring++)
+		{
+			//the closest a point in this ring can be to the centre
+			float ringDistance = (ring-1) * Math.min(cellWidth, cellHeight);
+			if (ring > 0 && ringDistance*ringDistance > maxRadiusSquared)
+				break;
+			int found = result.size() - start;
+			if (ring > 0 && found == k && ringDistance*ringDistance > nearestDistances[k-1])
+				break;
+
+			int minRow = Math.max(0, centreRow - ring);
+			int maxRow = Math.min(numCellRows-1, centreRow + ring);
+			for (int row = minRow; row <= maxRow; row++)
+			{
+				//only the edge of the ring, the inside has been done already
+				boolean edge = row == centreRow - ring || row == centreRow + ring;
+				int step = edge || ring == 0 ? 1 : 2*ring;
+				for (int col = centreCol - ring; col <= centreCol + ring; col += step)
+				{
+					if (col < 0 || col >= numCellCols)
+						continue;
+
+					List<Entry> list = layerCells[row*numCellCols + col].entries;
+					for (int i = 0; i < list.size(); i++)
+					{
+						AbstractEntity entity = list.get(i).entity;
+						if (type != null && entity.getEntityType() != type)
+							continue;
+						float dx = entity.getX() - x;
+						float dy = entity.getY() - y;
+						float distance = dx*dx + dy*dy;
+						if (distance <= maxRadiusSquared)
+							insertNearest(entity, distance, k, start, result);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Insertion sort into the k best found so far.
+	 */
+	private void insertNearest(AbstractEntity entity, float distance, int k, int start, List<AbstractEntity> result)
+	{
+		int found = result.size() - start;
+		if (found == k)
+		{
+			if (distance >= nearestDistances[k-1])
+				return;
+			result.remove(result.size()-1);
+			found--;
+		}
+
+		int i = found;
+		result.add(entity);
+		while (i > 0 && nearestDistances[i-1] > distance)
+		{
+			nearestDistances[i] = nearestDistances[i-1];
+			result.set(start+i, result.get(start+i-1));
+			i--;
+		}
+		nearestDistances[i] = distance;
+		result.set(start+i, entity);
+	}
+
+	private static class Cell
+	{
+		private List<Entry> entries = new ArrayList<Entry>();
+	}
+
+	/**
+	 * Where an entity is in the index.
+	 */
+	private static class Entry
+	{
+		private AbstractEntity entity;
+		private int layer;
+		private int cell;
+		private int cellPosition;
+		private int layerPosition;
+
+		public Entry(AbstractEntity entity)
+		{
+			this.entity = entity;
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package doharm.logic.world;
+
+import doharm.logic.world.tiles.Tile;
+
+/**
+ * Told by the world whenever a tile changes, see World.tileChanged().
+ * @author Roland
+ */
+public interface TileChangeListener
+{
+	public void tileChanged(Tile tile);
+}
@@ -4,6 +4,8 @@ import java.awt.Color;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -13,8 +15,10 @@ import doharm.logic.chat.Message;
 import doharm.logic.chat.MessagePart;
 import doharm.logic.entities.AbstractEntity;
 import doharm.logic.entities.EntityFactory;
+import doharm.logic.entities.EntityStore;
 import doharm.logic.entities.EntityType;
 import doharm.logic.entities.IDManager;
+import doharm.logic.entities.characters.AIScheduler;
 import doharm.logic.entities.characters.Character;
 import doharm.logic.entities.characters.alliances.AllianceManager;
 import doharm.logic.entities.characters.classes.CharacterClassType;
@@ -34,6 +38,7 @@ import doharm.logic.entities.objects.GameObjectFactory;
 import doharm.logic.entities.objects.ObjectType;
 import doharm.logic.entities.objects.furniture.Chest;
 import doharm.logic.time.Time;
+import doharm.logic.time.TimerWheel;
 import doharm.logic.weather.Weather;
 import doharm.logic.world.tiles.Direction;
 import doharm.logic.world.tiles.Tile;
@@ -50,10 +55,20 @@ public class World
 	private static final int NUM_TREES = 50;
 	private static final int NUM_CHESTS = 5;
 	private static final double NUM_CHEST_ITEMS = 6;
+	
+	private static final Comparator<AbstractEntity> ID_ORDER = new Comparator<AbstractEntity>()
+	{
+		@Override
+		public int compare(AbstractEntity a, AbstractEntity b)
+		{
+			return a.getID() < b.getID() ? -1 : (a.getID() == b.getID() ? 0 : 1);
+		}
+	};
 
 	private Layer[] layers;  
 	
 	private EntityFactory entityFactory;
+	private EntityStore entityStore;
 	private PlayerFactory playerFactory;
 	private MonsterFactory monsterFactory;
 	private GameObjectFactory objectFactory;
@@ -72,6 +87,7 @@ public class World
 	private NetworkMode networkMode;
 	
 	private Time time;
+	private TimerWheel timers;
 	private Weather weather;
 	private List<Message> messages;
 
@@ -81,7 +97,22 @@ public class World
 
 	private String worldName;
 	private AllianceManager allianceManager;
-	private List<Character> characters;
+	
+	//reused every tick, see process()
+	private List<AbstractEntity> lightSources;
+	private List<Item> deadItems;
+	private List<AbstractEntity> entitiesToMove;
+	private List<Character> charactersToPlan;
+	private ParallelPlanner planner;
+	private AIScheduler aiScheduler;
+	private LayerTransitionGraph layerTransitions;
+	private ConnectedComponents components;
+	private FreeTiles freeTiles;
+	private FieldOfView fieldOfView;
+	private LightMap lightMap;
+	private SpatialIndex spatialIndex;
+	private List<TileChangeListener> tileChangeListeners;
+	private List<Tile> animatedTiles; //eg. water, see animateTiles()
 
 	
 	
@@ -96,9 +127,16 @@ public class World
 		idManager = new IDManager();
 		dragonRadar = new DragonRadar();
 		time = new Time();
+		timers = new TimerWheel();
+		entityStore = new EntityStore();
 		weather = new Weather();
 		allianceManager = new AllianceManager(this);
-		characters = new ArrayList<Character>();
+		lightSources = new ArrayList<AbstractEntity>();
+		deadItems = new ArrayList<Item>();
+		entitiesToMove = new ArrayList<AbstractEntity>();
+		charactersToPlan = new ArrayList<Character>();
+		planner = new ParallelPlanner();
+		aiScheduler = new AIScheduler(this);
 		
 		
 		entityFactory = new EntityFactory(this,idManager);
@@ -134,6 +172,19 @@ public class World
 			layers[i] = new Layer(this, i);
 		
 		linkTiles();
+		animatedTiles = new ArrayList<Tile>();
+		for (int i = 0; i < getNumTiles(); i++)
+		{
+			if (getTileByIndex(i).isAnimated())
+				animatedTiles.add(getTileByIndex(i));
+		}
+		layerTransitions = new LayerTransitionGraph(this);
+		components = new ConnectedComponents(this);
+		freeTiles = new FreeTiles(this);
+		fieldOfView = new FieldOfView(this);
+		lightMap = new LightMap(this);
+		spatialIndex = new SpatialIndex(this);
+		tileChangeListeners = new ArrayList<TileChangeListener>();
 		
 		
 		if (networkMode != NetworkMode.CLIENT)
@@ -194,6 +245,8 @@ public class World
 			while (true)
 			{
 				Tile tile = getRandomEmptyGrassTile();
+				if (tile == null)
+					return;
 				if (tile.getType() == TileType.DARK || tile.getType() == TileType.WOOD || tile.getType() == TileType.CONCRETE)
 				{
 					Chest chest = (Chest)objectFactory.createObject(ObjectType.CHEST, tile, idManager.takeID(), false);
@@ -214,7 +267,8 @@ public class World
 		for (int i = 0; i < NUM_TREES; i++)
 		{
 			Tile tile = getRandomEmptyGrassTile();
-			
+			if (tile == null)
+				return; //no room left
 			objectFactory.createObject(ObjectType.TREE, tile, idManager.takeID(), false);
 		}
 	}
@@ -331,104 +385,110 @@ public class World
 	{
 		if (networkMode != NetworkMode.CLIENT)
 		{
-			updateCharacters();
 			time.process();
+			timers.advance(); //respawns etc.
 			weather.process();
 			allianceManager.process();
 			updateLights();
 			removeDeadItems();
-			respawnEntities();
 			moveEntities();
 		}
 		else
 		{
 			this.getHumanPlayer().process();
+			this.getHumanPlayer().move();
 		}
+		animateTiles();
 		setCamera();
 	}
 	
+	/**
+	 * Move the animated tiles on to their next image when it is time to,
+	 * so they change at the same speed however often they are drawn.
+	 */
+	private void animateTiles()
+	{
+		for (int i = 0; i < animatedTiles.size(); i++)
+			animatedTiles.get(i).animate();
+	}
+	
 	
 	
 	
-
-	private void updateCharacters() {
-		characters.clear();
-		for (AbstractEntity e: entityFactory.getEntities())
-		{
-			if (e.isAlive() && e.getEntityType() == EntityType.CHARACTER)
-				characters.add((Character)e);
-		}
-	}
-
-
 
 	private void updateLights() 
 	{
-		for (Layer layer: layers)
-		{
-			for (Tile[] tiles: layer.getTiles())
-			{
-				for (Tile tile: tiles)
-				{
-					if (tile.getType() == TileType.DARK)
-					{
-						tile.updateLights();
-					}
-				}
-			}
-		}
-		
-		
+		//only living characters and items can give off light
+		lightSources.clear();
+		entityFactory.getEntities(EntityType.CHARACTER, true, lightSources);
+		entityFactory.getEntities(EntityType.ITEM, true, lightSources);
+		lightMap.update(lightSources);
 	}
 
 
 
 	private void removeDeadItems() 
 	{
-		List<Item> itemsToRemove = new ArrayList<Item>();
-		for (Item item: itemFactory.getEntities())
+		deadItems.clear();
+		entityFactory.getEntities(EntityType.ITEM, false, deadItems);
+		for (int i = 0; i < deadItems.size(); i++)
 		{
-			if (!item.isAlive())
-			{
-				itemsToRemove.add(item);
-			}
-		}
-		for (Item item: itemsToRemove)
-		{
-			itemFactory.removeItem(item);
+			itemFactory.removeItem(deadItems.get(i));
 		}
 	}
 
 	
 
-	private void respawnEntities() 
+	private void moveEntities() 
 	{
-		for (AbstractEntity e: entityFactory.getEntities())
+		//plan in parallel, from the world as it is now
+		charactersToPlan.clear();
+		entityFactory.getEntities(EntityType.CHARACTER, true, charactersToPlan);
+		aiScheduler.update(charactersToPlan);
+		planner.plan(charactersToPlan);
+		
+		//then do everything that changes the world, always in the same order
+		entitiesToMove.clear();
+		entityFactory.getAllEntities(entitiesToMove);
+		Collections.sort(entitiesToMove, ID_ORDER);
+		for (int i = 0; i < entitiesToMove.size(); i++)
 		{
-			if (!e.isAlive() && e.getEntityType() == EntityType.CHARACTER)
-			{
-				Character character = (Character)e;
-				character.tryRespawn();
-			}
+			entitiesToMove.get(i).process();
 		}
-	}
-
-	private void moveEntities() 
-	{
-		for (AbstractEntity e: entityFactory.getEntities())
+		
+		//move everything at once, then sort out which tiles they've ended up on
+		entityStore.integrate();
+		for (int i = 0; i < entitiesToMove.size(); i++)
 		{
-			e.process();
+			entitiesToMove.get(i).updateTile();
 		}
+		entityStore.applyFriction();
 	}
 	
 	private void setCamera() 
 	{
 		if (humanPlayer != null)
 		{
-			camera.setPosition(humanPlayer.getPosition().getX(), humanPlayer.getPosition().getY());
+			camera.setPosition(humanPlayer.getX(), humanPlayer.getY());
 		}
 	}
 	
+	/**
+	 * @return the events waiting to happen after some number of ticks, and the current tick.
+	 */
+	public TimerWheel getTimers()
+	{
+		return timers;
+	}
+	
+	/**
+	 * @return how much light the sun gives every tile, given the time of day and the weather.
+	 */
+	public float getAmbientLight()
+	{
+		return time.getLight() * weather.getLight();
+	}
+	
 	public Time getTime()
 	{
 		return time;
@@ -449,6 +509,14 @@ public class World
 		return itemFactory;
 	}
 	
+	/**
+	 * @return where the position, velocity, angle and health of every entity in this world are kept.
+	 */
+	public EntityStore getEntityStore()
+	{
+		return entityStore;
+	}
+	
 	public EntityFactory getEntityFactory()
 	{
 		return entityFactory;
@@ -474,49 +542,112 @@ public class World
 	{
 		return layers.length;
 	}
-
-	public Camera getCamera() {
-		return camera;
+	
+	public int getNumRows()
+	{
+		return numRows;
 	}
 	
+	public int getNumCols()
+	{
+		return numCols;
+	}
 	
 	/**
-	 * 
-	 * @param row
-	 * @param col
-	 * @param layer
-	 * @return a rgb colour to draw a tile on the offscreen mouse picking image
-	 * See OpenGL colour picking technique.
+	 * @return the total number of tiles over all layers.
 	 */
+	public int getNumTiles()
+	{
+		return numRows*numCols*layers.length;
+	}
 	
-	public int getColour(int row, int col, int layer)
+	/**
+	 * Every tile has a unique index, so per-tile data can be kept in flat arrays.
+	 * @return the index of the tile at the given position.
+	 */
+	public int getTileIndex(int row, int col, int layer)
 	{
-		int colour = (row*numRows+col)+(layer*numRows*numCols);
-		
-		//System.out.println("row="+row +", col="+col + ", layer="+layer +", colour="+colour);
-		
-		return colour;
+		return (layer*numRows + row)*numCols + col;
 	}
 	
-	public Tile getTile(int colour)
+	/**
+	 * @param index a tile index, see getTileIndex()
+	 * @return the tile with the given index.
+	 */
+	public Tile getTileByIndex(int index)
 	{
-		int layerNumber = colour / (numRows*numCols);
-		colour -= layerNumber * (numRows*numCols);
-		int row = colour / numRows;
-		colour -= row*numRows;
-		int col = colour;
-		
-		//col++;
-		
-		if (row < 0) row = 0;
-		if (col < 0) col = 0;
-		if (row > numRows-1) row = numRows-1;
-		if (col > numCols-1) col = numCols-1;
-		
-		Layer layer = getLayer(layerNumber);
-		return layer.getTiles()[row][col];
+		int perLayer = numRows*numCols;
+		int layer = index / perLayer;
+		index -= layer*perLayer;
+		return layers[layer].getTiles()[index / numCols][index % numCols];
+	}
+	
+	public LayerTransitionGraph getLayerTransitions()
+	{
+		return layerTransitions;
+	}
+	
+	public ConnectedComponents getComponents()
+	{
+		return components;
+	}
+	
+	public LightMap getLightMap()
+	{
+		return lightMap;
+	}
+	
+	public FieldOfView getFieldOfView()
+	{
+		return fieldOfView;
+	}
+	
+	public SpatialIndex getSpatialIndex()
+	{
+		return spatialIndex;
+	}
+	
+	/**
+	 * Must be called whenever a tile changes whether it can be walked on or seen, or what it looks like,
+	 * so that reachability and lines of sight stay up to date. The tile below it is updated too, since this tile is its roof.
+	 */
+	public void tileChanged(Tile tile)
+	{
+		components.update(tile);
+		freeTiles.update(tile);
+		fieldOfView.tileChanged(tile);
+		int layer = tile.getLayer().getLayerNumber();
+		if (layer > 0)
+		{
+			Tile below = layers[layer-1].getTiles()[tile.getRow()][tile.getCol()];
+			components.update(below);
+			freeTiles.update(below);
+		}
+		for (int i = 0; i < tileChangeListeners.size(); i++)
+			tileChangeListeners.get(i).tileChanged(tile);
+	}
+	
+	/**
+	 * The listener will be told about every tile that changes from now on, eg. so the renderer can draw it again.
+	 */
+	public void addTileChangeListener(TileChangeListener listener)
+	{
+		tileChangeListeners.add(listener);
+	}
+	
+	/**
+	 * @return whether a path could possibly be found between the two tiles.
+	 */
+	public boolean isReachable(Tile start, Tile goal)
+	{
+		return components.isReachable(start, goal);
 	}
 
+	public Camera getCamera() {
+		return camera;
+	}
+	
+	
 	public HumanPlayer getHumanPlayer() 
 	{
 		return humanPlayer;
@@ -531,54 +662,42 @@ public class World
 		return tileHeight;
 	}
 
-	public void resetTiles(Tile goal) 
+	/**
+	 * @return a random walkable tile with nothing on it and no roof over it, or null if every tile is taken.
+	 */
+	public Tile getRandomEmptyTile() 
 	{
-		for (Layer layer: layers)
-		{
-			for (Tile[] row: layer.getTiles())
-			{
-				for (Tile t: row)
-				{
-					t.setVisited(false);
-					t.calculateHeuristic(goal);
-					t.setPathLength(0);
-					t.setParent(null);
-				}
-			}
-		}
-		
+		return freeTiles.getRandom();
 	}
-
-	public int pickRGBToTileRGB(int imageRGB) 
+	
+	/**
+	 * Like getRandomEmptyTile(), but only picks tiles that can be walked to from the given tile.
+	 * @return an empty tile in the same connected region, or null if there are none.
+	 */
+	public Tile getRandomEmptyTile(Tile from) 
 	{
-		Color colour = new Color(imageRGB);
+		int component = components.getComponent(from);
+		if (component != ConnectedComponents.NO_COMPONENT)
+			return freeTiles.getRandomInComponent(component);
 		
-		int rgb = (colour.getRed() << 16 ) | (colour.getGreen()<<8) | colour.getBlue();
-		return rgb;
-	}
-
-	public Tile getRandomEmptyTile() 
-	{
-		while(true)
+		//the tile itself is blocked (eg. something was pushed onto it), so use a region next to it
+		for (int i = 0; i < from.getNumNeighbours(); i++)
 		{
-			int layer = (int) (Math.random()*layers.length);
-			int row = (int) (Math.random()*numRows);
-			int col = (int) (Math.random()*numCols);
-			
-			Tile tile = layers[layer].getTiles()[row][col];
-			if (tile.isWalkable() && (tile.getRoof() == null || !tile.getRoof().isVisible()) && tile.isEmpty())
+			Tile tile = freeTiles.getRandomInComponent(components.getComponent(from.getNeighbour(i)));
+			if (tile != null)
 				return tile;
 		}
+		return null;
 	}
 	
 	private Tile getRandomEmptyGrassTile() 
 	{
-		while(true)
-		{
-			Tile tile = getRandomEmptyTile();
-			if (tile.getType() == TileType.GRASS)
-				return tile;
-		}
+		return freeTiles.getRandom(TileType.GRASS);
+	}
+	
+	public FreeTiles getFreeTiles()
+	{
+		return freeTiles;
 	}
 	
 	public NetworkMode getNetworkMode()
@@ -616,9 +735,6 @@ public class World
 
 	public Character getRandomCharacter() 
 	{
-		if (characters.isEmpty())
-			return null;
-		
-		return characters.get((int)(Math.random()*(characters.size()-1)));
+		return (Character)entityFactory.getRandomAlive(EntityType.CHARACTER);
 	}
 }
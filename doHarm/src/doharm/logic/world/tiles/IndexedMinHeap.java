@@ -0,0 +1,139 @@
+package doharm.logic.world.tiles;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of tile indices, each with a float key.
+ * Every index knows where it is in the heap, so keys can be lowered in place 
+ * instead of adding the same tile again.
+ * Nothing is allocated once the heap has been created.
+ * @author Roland
+ */
+public class IndexedMinHeap 
+{
+	private int[] heap; //tile indices, heap ordered by key
+	private int[] positions; //where each tile index is in the heap, or -1 if it isn't
+	private float[] keys; //indexed by tile index
+	private int size;
+	
+	public IndexedMinHeap(int capacity)
+	{
+		heap = new int[capacity];
+		positions = new int[capacity];
+		keys = new float[capacity];
+		Arrays.fill(positions, -1);
+	}
+	
+	public int getCapacity()
+	{
+		return positions.length;
+	}
+	
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public boolean contains(int index)
+	{
+		return positions[index] != -1;
+	}
+	
+	public float getKey(int index)
+	{
+		return keys[index];
+	}
+	
+	/**
+	 * Empty the heap. Only touches the indices that were still in it.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < size; i++)
+			positions[heap[i]] = -1;
+		size = 0;
+	}
+	
+	/**
+	 * Add an index, or lower its key if it's already in the heap.
+	 * A key higher than the current one is ignored.
+	 */
+	public void offer(int index, float key)
+	{
+		int position = positions[index];
+		if (position == -1)
+		{
+			keys[index] = key;
+			heap[size] = index;
+			positions[index] = size;
+			siftUp(size++);
+		}
+		else if (key < keys[index])
+		{
+			keys[index] = key;
+			siftUp(position);
+		}
+	}
+	
+	/**
+	 * @return the index with the smallest key, removing it from the heap.
+	 */
+	public int poll()
+	{
+		int top = heap[0];
+		positions[top] = -1;
+		size--;
+		if (size > 0)
+		{
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+	
+	private void siftUp(int position)
+	{
+		int index = heap[position];
+		float key = keys[index];
+		while (position > 0)
+		{
+			int parent = (position-1) >> 1;
+			int parentIndex = heap[parent];
+			if (keys[parentIndex] <= key)
+				break;
+			heap[position] = parentIndex;
+			positions[parentIndex] = position;
+			position = parent;
+		}
+		heap[position] = index;
+		positions[index] = position;
+	}
+	
+	private void siftDown(int position)
+	{
+		int index = heap[position];
+		float key = keys[index];
+		int half = size >> 1;
+		while (position < half)
+		{
+			int child = 2*position + 1;
+			int right = child + 1;
+			if (right < size && keys[heap[right]] < keys[heap[child]])
+				child = right;
+			int childIndex = heap[child];
+			if (key <= keys[childIndex])
+				break;
+			heap[position] = childIndex;
+			positions[childIndex] = position;
+			position = child;
+		}
+		heap[position] = index;
+		positions[index] = position;
+	}
+}
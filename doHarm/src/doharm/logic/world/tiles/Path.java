@@ -0,0 +1,70 @@
+package doharm.logic.world.tiles;
+
+import java.util.Arrays;
+
+import doharm.logic.world.World;
+
+/**
+ * A reusable list of tile indices (see World.getTileIndex()) to walk along, filled in by the PathFinder.
+ * The next tile to move to is at the top, like a stack.
+ * The buffer only grows, so the same path can be recalculated every tick without making garbage.
+ * @author Roland
+ */
+public class Path 
+{
+	private int[] tiles; //stored from the goal back to the start
+	private int size;
+	
+	public Path()
+	{
+		tiles = new int[64];
+	}
+	
+	public void clear()
+	{
+		size = 0;
+	}
+	
+	void push(int index)
+	{
+		if (size == tiles.length)
+			tiles = Arrays.copyOf(tiles, size*2);
+		tiles[size++] = index;
+	}
+	
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * @return the index of the next tile to move to, removing it from the path.
+	 */
+	public int pop()
+	{
+		return tiles[--size];
+	}
+	
+	public int peek()
+	{
+		return tiles[size-1];
+	}
+	
+	/**
+	 * @param step 0 for the next tile to move to, up to size()-1 for the last.
+	 */
+	public int get(int step)
+	{
+		return tiles[size-1-step];
+	}
+	
+	public Tile getTile(World world, int step)
+	{
+		return world.getTileByIndex(get(step));
+	}
+}
@@ -1,104 +1,152 @@
 package doharm.logic.world.tiles;
 
-import java.util.PriorityQueue;
-import java.util.Stack;
+import java.util.Arrays;
 
 import doharm.logic.world.World;
 
-public class PathFinder 
+/**
+ * A* search over the tiles of a world.
+ *
+ * Each thread gets its own PathFinder, which keeps its open set and per tile arrays between searches.
+ * Instead of resetting every tile before a search, each search gets a new number, and a tile's values
+ * only count if they were written during the current search. So a path query doesn't make any garbage.
+ * @author Roland
+ */
+public class PathFinder
 {
+	private static final int MAX_NODES = 10000;
+
+	private static final ThreadLocal<PathFinder> finders = new ThreadLocal<PathFinder>()
+	{
+		@Override
+		protected PathFinder initialValue()
+		{
+			return new PathFinder();
+		}
+	};
+
+	private IndexedMinHeap open;
+	private float[] pathLengths; //indexed by tile index
+	private int[] parents;
+	private int[] seen; //the search that last set a tile's path length and parent
+	private int[] closed; //the search that last finished with a tile
+	private int search;
+
+	private PathFinder()
+	{
+		resize(0);
+	}
+
+	private void resize(int numTiles)
+	{
+		open = new IndexedMinHeap(numTiles);
+		pathLengths = new float[numTiles];
+		parents = new int[numTiles];
+		seen = new int[numTiles];
+		closed = new int[numTiles];
+		search = 0;
+	}
+
 	/**
 	 * move to a tile on the world
-	 * World.resetTiles(); must be called before this method so that the tiles haven't been visited!
-	 * @param world 
+	 * @param world
 	 * @param start the current position
 	 * @param goal the tile to move to
-	 * @return a path to move along, or null if the goal was not found. The goal will be added to the first
-	 * node in the path, as the goal can change.
+	 * @param path filled with the tiles to move along, not including the start.
+	 * The goal is left off if something is standing on it.
+	 * @return whether a path was found.
 	 */
-	public static Stack<Tile> calculatePath(World world, Tile start, Tile goal) 
+	public static boolean calculatePath(World world, Tile start, Tile goal, Path path)
 	{
+		path.clear();
 		if (start == null || goal == null || goal == start)
 		{
-			return null;
+			return false;
+		}
+
+		//don't waste a search on goals that are walled off, on another island or an unconnected layer.
+		if (!world.isReachable(start, goal))
+		{
+			return false;
+		}
+
+		return finders.get().search(world, start, goal, path);
+	}
+
+	/**
+	 * The rules for stepping from one tile to the next.
+	 * @param goal the tile being searched for, which can be stepped on even if something is standing on it.
+	 */
+	public static boolean isTraversable(Tile node, Tile neighbour, Tile goal)
+	{
+		if (!neighbour.isPassable() || !(neighbour.isEmpty() || neighbour == goal))
+			return false;
+
+		//don't cut corners next to walls
+		return neighbour.getRow() == node.getRow() || neighbour.getCol() == node.getCol() || !neighbour.isNextToWall();
+	}
+
+	private boolean search(World world, Tile start, Tile goal, Path path)
+	{
+		if (pathLengths.length < world.getNumTiles())
+			resize(world.getNumTiles());
+
+		if (search == Integer.MAX_VALUE)
+		{
+			Arrays.fill(seen, 0);
+			Arrays.fill(closed, 0);
+			search = 0;
 		}
-		
-		world.resetTiles(goal);
-		
-		
-		
-		//calculate path...
-		Stack<Tile> path = new Stack<Tile>();
-		
-		PriorityQueue<Tile> queue = new PriorityQueue<Tile>();
-		
-		queue.add(start);
-
-		//boolean foundGoal = false;
-		//System.out.println("Goal: " + goal.getRow() +","+goal.getCol());
+		search++;
+		open.clear();
+
+		int startIndex = start.getIndex();
+		int goalIndex = goal.getIndex();
+		seen[startIndex] = search;
+		pathLengths[startIndex] = 0;
+		open.offer(startIndex, start.estimateDistance(goal));
+
 		int numTries = 0;
-		while (!queue.isEmpty() && numTries < 10000)
+		while (!open.isEmpty() && numTries < MAX_NODES)
 		{
 			numTries++;
-			Tile node = queue.poll();
-			//System.out.println("Current: " + node.getRow()+","+node.getCol());
-			
-			/*System.out.println("Neighbours of " + node.getRow() +","+node.getCol()+":");
-			
-			for (Tile n: node.getNeighbours())
-			{
-				System.out.println(n.getRow() +","+n.getCol());
-			}*/
-			
-			
-			if (node == goal)
+			int index = open.poll();
+
+			if (index == goalIndex)
 			{
-				path.clear();
-				
-				
 				if (!goal.isEmpty())
+					index = parents[index];
+
+				while (index != startIndex)
 				{
-					node = node.getParent();
-				}
-				
-				//foundGoal = true;
-				while (node != start)
-				{
-					path.push(node);
-					node = node.getParent();
+					path.push(index);
+					index = parents[index];
 				}
-				
-				
-				return path;
+				return true;
 			}
-			
-			node.setVisited(true);
 
+			closed[index] = search;
+			Tile node = world.getTileByIndex(index);
+			float nodeLength = pathLengths[index];
 
-			for (Tile neighbour: node.getNeighbours())
+			int numNeighbours = node.getNumNeighbours();
+			for (int i = 0; i < numNeighbours; i++)
 			{
-				
-				if (!neighbour.isVisited() && neighbour.isWalkable() /*&& !neighbour.isNextToWall()*/ && (neighbour.getRoof() == null || !neighbour.getRoof().isVisible() ||  neighbour.getRoof().isWalkable())/*neighbour.isWalkable()*/ && (neighbour.isEmpty()||neighbour == goal))// && !neighbour.isNextToWall())
+				Tile neighbour = node.getNeighbour(i);
+				int neighbourIndex = neighbour.getIndex();
+				if (closed[neighbourIndex] == search || !isTraversable(node, neighbour, goal))
+					continue;
+
+				float pathLength = nodeLength + node.distanceToTile(neighbour);
+				if (seen[neighbourIndex] != search || pathLength < pathLengths[neighbourIndex])
 				{
-					
-					float pathLength = node.getPathLength() + node.distanceToTile(neighbour);
-					
-					if (neighbour.getPathLength() == 0 || pathLength < neighbour.getPathLength())
-					{
-						if (neighbour.getRow() == node.getRow() || neighbour.getCol() == node.getCol() || !neighbour.isNextToWall())
-						{
-							neighbour.setParent(node);
-						
-							neighbour.setPathLength(node.getPathLength() + node.distanceToTile(neighbour));
-							queue.offer(neighbour);
-						}
-					}
+					seen[neighbourIndex] = search;
+					pathLengths[neighbourIndex] = pathLength;
+					parents[neighbourIndex] = index;
+					open.offer(neighbourIndex, pathLength + neighbour.estimateDistance(goal));
 				}
 			}
-			
 		}
-		//System.out.println("Found goal: "+foundGoal);
-		return null;
+		return false;
 	}
-	
 }
@@ -1,17 +1,48 @@
 package doharm.logic.world.tiles;
 
-import doharm.logic.physics.Vector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import doharm.logic.world.Layer;
 import doharm.storage.FloorTileData;
+import doharm.storage.RampTileData;
 
+/**
+ * A ramp joins its layer to the layer above it.
+ * The tiles it leads up to are linked as neighbours by the LayerTransitionGraph.
+ * @author Roland
+ */
 public class RampTile extends Tile
 {
-	private Tile bottomTile; 
-	private Tile topTile;
-	public RampTile(Layer layer, int row, int col, int width, int height, FloorTileData data, int colour) 
+	private RampTileData rampData;
+	private List<Tile> topTiles;
+	
+	public RampTile(Layer layer, int row, int col, int width, int height, FloorTileData data, RampTileData rampData) 
 	{
-		super(layer, row, col, width, height, data, colour);
+		super(layer, row, col, width, height, data);
+		this.rampData = rampData;
+		topTiles = new ArrayList<Tile>();
+		setWalkable(rampData.isWalkable());
 	}
 	
+	public RampTileData getRampData()
+	{
+		return rampData;
+	}
 	
+	public void addTopTile(Tile tile)
+	{
+		topTiles.add(tile);
+		addNeighbour(tile);
+		tile.addNeighbour(this);
+	}
+	
+	/**
+	 * @return the tiles on the layer above that this ramp leads to.
+	 */
+	public List<Tile> getTopTiles()
+	{
+		return Collections.unmodifiableList(topTiles);
+	}
 }
@@ -1,8 +1,5 @@
 package doharm.logic.world.tiles;
 
-import java.awt.Color;
-
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -13,29 +10,30 @@ import doharm.logic.entities.AbstractEntity;
 import doharm.logic.entities.EntityType;
 import doharm.logic.entities.characters.players.Player;
 import doharm.logic.entities.items.Item;
-import doharm.logic.entities.characters.Character;
 import doharm.logic.inventory.ItemContainer;
 import doharm.logic.inventory.ItemSet;
 import doharm.logic.physics.Vector;
 import doharm.logic.world.Layer;
 import doharm.logic.world.World;
-import doharm.rendering.RenderUtil;
 import doharm.storage.FloorTileData;
 import doharm.storage.WallTileData;
 
-public class Tile implements Comparable<Tile>, ItemContainer
+public class Tile implements ItemContainer
 {
+	private static final float SQRT_2 = (float)Math.sqrt(2);
+	/** Smallest extra cost of a ramp move over the equivalent flat move: sqrt(3) - sqrt(2) */
+	private static final float LAYER_CHANGE_COST = (float)Math.sqrt(3) - SQRT_2;
+	
 	private ItemSet itemSet;
 	
 	private FloorTileData floorData;
 	private WallTileData[] walls;
 	
-	private BufferedImage pickImage;
-	
 	private Vector position;
 	private Layer layer;
 	private int row;
 	private int col;
+	private int index; //unique across all layers, see World.getTileIndex()
 	private int imageNumber;
 	private int switchImageTimer;
 	private int width;
@@ -43,26 +41,22 @@ public class Tile implements Comparable<Tile>, ItemContainer
 	
 	/** calculated by map editor */
 	private float staticLight;
-	private float dynamicLight; //calculated by lights ingame.
 	
 	private boolean visible; //whether or not this tile is invisible (eg. "air")
 	
 	private World world;
 	
 	//Pathfinding variables
-	private boolean visited;
-	private float heuristic;
 	private List<Tile> neighbours;
-	private Tile parent;
-	private float pathLength;
 	private boolean nextToWall;
 	private Set<AbstractEntity> entities;
+	private int numBlockers; //objects on this tile that nothing can walk through
 	private Tile roof;
 
 	private boolean walkable;
 	
 	
-	public Tile(Layer layer, int row, int col, int width, int height, FloorTileData data, int colour) 
+	public Tile(Layer layer, int row, int col, int width, int height, FloorTileData data) 
 	{
 		this.width = width;
 		this.height = height;
@@ -73,8 +67,8 @@ public class Tile implements Comparable<Tile>, ItemContainer
 		this.floorData = data;
 		
 		world = layer.getWorld();
+		index = world.getTileIndex(row, col, layer.getLayerNumber());
 		
-		dynamicLight = 0;
 		staticLight = 0.2f;
 		walkable = true;
 		visible = true;
@@ -113,16 +107,6 @@ public class Tile implements Comparable<Tile>, ItemContainer
 			break;
 		}
 		
-		int red = 0xFF & ( colour >> 16);
-		int green = 0xFF & (colour >> 8 );
-		int blue = 0xFF & (colour >> 0 );
-		
-
-		Color color = new Color(red,green,blue);
-		
-		if (isWalkable())
-			this.pickImage = RenderUtil.generateIsoImage(color, width,height);
-		
 		switchImageTimer = floorData.getAnimSpeed();
 		neighbours = new ArrayList<Tile>();
 		
@@ -136,7 +120,20 @@ public class Tile implements Comparable<Tile>, ItemContainer
 	 */
 	public float getLight()
 	{
-		float light = world.getTime().getLight() * world.getWeather().getLight() + staticLight + dynamicLight;
+		return getLight(world.getAmbientLight());
+	}
+	
+	/**
+	 * @param ambient the light from the time of day and the weather, see World.getAmbientLight(),
+	 * so it only has to be looked up once when lighting lots of tiles.
+	 */
+	public float getLight(float ambient)
+	{
+		float light = ambient + staticLight;
+		
+		//only dark tiles are lit up by lights in the world.
+		if (floorData.getType() == TileType.DARK)
+			light += world.getLightMap().getLight(this);
 
 		
 		light = 0.5f*Math.min(Math.max(light, 0),1);
@@ -146,36 +143,18 @@ public class Tile implements Comparable<Tile>, ItemContainer
 		return light;
 	}
 	
-	public void updateLights()
-	{
-		dynamicLight = 0;
-		
-		for (AbstractEntity entity: layer.getWorld().getEntityFactory().getEntities())
-		{
-			if (!entity.isAlive() || entity.getEntityType() != EntityType.CHARACTER)
-				continue;
-			
-			Character character = (Character) entity;
-
-			int maxDistance = 10;
-			float distance = distanceToTile(character.getCurrentTile());
-			
-			if (distance < maxDistance)
-			{
-				dynamicLight += (1 - distance / maxDistance)*character.getLightIntensity();
-				System.out.println("light: " + dynamicLight);
-			}
-		}
-	}
-	
-	
-	public BufferedImage getPickImage()
+	/**
+	 * @return whether the tile keeps changing between images, eg. water.
+	 */
+	public boolean isAnimated()
 	{
-		return pickImage;
+		return floorData.getAnimSpeed() > 0 && floorData.getNumImages() > 1;
 	}
-	
 
-	public int getImageID() 
+	/**
+	 * Count down to the next image, once a tick (see World.process()).
+	 */
+	public void animate()
 	{
 		if (floorData.getAnimSpeed() > 0)
 		{
@@ -187,8 +166,13 @@ public class Tile implements Comparable<Tile>, ItemContainer
 			else
 				switchImageTimer--;
 		}
-		
-		
+	}
+
+	/**
+	 * @return the image the tile is showing now. Doesn't change it, see animate().
+	 */
+	public int getImageID() 
+	{
 		return floorData.getImageID(imageNumber); //TODO
 	}
 
@@ -244,43 +228,50 @@ public class Tile implements Comparable<Tile>, ItemContainer
 		return walkable;
 	}
 	
-	
-	
-	
-	@Override
-	public int compareTo(Tile t)
+	protected void setWalkable(boolean walkable)
 	{
-		float value = (heuristic+pathLength) - (t.heuristic+t.pathLength);
-		if (value < 0)
-			value = -1;
-		else if (value > 0)
-			value = 1;
-		
-		return (int)value;
+		this.walkable = walkable;
 	}
-
-	public boolean isNextToWall()
-	{
-		return nextToWall;
-	}
-	public boolean isVisited() 
+	
+	/**
+	 * @return whether a character can stand on this tile, ignoring any entities on it.
+	 * A tile is blocked if it is not walkable, or if there is a solid tile directly above it.
+	 */
+	public boolean isPassable()
 	{
-		return visited;
+		return walkable && (roof == null || !roof.isVisible() || roof.isWalkable());
 	}
-	public void setVisited(boolean visited)
+	
+	public int getIndex()
 	{
-		this.visited = visited;
+		return index;
 	}
-
-	public float getHeuristic() 
+	
+	
+	
+	
+	public boolean isNextToWall()
 	{
-		return heuristic;
+		return nextToWall;
 	}
-
-	public void calculateHeuristic(Tile goal) 
+	/**
+	 * Estimate the remaining path length to the goal, never overestimating it.
+	 * Moving within a layer costs 1 orthogonally and sqrt(2) diagonally, so the octile distance
+	 * is a lower bound. Every layer change happens on a ramp, which costs at least 
+	 * LAYER_CHANGE_COST more than the same move on a flat layer.
+	 * Straight line distance (through the layers) is also a lower bound, so use the larger of the two.
+	 */
+	public float estimateDistance(Tile goal) 
 	{
-		//omg need multi-layer A* algorithm and heuristic
-		heuristic = distanceToTile(goal);
+		int r = Math.abs(goal.row-row);
+		int c = Math.abs(goal.col-col);
+		int l = Math.abs(goal.layer.getLayerNumber() - layer.getLayerNumber());
+		
+		float octile = Math.max(r, c) + (SQRT_2 - 1) * Math.min(r, c);
+		if (l == 0)
+			return octile; //never less than the straight line distance, so no need for a square root
+		
+		return Math.max(octile + l * LAYER_CHANGE_COST, distanceToTile(goal));
 	}
 	
 	public float distanceToTile(Tile goal)
@@ -298,6 +289,20 @@ public class Tile implements Comparable<Tile>, ItemContainer
 	{
 		return Collections.unmodifiableList(neighbours);	
 	}
+	
+	public int getNumNeighbours()
+	{
+		return neighbours.size();
+	}
+	
+	/**
+	 * For looping over the neighbours without making an iterator, eg. in the path finder.
+	 */
+	public Tile getNeighbour(int i)
+	{
+		return neighbours.get(i);
+	}
+	
 	public void addNeighbour(Tile neighbour) 
 	{
 		for (Tile n: neighbours)
@@ -312,26 +317,6 @@ public class Tile implements Comparable<Tile>, ItemContainer
 		neighbours.add(neighbour);
 	}
 
-	public void setParent(Tile parent) 
-	{
-		this.parent = parent;
-	}
-	
-	public Tile getParent() 
-	{
-		return this.parent;
-	}
-
-	public float getPathLength() 
-	{
-		return pathLength;
-	}
-
-	public void setPathLength(float pathLength) 
-	{
-		this.pathLength = pathLength;
-	}
-
 
 	public void setWall(Direction direction, WallTileData data) 
 	{
@@ -359,12 +344,38 @@ public class Tile implements Comparable<Tile>, ItemContainer
 
 	public void removeEntity(AbstractEntity entity) 
 	{
-		entities.remove(entity);
+		if (!entities.remove(entity))
+			return;
+		if (entity.getEntityType() == EntityType.OBJECT)
+		{
+			numBlockers--;
+			if (numBlockers == 0)
+				world.getComponents().update(this);
+		}
+		if (entities.isEmpty())
+			world.getFreeTiles().update(this);
 	}
 
 	public void addEntity(AbstractEntity entity) 
 	{
-		entities.add(entity);
+		if (!entities.add(entity))
+			return;
+		if (entity.getEntityType() == EntityType.OBJECT)
+		{
+			numBlockers++;
+			if (numBlockers == 1)
+				world.getComponents().update(this);
+		}
+		if (entities.size() == 1)
+			world.getFreeTiles().update(this);
+	}
+	
+	/**
+	 * @return whether an object (eg. a tree) is in the way on this tile.
+	 */
+	public boolean isBlocked()
+	{
+		return numBlockers > 0;
 	}
 
 	public void setRoof(Tile tile) {
@@ -35,8 +35,8 @@ public class Action extends Update {
 		seqNum = seq;
 		serverTimeAckd = time;
 		
-		posX = player.getPosition().getX();
-		posY = player.getPosition().getY();
+		posX = player.getX();
+		posY = player.getY();
 		layer = player.getCurrentLayer().getLayerNumber();
 		angle = player.getAngle();
 	}
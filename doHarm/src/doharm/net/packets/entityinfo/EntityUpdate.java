@@ -26,8 +26,8 @@ public abstract class EntityUpdate extends EntityInfo
 
 	public EntityUpdate(AbstractEntity ent) {
 		super(ent.getID());
-		posX = ent.getPosition().getX();
-		posY = ent.getPosition().getY();
+		posX = ent.getX();
+		posY = ent.getY();
 		layer = ent.getCurrentLayer().getLayerNumber();
 		angle = ent.getAngle();
 		//velocity = ent.getVelocity();
@@ -17,8 +17,8 @@ public class ItemCreate extends EntityCreate {
 	public ItemCreate(Item item)
 	{
 		super(item);
-		posX = item.getPosition().getX();
-		posY = item.getPosition().getY();
+		posX = item.getX();
+		posY = item.getY();
 		layer = item.getCurrentLayer().getLayerNumber();
 		name = item.toString();
 	}
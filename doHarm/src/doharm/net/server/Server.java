@@ -191,12 +191,9 @@ public class Server {
 		world.getEntityFactory().clearAddedEntities();
 		
 		// Updated Entities (presently is just ALL entities)
-		for (AbstractEntity e : world.getEntityFactory().getEntities() )
+		for (Player p : world.getPlayerFactory().getEntities() )
 		{
-			if (e instanceof Player)
-			{
-				entityUpdates.put(e.getID(), new CharacterUpdate((Player)e));
-			}
+			entityUpdates.put(p.getID(), new CharacterUpdate(p));
 		}
 		
 		// Removed Entities.
@@ -256,13 +253,10 @@ public class Server {
 		
 		Gamestate gamestate = new Gamestate(serverTime, -1, world, client);
 		
-		for (AbstractEntity e : world.getEntityFactory().getEntities() )
+		for (Player p : world.getPlayerFactory().getEntities() )
 		{
-			if (e instanceof Player)
-			{
-				gamestate.addECreate(new CharacterCreate((Player)e));
-				gamestate.addEUpdate(new CharacterUpdate((Player)e));
-			}
+			gamestate.addECreate(new CharacterCreate(p));
+			gamestate.addEUpdate(new CharacterUpdate(p));
 		}
 		byte[] send = gamestate.convertToBytes();
 		transmit(send, client.getAddress() );
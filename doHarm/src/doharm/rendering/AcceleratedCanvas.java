@@ -0,0 +1,92 @@
+package doharm.rendering;
+
+import java.awt.AWTEvent;
+import java.awt.Canvas;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferStrategy;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Shows finished frames through a BufferStrategy, whose back buffers are VolatileImages in video memory,
+ * instead of going through Swing's repaint.
+ *
+ * The render thread copies each frame straight into the back buffer and flips it onto the screen (see show()),
+ * so nothing waits for the event thread. If the video memory is lost (eg. the screen mode changes or
+ * the window is minimised) the frame is just copied in again.
+ *
+ * It is a heavyweight component, so Swing components on top of it (the HUD, menus) are cut out of it
+ * rather than drawn over the world. Mouse events are passed on to the component it is in,
+ * so the listeners there work the same as without it.
+ * @author Roland
+ */
+public class AcceleratedCanvas extends Canvas
+{
+	private static final long serialVersionUID = 1L;
+	private static final int NUM_BUFFERS = 2;
+
+	public AcceleratedCanvas()
+	{
+		setIgnoreRepaint(true); //the render thread draws it
+		setFocusable(false);
+		enableEvents(AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK);
+	}
+
+	@Override
+	public void addNotify()
+	{
+		super.addNotify();
+		createBufferStrategy(NUM_BUFFERS);
+	}
+
+	/**
+	 * Put the last finished frame on the screen.
+	 */
+	public void show(WorldRenderer renderer)
+	{
+		try
+		{
+			BufferStrategy strategy = getBufferStrategy();
+			if (strategy == null)
+				return;
+
+			do
+			{
+				do
+				{
+					Graphics g = strategy.getDrawGraphics();
+					renderer.paint(g, getWidth(), getHeight());
+					g.dispose();
+				}
+				while (strategy.contentsRestored());
+				strategy.show();
+			}
+			while (strategy.contentsLost());
+		}
+		catch (IllegalStateException e)
+		{
+			//taken off the screen while the frame was being shown
+		}
+	}
+
+	@Override
+	protected void processMouseEvent(MouseEvent e)
+	{
+		forward(e);
+	}
+
+	@Override
+	protected void processMouseMotionEvent(MouseEvent e)
+	{
+		forward(e);
+	}
+
+	private void forward(MouseEvent e)
+	{
+		Component parent = getParent();
+		if (parent != null)
+			parent.dispatchEvent(SwingUtilities.convertMouseEvent(this, e, parent));
+	}
+}
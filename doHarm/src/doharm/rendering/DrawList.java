@@ -0,0 +1,185 @@
+package doharm.rendering;
+
+import java.awt.Dimension;
+
+import doharm.logic.camera.CameraDirection;
+import doharm.logic.physics.Vector;
+import doharm.rendering.RenderSnapshot.EntityState;
+
+/**
+ * The characters and items on one layer that are on screen this frame, in the order to draw them.
+ *
+ * Each one is turned into a point on the screen once, anything too far off the screen to be seen
+ * (including the info drawn above characters, see MARGIN) is left out, and the rest are sorted from the back
+ * (top of the screen) to the front, so nearer things are drawn over the ones behind them.
+ * The sort is a radix sort on the screen y, which only takes two passes as it's never bigger than the screen.
+ * Things at the same depth stay in the order they were in.
+ * @author Roland
+ */
+public class DrawList
+{
+	/** How far off the screen (in pixels) something can be and still be drawn. */
+	public static final int MARGIN = 80;
+
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX = 1 << RADIX_BITS;
+	private static final int MAX_KEY = (1 << 2*RADIX_BITS) - 1;
+	private static final int KEY_OFFSET = 1024; //so things just above the screen don't have negative keys
+
+	private int size;
+	private EntityState[] entities;
+	private int[] xs;
+	private int[] ys;
+
+	//for sorting, reused
+	private int[] keys;
+	private int[] order;
+	private int[] sorted;
+	private int[] counts;
+	private EntityState[] sortedEntities;
+	private int[] sortedXs;
+	private int[] sortedYs;
+	private Vector vector;
+
+	public DrawList()
+	{
+		entities = new EntityState[0];
+		xs = new int[0];
+		ys = new int[0];
+		keys = new int[0];
+		order = new int[0];
+		sorted = new int[0];
+		sortedEntities = new EntityState[0];
+		sortedXs = new int[0];
+		sortedYs = new int[0];
+		counts = new int[RADIX];
+		vector = new Vector(0, 0);
+	}
+
+	/**
+	 * Work out which of the entities on a layer are on screen, and sort them.
+	 * @param layerEntities everything on the layer, see RenderSnapshot.getEntities()
+	 * @param alpha see RenderSnapshot.getAlpha()
+	 * @param cx
+	 * @param cy where the top left of the world is drawn
+	 * @param tileW
+	 * @param tileH how big a floor tile image is
+	 */
+	public void build(EntityState[] layerEntities, float alpha, int layer, CameraDirection direction,
+			int cx, int cy, Dimension canvasSize, int tileW, int tileH)
+	{
+		if (entities.length < layerEntities.length)
+			grow(layerEntities.length);
+
+		size = 0;
+		for (int i = 0; i < layerEntities.length; i++)
+		{
+			EntityState entity = layerEntities[i];
+			RenderUtil.convertCoordsToIso(entity.getX(alpha)/tileW, entity.getY(alpha)/tileH, layer, direction, vector);
+			int x = cx + (int)vector.getX();
+			int y = cy + (int)vector.getY();
+
+			int halfWidth = entity.getWidth()/2 + MARGIN;
+			int halfHeight = entity.getHeight()/4 + MARGIN;
+			if (x + halfWidth < 0 || x - halfWidth > canvasSize.width || y + halfHeight < 0 || y - halfHeight > canvasSize.height)
+				continue;
+
+			entities[size] = entity;
+			xs[size] = x;
+			ys[size] = y;
+			keys[size] = Math.max(0, Math.min(MAX_KEY, y + KEY_OFFSET));
+			size++;
+		}
+
+		sort();
+	}
+
+	/**
+	 * Two passes of a counting sort, on the low and then the high 8 bits of the keys.
+	 */
+	private void sort()
+	{
+		for (int i = 0; i < size; i++)
+			order[i] = i;
+
+		for (int shift = 0; shift < 2*RADIX_BITS; shift += RADIX_BITS)
+		{
+			for (int d = 0; d < RADIX; d++)
+				counts[d] = 0;
+			for (int i = 0; i < size; i++)
+				counts[(keys[order[i]] >> shift) & (RADIX-1)]++;
+			int total = 0;
+			for (int d = 0; d < RADIX; d++)
+			{
+				int count = counts[d];
+				counts[d] = total;
+				total += count;
+			}
+			for (int i = 0; i < size; i++)
+				sorted[counts[(keys[order[i]] >> shift) & (RADIX-1)]++] = order[i];
+
+			int[] swap = order;
+			order = sorted;
+			sorted = swap;
+		}
+
+		for (int i = 0; i < size; i++)
+		{
+			sortedEntities[i] = entities[order[i]];
+			sortedXs[i] = xs[order[i]];
+			sortedYs[i] = ys[order[i]];
+		}
+		EntityState[] swapEntities = entities;
+		entities = sortedEntities;
+		sortedEntities = swapEntities;
+		int[] swap = xs;
+		xs = sortedXs;
+		sortedXs = swap;
+		swap = ys;
+		ys = sortedYs;
+		sortedYs = swap;
+	}
+
+	private void grow(int capacity)
+	{
+		capacity = Math.max(capacity, entities.length*2);
+		entities = new EntityState[capacity];
+		xs = new int[capacity];
+		ys = new int[capacity];
+		keys = new int[capacity];
+		order = new int[capacity];
+		sorted = new int[capacity];
+		sortedEntities = new EntityState[capacity];
+		sortedXs = new int[capacity];
+		sortedYs = new int[capacity];
+	}
+
+	/**
+	 * @return how many things there are to draw.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public EntityState get(int i)
+	{
+		return entities[i];
+	}
+
+	/**
+	 * @return where the middle of the i'th thing is on the screen.
+	 */
+	public int getX(int i)
+	{
+		return xs[i];
+	}
+
+	/**
+	 * @return where the middle of the i'th thing is on the screen.
+	 */
+	public int getY(int i)
+	{
+		return ys[i];
+	}
+}
@@ -1,14 +1,12 @@
 package doharm.rendering;
 
 import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.Graphics2D;
 
 import doharm.logic.AbstractGame;
 import doharm.logic.entities.characters.players.Player;
-import doharm.logic.entities.items.Item;
-import doharm.logic.physics.Vector;
 import doharm.logic.world.World;
+import doharm.rendering.RenderSnapshot.EntityState;
 
 public class ItemRenderer {
 
@@ -22,32 +20,26 @@ public class ItemRenderer {
 		this.world = game.getWorld();
 	}
 
-	public void redrawPlayer(int cx, int cy, Item item, Graphics2D graphics, int fTileW, int wTileH) {
+	/**
+	 * @param centreX
+	 * @param centreY where the item is on the screen, see DrawList
+	 */
+	public void redrawPlayer(int centreX, int centreY, EntityState item, Graphics2D graphics) {
 
-		drawItem(cx,cy,item ,graphics, fTileW, wTileH);
+		drawItem(centreX,centreY,item,graphics);
 
 	}
 
-	Vector v = new Vector(0, 0);
-	private void drawItem(int cx, int cy, Item item, Graphics2D graphics, int tileW, int tileH) {
-
-		Dimension size = item.getSize();
-
-		Vector position = item.getPosition();
-		float row = position.getY()/tileH;
-		float col = position.getX()/tileW;
-
+	private void drawItem(int centreX, int centreY, EntityState item, Graphics2D graphics) {
 
 		//TODO get item colour or image
-		graphics.setColor(item.getQuality().getColour());
-
-		RenderUtil.convertCoordsToIso(col, row, item.getCurrentLayer().getLayerNumber(), game.getCamera(), v);
+		graphics.setColor(item.getColour());
 
 
-		int x = cx+(int)v.getX()-size.width/2;
-		int y = cy+(int)v.getY()-size.height/4;
+		int x = centreX-item.getWidth()/2;
+		int y = centreY-item.getHeight()/4;
 
-		graphics.fillOval(x, y, size.width, size.height/2);
+		graphics.fillOval(x, y, item.getWidth(), item.getHeight()/2);
 
 
 
@@ -0,0 +1,309 @@
+package doharm.rendering;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import doharm.logic.AbstractGame;
+import doharm.logic.physics.Vector;
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Tile;
+
+/**
+ * Darkens the floor of a layer according to how much light is on each tile, in one pass over the world image.
+ *
+ * First how dark each tile on screen is goes into a small texture, one value per tile,
+ * looked up from the light the RenderSnapshot copied at the end of the tick.
+ * Then every pixel of every visible tile is darkened by that texture, filtered bilinearly,
+ * so the light blends smoothly from one tile to the next instead of changing in steps at the edges.
+ *
+ * Every tile covers the same pixels relative to its position, so which four tiles each pixel
+ * takes its light from (and how much of each) is worked out once per camera direction and kept in a table.
+ * The pixels covered are the same as a floor tile's, so nothing is darkened twice.
+ * @author Roland
+ */
+public class LightOverlay
+{
+	private static final int NONE = -1; //an invisible tile, or off the edge of the world
+
+	private AbstractGame game;
+	private int[] levelAlphas; //how dark (0-255) a tile is for each light level, see RenderSnapshot.getLightLevels()
+	private int tileWidth;
+	private int tileHeight;
+	private boolean[] mask; //the pixels a floor tile covers, [y*tileWidth + x]
+	private int[] spanStart; //the first and last+1 pixel covered on each line of a tile
+	private int[] spanEnd;
+
+	//the light texture, with a ring of extra tiles around the ones on screen so every tile has neighbours
+	private int[] texture;
+	private int textureCols;
+
+	//the table, a row for each pixel a tile covers
+	private int numPixels;
+	private int[] pixelX;
+	private int[] pixelY;
+	private int[] quadrant; //which way the neighbours it blends with are: bit 0 = next column, bit 1 = next row
+	private int[] weight; //out of 256: the tile itself,
+	private int[] weightCol; //the neighbour in the next/previous column,
+	private int[] weightRow; //the neighbour in the next/previous row,
+	private int[] weightDiagonal; //and the one diagonally between them
+
+	//where the table was made for
+	private float colX = Float.NaN;
+	private float colY;
+	private float rowX;
+	private float rowY;
+
+	private Vector origin;
+	private Vector colStep;
+	private Vector rowStep;
+	private int[] neighbours;
+
+	/**
+	 * @param numShades how many different shades the tiles used to be drawn with,
+	 * so that the overlay is as dark as they were.
+	 */
+	public LightOverlay(AbstractGame game, int numShades, int tileWidth, int tileHeight)
+	{
+		this.game = game;
+		levelAlphas = new int[RenderSnapshot.LIGHT_LEVELS];
+		for (int level = 0; level < levelAlphas.length; level++)
+		{
+			//as dark as the shade images: 1 when pitch black, down to 1 - (numShades-1)/numShades when fully lit.
+			float alpha = 1 - RenderSnapshot.toLight(level)*(numShades-1)/numShades;
+			levelAlphas[level] = Math.round(alpha*255);
+		}
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		origin = new Vector(0, 0);
+		colStep = new Vector(0, 0);
+		rowStep = new Vector(0, 0);
+		neighbours = new int[12];
+		texture = new int[0];
+
+		mask = new boolean[tileWidth*tileHeight];
+		int size = 0;
+		for (int y = 0; y < tileHeight; y++)
+		{
+			for (int x = 0; x < tileWidth; x++)
+			{
+				mask[y*tileWidth + x] = RenderUtil.isInTile(x, y);
+				if (mask[y*tileWidth + x])
+					size++;
+			}
+		}
+
+		spanStart = new int[tileHeight];
+		spanEnd = new int[tileHeight];
+		for (int y = 0; y < tileHeight; y++)
+		{
+			int x = 0;
+			while (x < tileWidth && !mask[y*tileWidth + x])
+				x++;
+			spanStart[y] = x;
+			while (x < tileWidth && mask[y*tileWidth + x])
+				x++;
+			spanEnd[y] = x;
+		}
+
+		pixelX = new int[size];
+		pixelY = new int[size];
+		quadrant = new int[size];
+		weight = new int[size];
+		weightCol = new int[size];
+		weightRow = new int[size];
+		weightDiagonal = new int[size];
+	}
+
+	/**
+	 * Work out, for each pixel of a tile, how far it is from the middle of the tile in rows and columns,
+	 * and so how much light it gets from the tile and from the neighbours on that side.
+	 */
+	private void makeTable(float colX, float colY, float rowX, float rowY)
+	{
+		this.colX = colX;
+		this.colY = colY;
+		this.rowX = rowX;
+		this.rowY = rowY;
+
+		//invert the 2x2 matrix that turns (columns, rows) into pixels
+		float determinant = colX*rowY - rowX*colY;
+		numPixels = 0;
+		for (int y = 0; y < tileHeight; y++)
+		{
+			for (int x = 0; x < tileWidth; x++)
+			{
+				if (!mask[y*tileWidth + x])
+					continue;
+
+				float dx = x + 0.5f - tileWidth/2f;
+				float dy = y + 0.5f - tileHeight/2f;
+				float col = (dx*rowY - dy*rowX) / determinant;
+				float row = (dy*colX - dx*colY) / determinant;
+				float fc = Math.min(Math.abs(col), 1);
+				float fr = Math.min(Math.abs(row), 1);
+
+				int i = numPixels++;
+				pixelX[i] = x;
+				pixelY[i] = y;
+				quadrant[i] = (col >= 0 ? 1 : 0) | (row >= 0 ? 2 : 0);
+				weightCol[i] = Math.round(fc*(1-fr)*256);
+				weightRow[i] = Math.round((1-fc)*fr*256);
+				weightDiagonal[i] = Math.round(fc*fr*256);
+				weight[i] = 256 - weightCol[i] - weightRow[i] - weightDiagonal[i];
+			}
+		}
+	}
+
+	/**
+	 * Shade the tiles of the layer that are on screen, with the light there was on them in the snapshot.
+	 * @param image the world image, which must be TYPE_INT_ARGB
+	 * @param cx
+	 * @param cy where the top left of the world is drawn, the same as for the tiles.
+	 */
+	public void draw(RenderSnapshot snapshot, BufferedImage image, int cx, int cy, int layer)
+	{
+		World world = game.getWorld();
+		RenderUtil.convertCoordsToIso(0, 0, layer, snapshot.getDirection(), origin);
+		RenderUtil.convertCoordsToIso(1, 0, layer, snapshot.getDirection(), colStep);
+		RenderUtil.convertCoordsToIso(0, 1, layer, snapshot.getDirection(), rowStep);
+		int colDX = colStep.getXAsInt() - origin.getXAsInt();
+		int colDY = colStep.getYAsInt() - origin.getYAsInt();
+		int rowDX = rowStep.getXAsInt() - origin.getXAsInt();
+		int rowDY = rowStep.getYAsInt() - origin.getYAsInt();
+		if (colDX != colX || colDY != colY || rowDX != rowX || rowDY != rowY)
+			makeTable(colDX, colDY, rowDX, rowDY);
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int left = cx + origin.getXAsInt() - tileWidth/2;
+		int top = cy + origin.getYAsInt() - tileHeight/2;
+
+		//which tiles are on screen: turn the corners of the screen into columns and rows
+		float determinant = colDX*rowDY - rowDX*colDY;
+		float minCol = Float.MAX_VALUE;
+		float minRow = Float.MAX_VALUE;
+		float maxCol = -Float.MAX_VALUE;
+		float maxRow = -Float.MAX_VALUE;
+		for (int corner = 0; corner < 4; corner++)
+		{
+			float dx = (corner < 2 ? 0 : width) - (left + tileWidth/2f);
+			float dy = (corner % 2 == 0 ? 0 : height) - (top + tileHeight/2f);
+			float col = (dx*rowDY - dy*rowDX) / determinant;
+			float row = (dy*colDX - dx*colDY) / determinant;
+			minCol = Math.min(minCol, col);
+			minRow = Math.min(minRow, row);
+			maxCol = Math.max(maxCol, col);
+			maxRow = Math.max(maxRow, row);
+		}
+
+		int fromCol = Math.max(0, (int)Math.floor(minCol) - 1);
+		int fromRow = Math.max(0, (int)Math.floor(minRow) - 1);
+		int toCol = Math.min(world.getNumCols(), (int)Math.ceil(maxCol) + 2);
+		int toRow = Math.min(world.getNumRows(), (int)Math.ceil(maxRow) + 2);
+		if (fromCol >= toCol || fromRow >= toRow)
+			return;
+
+		//fill in the texture, with how dark each tile is (0-255)
+		Tile[][] tiles = world.getLayers()[layer].getTiles();
+		byte[] levels = snapshot.getLightLevels(layer);
+		textureCols = toCol - fromCol + 2;
+		int textureRows = toRow - fromRow + 2;
+		if (texture.length < textureCols*textureRows)
+			texture = new int[textureCols*textureRows];
+		boolean anyVisible = false;
+		for (int r = 0; r < textureRows; r++)
+		{
+			int row = fromRow + r - 1;
+			for (int c = 0; c < textureCols; c++)
+			{
+				int col = fromCol + c - 1;
+				int value = NONE;
+				if (row >= 0 && row < tiles.length && col >= 0 && col < tiles[0].length && tiles[row][col].isVisible())
+				{
+					value = levelAlphas[levels[row*tiles[0].length + col] & 0xFF];
+					anyVisible = true;
+				}
+				texture[r*textureCols + c] = value;
+			}
+		}
+		if (!anyVisible)
+			return;
+
+		int[] data = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		for (int row = fromRow; row < toRow; row++)
+		{
+			for (int col = fromCol; col < toCol; col++)
+			{
+				int t = (row - fromRow + 1)*textureCols + (col - fromCol + 1);
+				int centre = texture[t];
+				if (centre == NONE)
+					continue;
+
+				int x = left + col*colDX + row*rowDX;
+				int y = top + col*colDY + row*rowDY;
+				if (x >= width || y >= height || x + tileWidth <= 0 || y + tileHeight <= 0)
+					continue;
+
+				//the neighbours in each of the four directions, or this tile again if there isn't one to blend with
+				boolean even = true;
+				for (int q = 0; q < 4; q++)
+				{
+					int dc = (q & 1) != 0 ? 1 : -1;
+					int dr = (q & 2) != 0 ? textureCols : -textureCols;
+					neighbours[q*3] = valueOr(texture[t + dc], centre);
+					neighbours[q*3 + 1] = valueOr(texture[t + dr], centre);
+					neighbours[q*3 + 2] = valueOr(texture[t + dc + dr], centre);
+					even &= neighbours[q*3] == centre && neighbours[q*3 + 1] == centre && neighbours[q*3 + 2] == centre;
+				}
+
+				boolean clip = x < 0 || y < 0 || x + tileWidth > width || y + tileHeight > height;
+				if (even)
+				{
+					//lit the same as everything around it, which is most tiles
+					for (int line = 0; line < tileHeight; line++)
+					{
+						int py = y + line;
+						if (py < 0 || py >= height)
+							continue;
+						int from = Math.max(x + spanStart[line], 0);
+						int to = Math.min(x + spanEnd[line], width);
+						for (int p = py*width + from, end = py*width + to; p < end; p++)
+							data[p] = darken(data[p], centre);
+					}
+					continue;
+				}
+
+				for (int i = 0; i < numPixels; i++)
+				{
+					int px = x + pixelX[i];
+					int py = y + pixelY[i];
+					if (clip && (px < 0 || py < 0 || px >= width || py >= height))
+						continue;
+
+					int n = quadrant[i]*3;
+					int alpha = (weight[i]*centre + weightCol[i]*neighbours[n] + weightRow[i]*neighbours[n+1]
+							+ weightDiagonal[i]*neighbours[n+2]) >> 8;
+					data[py*width + px] = darken(data[py*width + px], alpha);
+				}
+			}
+		}
+	}
+
+	private static int valueOr(int value, int otherwise)
+	{
+		return value == NONE ? otherwise : value;
+	}
+
+	/**
+	 * @return the ARGB colour with black drawn over it at the given alpha (0-255).
+	 */
+	private static int darken(int argb, int alpha)
+	{
+		int keep = 255 - alpha;
+		keep += keep >> 7; //0-256
+		int a = alpha + ((argb >>> 24)*keep >> 8);
+		int rb = ((argb & 0xFF00FF)*keep >>> 8) & 0xFF00FF;
+		int g = ((argb & 0x00FF00)*keep >>> 8) & 0x00FF00;
+		return a << 24 | rb | g;
+	}
+}
@@ -1,39 +1,32 @@
 package doharm.rendering;
 
 import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-
-import javax.imageio.ImageIO;
 
 import doharm.logic.AbstractGame;
-import doharm.logic.entities.characters.Character;
-import doharm.logic.entities.characters.CharacterType;
-import doharm.logic.entities.characters.players.HumanPlayer;
-import doharm.logic.entities.characters.players.Player;
-import doharm.logic.entities.characters.players.PlayerType;
-import doharm.logic.entities.characters.states.CharacterStateType;
-import doharm.logic.entities.characters.states.MoveState;
-import doharm.logic.physics.Vector;
 import doharm.logic.world.World;
-import doharm.logic.world.tiles.Tile;
+import doharm.rendering.RenderSnapshot.EntityState;
 
 public class PlayerRenderer {
 
+	//the health bar goes from red (empty) to green (full)
+	private static final Color[] HEALTH_COLOURS = new Color[256];
+	private static final Color EXPERIENCE_COLOUR = new Color(1f,0,1);
+	static
+	{
+		for (int i = 0; i < HEALTH_COLOURS.length; i++)
+		{
+			float ratio = (float)i / (HEALTH_COLOURS.length-1);
+			HEALTH_COLOURS[i] = new Color(1-ratio,ratio,0,1);
+		}
+	}
+
 	private AbstractGame game;
 	private World world;
-	private ArrayList<BufferedImage> playerImgs;
 
 	public PlayerRenderer(AbstractGame game) {
 		this.game = game;
 		this.world = game.getWorld();
-		
-		loadPlayerImages("res\\tilesets\\player sprites.png");
 	}
 
 
@@ -46,29 +39,22 @@ public class PlayerRenderer {
 		}
 	}*/
 	
-	public void drawInfo(int cx, int cy, Character character, Graphics2D graphics, int tileW, int tileH)
+	/**
+	 * @param centreX
+	 * @param centreY where the character is on the screen, see DrawList
+	 */
+	public void drawInfo(int centreX, int centreY, EntityState character, Graphics2D graphics)
 	{
-		if (!character.isAlive())
-			return;
-		
-		Vector position = character.getPosition();
-		float row = position.getY()/tileH;
-		float col = position.getX()/tileW;
-		
-		
-		RenderUtil.convertCoordsToIso(col, row, character.getCurrentLayer().getLayerNumber(), game.getCamera(), v);
-		
-		Dimension size = character.getSize();
-		
-		int x = cx+(int)v.getX()-size.width/2;// -tileW/2;
-		int y = cy+(int)v.getY()-size.height/4;// -tileH/2;
+		int x = centreX-character.getWidth()/2;// -tileW/2;
+		int y = centreY-character.getHeight()/4;// -tileH/2;
 		
 		
-		graphics.setColor(new Color(1-character.getHealthRatio(),character.getHealthRatio(),0,1));
-		graphics.fillRect(x, y-10, (int)(size.width*character.getHealthRatio()), 3);
+		int health = Math.round(character.getHealthRatio()*(HEALTH_COLOURS.length-1));
+		graphics.setColor(HEALTH_COLOURS[Math.max(0, Math.min(HEALTH_COLOURS.length-1, health))]);
+		graphics.fillRect(x, y-10, (int)(character.getWidth()*character.getHealthRatio()), 3);
 		
-		graphics.setColor(new Color(1f,0,1));
-		graphics.fillRect(x, y-5, (int)(size.width*character.getExperienceRatio()), 3);
+		graphics.setColor(EXPERIENCE_COLOUR);
+		graphics.fillRect(x, y-5, (int)(character.getWidth()*character.getExperienceRatio()), 3);
 		
 		
 //		if (player.getPlayerType() == PlayerType.HUMAN)
@@ -81,33 +67,19 @@ public class PlayerRenderer {
 //		graphics.setColor(Color.white);
 //		graphics.drawString("State: " + player.getStateType().toString(), x, y-15);
 		
+		//the text is only made again when it changes, see EntityState
 		graphics.setColor(Color.white);
 		graphics.drawString(character.getName(), x, y-55);
-		
-		graphics.setColor(Color.white);
-		graphics.drawString("Level: "+ character.getLevel(), x, y-35);
-		
-		graphics.setColor(Color.white);
-		String alliance = "no";
-		if (character.getAlliance() != null)
-			alliance = character.getAlliance().getName().toString();
-		graphics.drawString(alliance + " alliance", x, y-15);
+		graphics.drawString(character.getLevelText(), x, y-35);
+		graphics.drawString(character.getAllianceText(), x, y-15);
 		
 		
 	}
-	Vector v = new Vector();
-	private void drawPlayer(int cx, int cy, Character character, Graphics2D graphics, int tileW, int tileH) 
+	private void drawPlayer(int centreX, int centreY, EntityState character, Graphics2D graphics) 
 	{
-		if (!character.isAlive())
-			return;
-		
-		Dimension size = character.getSize();
 		//Tile tile = player.getCurrentTile();
 		//Layer layer = player.getCurrentLayer();
 		//Vector relative = player.getPositionRelativeToTile();
-		Vector position = character.getPosition();
-		float row = position.getY()/tileH;
-		float col = position.getX()/tileW;
 		
 		
 		
@@ -123,16 +95,12 @@ public class PlayerRenderer {
 		
 		graphics.setColor(character.getColour());
 
-		RenderUtil.convertCoordsToIso(col, row, character.getCurrentLayer().getLayerNumber(), game.getCamera(), v);
-		
-	
-		
-		int x = cx+(int)v.getX()-size.width/2;
-		int y = cy+(int)v.getY()-size.height/4;
+		int x = centreX-character.getWidth()/2;
+		int y = centreY-character.getHeight()/4;
 		
 		
 		//draw the player
-		graphics.fillOval(x, y, size.width, size.height/2);
+		graphics.fillOval(x, y, character.getWidth(), character.getHeight()/2);
 		
 		
 		
@@ -146,10 +114,11 @@ public class PlayerRenderer {
 				MoveState state = (MoveState)player.getState();
 				
 				//Path
-				Collection<Tile> path = state.getPath();
+				Path path = state.getPath();
 				graphics.setColor(Color.white);
-				for (Tile tile: path)
+				for (int i = 0; i < path.size(); i++)
 				{
+					Tile tile = path.getTile(world, i);
 					row = tile.getY()/world.getTileHeight();
 					col = tile.getX()/world.getTileWidth();
 					v = RenderUtil.convertCoordsToIso(col, row, player.getCurrentLayer().getLayerNumber(), game.getCamera());
@@ -184,35 +153,14 @@ public class PlayerRenderer {
 		
 	}
 
-	public void redrawPlayer(int cx, int cy, Character character, Graphics2D graphics, int fTileW,
-			int wTileH) {
+	/**
+	 * @param centreX
+	 * @param centreY where the character is on the screen, see DrawList
+	 */
+	public void redrawPlayer(int centreX, int centreY, EntityState character, Graphics2D graphics) {
 		// TODO Auto-generated method stub
-		drawPlayer(cx,cy,character,graphics, fTileW, wTileH);
-		
-	}
-	
-	private void loadPlayerImages(String string){
-		BufferedImage sheet = null;
-		try {
-			sheet = ImageIO.read(new File(string));
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-			//System.exit(1);
-		} 
-		
-		
-		int size = 32;
-		 playerImgs = new ArrayList<BufferedImage>();
-		 for(int i = 0; i < 6; i++){
-			 for (int j = 0; j < 4; j++){
-				 BufferedImage next = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
-				 Graphics2D g = next.createGraphics();
-				 g.drawImage(sheet, 0, 0, size, size, i*size, j*size, size, size, null);
-				 playerImgs.add(next);
-			 }
-		 }
+		drawPlayer(centreX,centreY,character,graphics);
 		
 	}
 
-}
+}
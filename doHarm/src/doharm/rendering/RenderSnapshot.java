@@ -0,0 +1,510 @@
+package doharm.rendering;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import doharm.logic.AbstractGame;
+import doharm.logic.camera.CameraDirection;
+import doharm.logic.entities.AbstractEntity;
+import doharm.logic.entities.EntityType;
+import doharm.logic.entities.characters.Character;
+import doharm.logic.entities.characters.players.HumanPlayer;
+import doharm.logic.entities.characters.players.Player;
+import doharm.logic.entities.characters.players.PlayerType;
+import doharm.logic.entities.items.Item;
+import doharm.logic.entities.items.misc.dragonballs.DragonBall;
+import doharm.logic.time.Clock;
+import doharm.logic.time.DayType;
+import doharm.logic.time.Time;
+import doharm.logic.weather.Weather;
+import doharm.logic.weather.WeatherType;
+import doharm.logic.world.LightMap;
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Tile;
+
+/**
+ * Everything the renderer needs to know about the world that changes from tick to tick,
+ * copied at the end of a tick so it can be drawn on another thread while the next tick runs.
+ *
+ * A snapshot never changes once it has been made. The game keeps the newest one (see AbstractGame.getRenderSnapshot()),
+ * and each snapshot remembers where everything was in the one before it, so the renderer always has
+ * two ticks to draw in between: see getAlpha().
+ *
+ * The tiles themselves aren't copied, as they hardly ever change, but the light on them is,
+ * as it changes with the time, the weather and everything that gives off light.
+ * @author Roland
+ */
+public class RenderSnapshot
+{
+	/** How long a tick is, in nanoseconds. */
+	public static final long TICK_LENGTH = Clock.CLOCK_INTERVAL * 1000000L;
+	/** How many different amounts of light a tile can have, see getLightLevels(). */
+	public static final int LIGHT_LEVELS = 256;
+	private static final float LIGHT_SCALE = 510; //Tile.getLight() goes from 0 to 0.5, which is kept as 0-255
+	//how much the ambient light can change before the light on a layer is copied again: half a step of LIGHT_SCALE at most
+	private static final float AMBIENT_STEP = 1 / LIGHT_SCALE;
+
+	private long publishedAt; //System.nanoTime()
+
+	private float cameraX;
+	private float cameraY;
+	private float previousCameraX;
+	private float previousCameraY;
+	private CameraDirection direction;
+
+	private EntityState[][] layers; //the characters and items on the ground on each layer, to draw
+	private Map<Integer, EntityState> byID;
+	private boolean obscured; //whether a human player is underneath something, so the layers above are see-through
+
+	private int year;
+	private int month;
+	private int day;
+	private float timeOfDay;
+	private DayType dayType;
+	private float light;
+	private WeatherType weatherType;
+	private float conditions;
+	private boolean playerAlive;
+	private int timeTillSpawn;
+	private byte[][] tileLight; //[layer][row*numCols + col], see getLight(Tile)
+	private int numCols;
+	//what the light on each layer was copied from, so the next snapshot can keep it if it hasn't changed
+	private LightMap lightMap;
+	private float[] lightAmbient;
+	private int[] lightVersions;
+
+	//for the dragon radar, all in tiles
+	private int playerCol;
+	private int playerRow;
+	private int playerLayer;
+	private int[] ballCols;
+	private int[] ballRows;
+
+	/**
+	 * Copy the world as it is now.
+	 * @param previous the last snapshot of the same game, or null if there wasn't one.
+	 */
+	public RenderSnapshot(AbstractGame game, RenderSnapshot previous)
+	{
+		World world = game.getWorld();
+		publishedAt = System.nanoTime();
+
+		cameraX = game.getCamera().getPosition().getX();
+		cameraY = game.getCamera().getPosition().getY();
+		previousCameraX = previous != null ? previous.cameraX : cameraX;
+		previousCameraY = previous != null ? previous.cameraY : cameraY;
+		direction = game.getCamera().getDirection();
+
+		//anything that moves further than this in one tick has been put somewhere new, rather than walked there
+		float maxStep = 2*Math.max(world.getTileWidth(), world.getTileHeight());
+
+		byID = new HashMap<Integer, EntityState>();
+		layers = new EntityState[world.getLayers().length][];
+		List<EntityState> layerStates = new ArrayList<EntityState>();
+		for (int layer = 0; layer < layers.length; layer++)
+		{
+			layerStates.clear();
+			List<AbstractEntity> layerEntities = world.getSpatialIndex().getEntities(layer);
+			for (int i = 0; i < layerEntities.size(); i++)
+			{
+				AbstractEntity entity = layerEntities.get(i);
+				if (!entity.isAlive())
+					continue;
+				if (entity.getEntityType() == EntityType.ITEM && !((Item)entity).isOnGround())
+					continue;
+				if (entity.getEntityType() != EntityType.CHARACTER && entity.getEntityType() != EntityType.ITEM)
+					continue;
+
+				EntityState state = new EntityState(entity, layer, previous == null ? null : previous.byID.get(entity.getID()), maxStep);
+				layerStates.add(state);
+				byID.put(entity.getID(), state);
+			}
+			layers[layer] = layerStates.toArray(new EntityState[layerStates.size()]);
+		}
+
+		for (Player player: world.getPlayerFactory().getEntities())
+		{
+			if (player.getPlayerType() == PlayerType.HUMAN && RenderUtil.isObscured(player, world))
+			{
+				obscured = true;
+				break;
+			}
+		}
+
+		Time time = world.getTime();
+		year = time.getYear();
+		month = time.getMonth();
+		day = time.getDay();
+		timeOfDay = time.getTimeOfDay();
+		dayType = time.getDayType();
+		light = time.getLight();
+		Weather weather = world.getWeather();
+		weatherType = weather.getWeatherType();
+		conditions = weather.getConditions();
+
+		//the light is only copied again when the lights on a layer have changed, or it has got lighter or darker,
+		//otherwise the last snapshot's copy is kept
+		numCols = world.getNumCols();
+		float ambient = world.getAmbientLight();
+		lightMap = world.getLightMap();
+		tileLight = new byte[world.getLayers().length][];
+		lightAmbient = new float[tileLight.length];
+		lightVersions = new int[tileLight.length];
+		for (int layer = 0; layer < tileLight.length; layer++)
+		{
+			lightVersions[layer] = lightMap.getVersion(layer);
+			if (previous != null && previous.lightMap == lightMap && previous.lightVersions[layer] == lightVersions[layer]
+					&& Math.abs(previous.lightAmbient[layer] - ambient) < AMBIENT_STEP)
+			{
+				tileLight[layer] = previous.tileLight[layer];
+				lightAmbient[layer] = previous.lightAmbient[layer];
+				continue;
+			}
+
+			lightAmbient[layer] = ambient;
+			Tile[][] tiles = world.getLayers()[layer].getTiles();
+			tileLight[layer] = new byte[tiles.length*numCols];
+			for (int row = 0; row < tiles.length; row++)
+			{
+				for (int col = 0; col < numCols; col++)
+				{
+					if (tiles[row][col].isVisible()) //there's nothing to light on the others
+						tileLight[layer][row*numCols + col] = (byte)(tiles[row][col].getLight(ambient)*LIGHT_SCALE + 0.5f);
+				}
+			}
+		}
+
+		HumanPlayer humanPlayer = world.getHumanPlayer();
+		playerAlive = humanPlayer.isAlive();
+		timeTillSpawn = humanPlayer.getTimeTillSpawn();
+		playerCol = (int)(humanPlayer.getX()/world.getTileWidth());
+		playerRow = (int)(humanPlayer.getY()/world.getTileHeight());
+		playerLayer = humanPlayer.getCurrentLayer().getLayerNumber();
+
+		List<DragonBall> balls = new ArrayList<DragonBall>();
+		for (DragonBall ball: world.getDragonRadar().getBalls())
+		{
+			if (ball.isOnGround())
+				balls.add(ball);
+		}
+		ballCols = new int[balls.size()];
+		ballRows = new int[balls.size()];
+		for (int i = 0; i < balls.size(); i++)
+		{
+			ballCols[i] = (int)(balls.get(i).getX()/world.getTileWidth());
+			ballRows[i] = (int)(balls.get(i).getY()/world.getTileHeight());
+		}
+	}
+
+	/**
+	 * How far to draw things between where they were last tick and where they are now.
+	 * Everything is drawn a tick behind, so that it can move smoothly however many frames are drawn in a tick.
+	 * @param now System.nanoTime() when the frame is drawn
+	 * @return 0 just after this snapshot was made, up to 1 a tick later.
+	 */
+	public float getAlpha(long now)
+	{
+		return Math.max(0, Math.min(1, (float)(now - publishedAt) / TICK_LENGTH));
+	}
+
+	public float getCameraX(float alpha)
+	{
+		return previousCameraX + (cameraX - previousCameraX)*alpha;
+	}
+
+	public float getCameraY(float alpha)
+	{
+		return previousCameraY + (cameraY - previousCameraY)*alpha;
+	}
+
+	/**
+	 * @return the way the camera was facing. Draw the whole frame this way, even if the camera has turned since.
+	 */
+	public CameraDirection getDirection()
+	{
+		return direction;
+	}
+
+	/**
+	 * @return the living characters and the items on the ground on a layer. Don't change it.
+	 */
+	public EntityState[] getEntities(int layer)
+	{
+		return layers[layer];
+	}
+
+	public boolean isObscured()
+	{
+		return obscured;
+	}
+
+	public int getYear()
+	{
+		return year;
+	}
+
+	public int getMonth()
+	{
+		return month;
+	}
+
+	public int getDay()
+	{
+		return day;
+	}
+
+	public float getTimeOfDay()
+	{
+		return timeOfDay;
+	}
+
+	public DayType getDayType()
+	{
+		return dayType;
+	}
+
+	public float getLight()
+	{
+		return light;
+	}
+
+	/**
+	 * @return how much light was on the tile, from 0 to LIGHT_LEVELS-1. See toLight().
+	 */
+	public int getLightLevel(Tile tile)
+	{
+		return tileLight[tile.getLayer().getLayerNumber()][tile.getRow()*numCols + tile.getCol()] & 0xFF;
+	}
+
+	/**
+	 * The light on every tile of a layer, so that a renderer can work out what it needs for each level once
+	 * and then just look it up.
+	 * @return the light level of each tile, [row*numCols + col], as unsigned bytes (see getLightLevel()).
+	 * It's the same array as the last snapshot's if the light on the layer hasn't changed. Don't change it.
+	 */
+	public byte[] getLightLevels(int layer)
+	{
+		return tileLight[layer];
+	}
+
+	/**
+	 * @return how much light a light level is, see Tile.getLight(). Only to the nearest 1/510th, as it's kept in a byte.
+	 */
+	public static float toLight(int level)
+	{
+		return level / LIGHT_SCALE;
+	}
+
+	public WeatherType getWeatherType()
+	{
+		return weatherType;
+	}
+
+	public float getConditions()
+	{
+		return conditions;
+	}
+
+	public boolean isPlayerAlive()
+	{
+		return playerAlive;
+	}
+
+	public int getTimeTillSpawn()
+	{
+		return timeTillSpawn;
+	}
+
+	public int getPlayerCol()
+	{
+		return playerCol;
+	}
+
+	public int getPlayerRow()
+	{
+		return playerRow;
+	}
+
+	public int getPlayerLayer()
+	{
+		return playerLayer;
+	}
+
+	/**
+	 * @return how many dragon balls are lying on the ground.
+	 */
+	public int getNumBalls()
+	{
+		return ballCols.length;
+	}
+
+	public int getBallCol(int ball)
+	{
+		return ballCols[ball];
+	}
+
+	public int getBallRow(int ball)
+	{
+		return ballRows[ball];
+	}
+
+	/**
+	 * A character or item, as it was at the end of the tick.
+	 */
+	public static class EntityState
+	{
+		private EntityType type;
+		private int layer;
+		private float x;
+		private float y;
+		private float previousX;
+		private float previousY;
+		private int width;
+		private int height;
+		private Color colour;
+
+		//characters only
+		private float healthRatio;
+		private float experienceRatio;
+		private String name;
+		private int level;
+		private String allianceName; //null if they aren't in one
+		private String levelText; //what is written above them, only made again when it changes
+		private String allianceText;
+
+		private EntityState(AbstractEntity entity, int layer, EntityState previous, float maxStep)
+		{
+			type = entity.getEntityType();
+			this.layer = layer;
+			x = entity.getX();
+			y = entity.getY();
+			if (previous != null && previous.layer == layer
+					&& Math.abs(previous.x - x) <= maxStep && Math.abs(previous.y - y) <= maxStep)
+			{
+				previousX = previous.x;
+				previousY = previous.y;
+			}
+			else
+			{
+				previousX = x;
+				previousY = y;
+			}
+
+			Dimension size = entity.getSize();
+			width = size.width;
+			height = size.height;
+
+			if (type == EntityType.CHARACTER)
+			{
+				Character character = (Character)entity;
+				colour = character.getColour();
+				healthRatio = character.getHealthRatio();
+				experienceRatio = character.getExperienceRatio();
+				name = character.getName();
+				level = character.getLevel();
+				if (character.getAlliance() != null)
+					allianceName = character.getAlliance().getName().toString();
+
+				if (previous != null && previous.level == level)
+					levelText = previous.levelText;
+				else
+					levelText = "Level: " + level;
+				
+				if (previous != null && (allianceName == null ? previous.allianceName == null : allianceName.equals(previous.allianceName)))
+					allianceText = previous.allianceText;
+				else
+					allianceText = (allianceName == null ? "no" : allianceName) + " alliance";
+			}
+			else
+			{
+				colour = ((Item)entity).getQuality().getColour();
+			}
+		}
+
+		public EntityType getType()
+		{
+			return type;
+		}
+
+		public int getLayer()
+		{
+			return layer;
+		}
+
+		/**
+		 * @param alpha see RenderSnapshot.getAlpha()
+		 */
+		public float getX(float alpha)
+		{
+			return previousX + (x - previousX)*alpha;
+		}
+
+		/**
+		 * @param alpha see RenderSnapshot.getAlpha()
+		 */
+		public float getY(float alpha)
+		{
+			return previousY + (y - previousY)*alpha;
+		}
+
+		public int getWidth()
+		{
+			return width;
+		}
+
+		public int getHeight()
+		{
+			return height;
+		}
+
+		public Color getColour()
+		{
+			return colour;
+		}
+
+		public float getHealthRatio()
+		{
+			return healthRatio;
+		}
+
+		public float getExperienceRatio()
+		{
+			return experienceRatio;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public int getLevel()
+		{
+			return level;
+		}
+
+		public String getAllianceName()
+		{
+			return allianceName;
+		}
+
+		/**
+		 * @return "Level: n"
+		 */
+		public String getLevelText()
+		{
+			return levelText;
+		}
+
+		/**
+		 * @return "(name) alliance", or "no alliance"
+		 */
+		public String getAllianceText()
+		{
+			return allianceText;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package doharm.rendering;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+
+/**
+ * Draws frames as fast as the screen can show them, separately from the Clock, which runs the game.
+ *
+ * Each frame is drawn from the newest RenderSnapshot, so drawing never waits for a tick to finish
+ * and a slow frame doesn't slow the game down. Once a frame is finished the component is asked to repaint,
+ * which only has to copy it onto the screen (see WorldRenderer.paint()),
+ * or if it is an AcceleratedCanvas the frame is put on the screen straight away.
+ *
+ * The frame rate is the refresh rate of the screen, or 60 if that isn't known.
+ * It can be set with -Ddoharm.maxFps=n.
+ * @author Roland
+ */
+public class RenderThread extends Thread
+{
+	private static final int DEFAULT_FPS = 60;
+
+	private WorldRenderer renderer;
+	private Component component;
+	private volatile boolean running;
+
+	/**
+	 * @param component what the frames are shown on, its size is the size of the frames.
+	 */
+	public RenderThread(WorldRenderer renderer, Component component)
+	{
+		super("renderer");
+		this.renderer = renderer;
+		this.component = component;
+		setDaemon(true);
+		running = true;
+	}
+
+	/**
+	 * Stop drawing, after the frame being drawn now.
+	 */
+	public void finish()
+	{
+		running = false;
+		interrupt();
+	}
+
+	public void run()
+	{
+		long frameLength = 1000000000L / getFrameRate();
+		while (running)
+		{
+			long start = System.nanoTime();
+			Dimension size = component.getSize();
+			if (size.width > 0 && size.height > 0)
+			{
+				renderer.redraw(size, start);
+				if (component instanceof AcceleratedCanvas)
+					((AcceleratedCanvas)component).show(renderer);
+				else
+					component.repaint();
+			}
+
+			long wait = start + frameLength - System.nanoTime();
+			try
+			{
+				if (wait > 0)
+					Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+				else
+					Thread.yield(); //let the game have a turn
+			}
+			catch (InterruptedException e){}
+		}
+	}
+
+	/**
+	 * @return how many frames to draw each second.
+	 */
+	private static int getFrameRate()
+	{
+		Integer fps = Integer.getInteger("doharm.maxFps");
+		if (fps != null)
+			return Math.max(1, fps);
+
+		try
+		{
+			DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
+			if (mode.getRefreshRate() != DisplayMode.REFRESH_RATE_UNKNOWN)
+				return mode.getRefreshRate();
+		}
+		catch (HeadlessException e){}
+		return DEFAULT_FPS;
+	}
+}
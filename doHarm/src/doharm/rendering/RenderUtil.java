@@ -4,7 +4,10 @@ package doharm.rendering;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -26,6 +29,7 @@ public class RenderUtil {
 	private static BufferedImage pickImage;
 	
 	private static Camera camera;
+	private static GraphicsConfiguration screenConfiguration;
 
 	
 	static
@@ -41,6 +45,21 @@ public class RenderUtil {
 		}
 	}
 	
+	/**
+	 * Make a see-through image in the format the screen draws fastest, so Java2D can keep a copy of it
+	 * in video memory. Use it for images that are drawn over and over, eg. tiles, walls and sprites.
+	 * @return the new image, which is TYPE_INT_ARGB if there's no screen.
+	 */
+	public static synchronized BufferedImage createCompatibleImage(int width, int height)
+	{
+		if (GraphicsEnvironment.isHeadless())
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		
+		if (screenConfiguration == null)
+			screenConfiguration = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+		return screenConfiguration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+	
 	/**
 	 * Scales the img parameter to the specified width and height.
 	 * @param width
@@ -66,8 +85,14 @@ public class RenderUtil {
 	 * @return
 	 */
 	public static Vector convertCoordsToIso(float col, float row, float layer, Camera c, Vector toReturn){
-		CameraDirection d = c.getDirection();
+		return convertCoordsToIso(col, row, layer, c.getDirection(), toReturn);
+	}
 
+	/**
+	 * The same as convertCoordsToIso() with a camera, for a camera facing d,
+	 * eg. the direction in a RenderSnapshot, which the camera may have turned from since.
+	 */
+	public static Vector convertCoordsToIso(float col, float row, float layer, CameraDirection d, Vector toReturn){
 		switch(d){
 		case NORTH : 
 			toReturn.set(-((row*(imgIsoW/2)))+(col*(imgIsoW/2)), (row*(imgIsoH/2))+(col*(imgIsoH/2)) -layer*imgIsoH);
@@ -88,6 +113,52 @@ public class RenderUtil {
 
 	}
 
+	/**
+	 * The opposite of convertCoordsToIso(): turns isometric coordinates on a layer back into
+	 * "square" world coordinates, where a whole number is the middle of a tile.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return the column in x and the row in y.
+	 */
+	public static Vector convertIsoToCoords(float x, float y, float layer, Camera c, Vector toReturn){
+		return convertIsoToCoords(x, y, layer, c.getDirection(), toReturn);
+	}
+
+	/**
+	 * The same as convertIsoToCoords() with a camera, for a camera facing d.
+	 */
+	public static Vector convertIsoToCoords(float x, float y, float layer, CameraDirection d, Vector toReturn){
+		float a = x/(imgIsoW/2);
+		float b = (y + layer*imgIsoH)/(imgIsoH/2);
+
+		switch(d){
+		case NORTH : 
+			toReturn.set((a+b)/2, (b-a)/2);
+			break;
+		case EAST : 
+			toReturn.set((a-b)/2, (a+b)/2);
+			break;
+		case WEST : 
+			toReturn.set((b-a)/2, (-a-b)/2);
+			break;
+		case SOUTH : 
+			toReturn.set((-a-b)/2, (a-b)/2);
+			break;
+		}
+
+		return toReturn;
+	}
+
+	/**
+	 * @return whether the pixel is part of a floor tile drawn at 0,0, ie. inside the diamond.
+	 */
+	public static boolean isInTile(int x, int y){
+		if (x < 0 || y < 0 || x >= pickImage.getWidth() || y >= pickImage.getHeight())
+			return false;
+		return (pickImage.getRGB(x, y) >>> 24) != 0;
+	}
+
 
 	/**
 	 * 
@@ -238,7 +309,7 @@ public class RenderUtil {
 
 	public static BufferedImage generateLeftWallImage(Color color, int fTileH, int wTileW, int wTileH) {
 		// TODO Auto-generated method stub
-		BufferedImage img = new BufferedImage(wTileW, wTileH, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage img = createCompatibleImage(wTileW, wTileH);
 		Graphics2D g = (Graphics2D)img.getGraphics();
 		g.setColor(color);
 		
@@ -272,7 +343,7 @@ public class RenderUtil {
 
 	public static BufferedImage generateRightWallImage(Color color, int fTileH, int wTileW, int wTileH) {
 		// TODO Auto-generated method stub
-		BufferedImage img = new BufferedImage(wTileW, wTileH, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage img = createCompatibleImage(wTileW, wTileH);
 		Graphics2D g = (Graphics2D)img.getGraphics();
 		g.setColor(color);
 		
@@ -310,7 +381,7 @@ public class RenderUtil {
 		return img;
 	}
 }
-
-
+
+
 
 
@@ -0,0 +1,364 @@
+package doharm.rendering;
+
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Draws lots of images onto the frame at once, split between threads.
+ *
+ * Images are queued up with drawImage() instead of being drawn straight away, and then
+ * finish() splits the frame into horizontal strips and draws every queued image into each strip
+ * on its own thread, by writing straight into the frame's pixels. The strips don't overlap,
+ * so the threads never touch the same pixels and no locking is needed, and inside a strip the images
+ * are drawn in the order they were queued so they overlap the same way as with Graphics.drawImage().
+ *
+ * The frame must be TYPE_INT_ARGB and completely opaque (the world image is cleared to black first),
+ * which makes blending an image onto it simple. The images can be TYPE_INT_ARGB or TYPE_INT_ARGB_PRE,
+ * anything else is drawn with Java2D as usual, after whatever was queued before it.
+ * Part of an image can be drawn (eg. a frame of a TextureAtlas), and it can be made see-through with an alpha.
+ * The result is the same, pixel for pixel, as drawing with Java2D.
+ *
+ * The strips are drawn on a pool of threads the same way as ParallelPlanner plans characters.
+ * The number of threads can be set with -Ddoharm.rasterThreads=n.
+ * @author Roland
+ */
+public class StripRasterizer
+{
+	private static final int NUM_THREADS = Math.max(1, Integer.getInteger("doharm.rasterThreads",
+			Runtime.getRuntime().availableProcessors()));
+	/** Strips are never shorter than this, so there's enough in each to be worth a thread. */
+	public static final int MIN_STRIP_HEIGHT = 32;
+
+	//shared by every rasterizer, the threads are daemons so they don't stop the game from exiting.
+	private static ExecutorService executor;
+
+	private int numThreads;
+	private BufferedImage frame;
+	private Graphics2D graphics;
+	private int[] framePixels;
+	private int frameWidth;
+	private int frameHeight;
+
+	//what has been queued, in order
+	private int size;
+	private int[][] pixels;
+	private int[] offsets;
+	private int[] strides;
+	private int[] sxs;
+	private int[] sys;
+	private int[] widths;
+	private int[] heights;
+	private int[] xs;
+	private int[] ys;
+	private boolean[] premultiplied;
+	private int[] alphas;
+	private List<Strip> strips;
+
+	public StripRasterizer()
+	{
+		this(NUM_THREADS);
+	}
+
+	public StripRasterizer(int numThreads)
+	{
+		this.numThreads = Math.max(1, numThreads);
+		strips = new ArrayList<Strip>();
+		grow(64);
+	}
+
+	private static synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newFixedThreadPool(NUM_THREADS, new ThreadFactory()
+			{
+				private int count;
+
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "rasterizer-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	/**
+	 * Start queueing images to draw onto the frame.
+	 * @param graphics the frame's graphics, for images that can't be drawn directly
+	 */
+	public void begin(BufferedImage frame, Graphics2D graphics)
+	{
+		if (frame.getType() != BufferedImage.TYPE_INT_ARGB)
+			throw new IllegalArgumentException("Can only draw onto TYPE_INT_ARGB images");
+
+		this.frame = frame;
+		this.graphics = graphics;
+		framePixels = ((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
+		frameWidth = frame.getWidth();
+		frameHeight = frame.getHeight();
+		size = 0;
+	}
+
+	/**
+	 * Queue an image to be drawn with its top left at (x,y), the same as Graphics.drawImage().
+	 */
+	public void drawImage(BufferedImage image, int x, int y)
+	{
+		drawImage(image, 0, 0, image.getWidth(), image.getHeight(), x, y, 0xFF);
+	}
+
+	/**
+	 * Queue part of an image to be drawn with its top left at (x,y).
+	 * @param sx
+	 * @param sy the top left of the part of the image to draw
+	 * @param alpha how see-through to make it, from 0 (invisible) to 255 (as it is),
+	 * the same as drawing with an AlphaComposite (see TextureAtlas.getComposite()).
+	 */
+	public void drawImage(BufferedImage image, int sx, int sy, int width, int height, int x, int y, int alpha)
+	{
+		if (alpha == 0 || x >= frameWidth || y >= frameHeight || x + width <= 0 || y + height <= 0)
+			return;
+
+		WritableRaster raster = image.getRaster();
+		int type = image.getType();
+		if ((type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_ARGB_PRE)
+				|| raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0)
+		{
+			//draw it the usual way, on top of everything before it
+			finish();
+			Composite old = graphics.getComposite();
+			if (alpha != 0xFF)
+				graphics.setComposite(TextureAtlas.getComposite(alpha));
+			graphics.drawImage(image, x, y, x + width, y + height, sx, sy, sx + width, sy + height, null);
+			graphics.setComposite(old);
+			return;
+		}
+
+		if (size == xs.length)
+			grow(size*2);
+		DataBufferInt buffer = (DataBufferInt)raster.getDataBuffer();
+		pixels[size] = buffer.getData();
+		offsets[size] = buffer.getOffset();
+		strides[size] = ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride();
+		sxs[size] = sx;
+		sys[size] = sy;
+		widths[size] = width;
+		heights[size] = height;
+		xs[size] = x;
+		ys[size] = y;
+		premultiplied[size] = type == BufferedImage.TYPE_INT_ARGB_PRE;
+		alphas[size] = alpha;
+		size++;
+	}
+
+	/**
+	 * Draw everything that has been queued, and wait for it to be done.
+	 */
+	public void finish()
+	{
+		if (size == 0)
+			return;
+
+		//a couple of strips per thread, so one slow strip doesn't hold the rest up
+		int numStrips = Math.min(numThreads*2, Math.max(1, frameHeight / MIN_STRIP_HEIGHT));
+		if (numThreads == 1 || numStrips == 1)
+		{
+			drawStrip(0, frameHeight);
+		}
+		else
+		{
+			while (strips.size() < numStrips)
+				strips.add(new Strip());
+			for (int i = 0; i < numStrips; i++)
+			{
+				Strip strip = strips.get(i);
+				strip.top = frameHeight * i / numStrips;
+				strip.bottom = frameHeight * (i+1) / numStrips;
+			}
+			try
+			{
+				for (Future<Void> future: getExecutor().invokeAll(strips.subList(0, numStrips)))
+					future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				throw new RuntimeException("Drawing a strip failed", e.getCause());
+			}
+		}
+		size = 0;
+	}
+
+	/**
+	 * Draw every queued image onto the rows from top to bottom-1 of the frame.
+	 */
+	private void drawStrip(int top, int bottom)
+	{
+		int[] dst = framePixels;
+		for (int i = 0; i < size; i++)
+		{
+			int fromY = Math.max(ys[i], top);
+			int toY = Math.min(ys[i] + heights[i], bottom);
+			int fromX = Math.max(xs[i], 0);
+			int toX = Math.min(xs[i] + widths[i], frameWidth);
+			if (fromY >= toY || fromX >= toX)
+				continue;
+
+			int[] src = pixels[i];
+			boolean pre = premultiplied[i];
+			int extra = alphas[i];
+			for (int y = fromY; y < toY; y++)
+			{
+				int s = offsets[i] + (sys[i] + y - ys[i])*strides[i] + (sxs[i] + fromX - xs[i]);
+				int d = y*frameWidth + fromX;
+				for (int end = d + (toX - fromX); d < end; d++, s++)
+				{
+					int argb = src[s];
+					int alpha = argb >>> 24;
+					if (alpha == 0)
+						continue;
+					if (extra != 0xFF)
+						dst[d] = pre ? blendPremultiplied(argb, extra, dst[d]) : blend(argb, extra, dst[d]);
+					else if (alpha == 0xFF)
+						dst[d] = argb;
+					else
+						dst[d] = pre ? blendPremultiplied(argb, dst[d]) : blend(argb, dst[d]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a times b / 255, rounded the same way as Java2D.
+	 */
+	private static int mul8(int a, int b)
+	{
+		return (a*b*0x010101 + 0x800000) >>> 24;
+	}
+
+	/**
+	 * Draw a partly see-through colour over an opaque one.
+	 */
+	private static int blend(int src, int dst)
+	{
+		return blend(src, 0xFF, dst);
+	}
+
+	/**
+	 * Draw a colour, made more see-through by extra, over an opaque one.
+	 */
+	private static int blend(int src, int extra, int dst)
+	{
+		int alpha = mul8(extra, src >>> 24);
+		int keep = 0xFF - alpha;
+		int r = mul8(alpha, (src >> 16) & 0xFF) + mul8(keep, (dst >> 16) & 0xFF);
+		int g = mul8(alpha, (src >> 8) & 0xFF) + mul8(keep, (dst >> 8) & 0xFF);
+		int b = mul8(alpha, src & 0xFF) + mul8(keep, dst & 0xFF);
+		return 0xFF000000 | r << 16 | g << 8 | b;
+	}
+
+	/**
+	 * Draw a partly see-through colour, which has already been multiplied by its alpha, over an opaque one.
+	 */
+	private static int blendPremultiplied(int src, int dst)
+	{
+		int keep = 0xFF - (src >>> 24);
+		int r = ((src >> 16) & 0xFF) + mul8(keep, (dst >> 16) & 0xFF);
+		int g = ((src >> 8) & 0xFF) + mul8(keep, (dst >> 8) & 0xFF);
+		int b = (src & 0xFF) + mul8(keep, dst & 0xFF);
+		return 0xFF000000 | r << 16 | g << 8 | b;
+	}
+
+	/**
+	 * Draw a colour that has already been multiplied by its alpha, made more see-through by extra, over an opaque one.
+	 */
+	private static int blendPremultiplied(int src, int extra, int dst)
+	{
+		int keep = 0xFF - mul8(extra, src >>> 24);
+		int r = mul8(extra, (src >> 16) & 0xFF) + mul8(keep, (dst >> 16) & 0xFF);
+		int g = mul8(extra, (src >> 8) & 0xFF) + mul8(keep, (dst >> 8) & 0xFF);
+		int b = mul8(extra, src & 0xFF) + mul8(keep, dst & 0xFF);
+		return 0xFF000000 | r << 16 | g << 8 | b;
+	}
+
+	private void grow(int capacity)
+	{
+		int[][] oldPixels = pixels;
+		int[] oldOffsets = offsets;
+		int[] oldStrides = strides;
+		int[] oldSxs = sxs;
+		int[] oldSys = sys;
+		int[] oldWidths = widths;
+		int[] oldHeights = heights;
+		int[] oldXs = xs;
+		int[] oldYs = ys;
+		boolean[] oldPremultiplied = premultiplied;
+		int[] oldAlphas = alphas;
+
+		pixels = new int[capacity][];
+		offsets = new int[capacity];
+		strides = new int[capacity];
+		sxs = new int[capacity];
+		sys = new int[capacity];
+		widths = new int[capacity];
+		heights = new int[capacity];
+		xs = new int[capacity];
+		ys = new int[capacity];
+		premultiplied = new boolean[capacity];
+		alphas = new int[capacity];
+		if (oldXs != null)
+		{
+			System.arraycopy(oldPixels, 0, pixels, 0, size);
+			System.arraycopy(oldOffsets, 0, offsets, 0, size);
+			System.arraycopy(oldStrides, 0, strides, 0, size);
+			System.arraycopy(oldSxs, 0, sxs, 0, size);
+			System.arraycopy(oldSys, 0, sys, 0, size);
+			System.arraycopy(oldWidths, 0, widths, 0, size);
+			System.arraycopy(oldHeights, 0, heights, 0, size);
+			System.arraycopy(oldXs, 0, xs, 0, size);
+			System.arraycopy(oldYs, 0, ys, 0, size);
+			System.arraycopy(oldPremultiplied, 0, premultiplied, 0, size);
+			System.arraycopy(oldAlphas, 0, alphas, 0, size);
+		}
+	}
+
+	/**
+	 * One strip of the frame, drawn by one thread.
+	 */
+	private class Strip implements Callable<Void>
+	{
+		private int top;
+		private int bottom;
+
+		@Override
+		public Void call()
+		{
+			drawStrip(top, bottom);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,495 @@
+package doharm.rendering;
+
+import java.awt.AlphaComposite;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import doharm.logic.AbstractGame;
+import doharm.logic.camera.CameraDirection;
+import doharm.logic.physics.Vector;
+import doharm.logic.world.TileChangeListener;
+import doharm.logic.world.World;
+import doharm.logic.world.tiles.Direction;
+import doharm.logic.world.tiles.Tile;
+import doharm.logic.world.tiles.TileType;
+
+/**
+ * Draws the floors and walls of a layer as a few big images instead of one image per tile.
+ *
+ * Each layer is split into chunks of CHUNK_SIZE x CHUNK_SIZE tiles, and the first time a chunk is on screen
+ * its tiles are drawn into an image of their own, for the camera direction it is being looked at from.
+ * After that only the chunk images have to be drawn each frame, until a tile in the chunk changes
+ * or the light on its walls does.
+ *
+ * Animated tiles (eg. water) change too often to be worth keeping, so they are left out
+ * and drawn over the chunk every frame. Only the most recently used chunks are kept, see MAX_CHUNKS,
+ * though never fewer than can be on the screen at once, or big windows would draw every chunk again every frame.
+ *
+ * The tiles are frames of a TextureAtlas. The layer in front of the player is drawn see-through
+ * by drawing its frames with TRANSPARENT_ALPHA, and the walls are shaded by drawing a black wall shape over them,
+ * less see-through the darker the wall is.
+ *
+ * If it is given a StripRasterizer the chunks and animated tiles are drawn onto the frame by that instead,
+ * split between threads.
+ * @author Roland
+ */
+public class TerrainCache implements TileChangeListener
+{
+	/** The width and height of a chunk, in tiles. */
+	public static final int CHUNK_SIZE = 16;
+	/** How many chunk images to keep at most. Can be set with -Ddoharm.terrainChunks=n */
+	public static final int MAX_CHUNKS = Integer.getInteger("doharm.terrainChunks", 192);
+
+	/** How see-through (0-255) the tiles are drawn on a layer the player can't be seen through. */
+	public static final int TRANSPARENT_ALPHA = 26;
+
+	private static final int NUM_DIRECTIONS = CameraDirection.values().length;
+
+	private AbstractGame game;
+	private World world;
+
+	private int fTileW;
+	private int fTileH;
+	private int wTileW;
+	private int wTileH;
+	private int imageW; //the most any tile image can cover, right and down from where the tile is drawn
+	private int imageH;
+
+	private TextureAtlas atlas;
+	private int[] floorFrames; //the frame for each floor image ID
+	private int[] wallFrames; //the frame for each wall image ID
+	private int leftWallShade; //the shapes of the walls, in black
+	private int rightWallShade;
+	private int[] shadeAlphas; //how dark the shade is, from the darkest
+	private int[] levelShades; //the shade for each light level, see RenderSnapshot.getLightLevels()
+
+	private int numChunkRows;
+	private int numChunkCols;
+	private Map<Integer, Chunk> chunks;
+	private int onScreen; //how many chunks have been drawn so far this frame
+	private int blits; //how many images have been drawn onto the frame so far this frame
+	private int baked; //how many chunks have been drawn into their images so far this frame
+	private int mostOnScreen; //the most chunks ever drawn in one frame
+	private Queue<Tile> changedTiles; //tiles change on the game's thread, the chunks are only touched while drawing
+	private Vector vector;
+	private StripRasterizer rasterizer; //null to draw with Java2D
+	private RenderSnapshot snapshot; //the one being drawn, for the camera direction and the light on the walls
+
+	/**
+	 * @param floorFrames
+	 * @param wallFrames the frames in the atlas for each floor and wall image ID
+	 * @param leftWallShade
+	 * @param rightWallShade the frames in the atlas of the shapes of the left and right walls, in black
+	 * @param shadeAlphas the alpha to draw the wall shapes with for each shade, from the darkest
+	 * @param rasterizer what to draw the terrain onto the frame with, or null to use Java2D.
+	 */
+	public TerrainCache(AbstractGame game, TextureAtlas atlas, int[] floorFrames, int[] wallFrames,
+			int fTileW, int fTileH, int wTileW, int wTileH,
+			int leftWallShade, int rightWallShade, int[] shadeAlphas, StripRasterizer rasterizer)
+	{
+		this.game = game;
+		this.atlas = atlas;
+		this.floorFrames = floorFrames;
+		this.wallFrames = wallFrames;
+		this.rasterizer = rasterizer;
+		this.fTileW = fTileW;
+		this.fTileH = fTileH;
+		this.wTileW = wTileW;
+		this.wTileH = wTileH;
+		this.leftWallShade = leftWallShade;
+		this.rightWallShade = rightWallShade;
+		this.shadeAlphas = shadeAlphas;
+		levelShades = new int[RenderSnapshot.LIGHT_LEVELS];
+		for (int level = 0; level < levelShades.length; level++)
+			levelShades[level] = (int)(RenderSnapshot.toLight(level)*(shadeAlphas.length-1));
+
+		world = game.getWorld();
+		world.addTileChangeListener(this);
+		numChunkRows = (world.getNumRows() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		numChunkCols = (world.getNumCols() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+		imageW = Math.max(fTileW, 2*wTileW);
+		imageH = Math.max(fTileH, fTileH/2 + wTileH);
+
+		vector = new Vector(0, 0);
+		changedTiles = new ConcurrentLinkedQueue<Tile>();
+
+		//the least recently drawn chunk is thrown away first
+		chunks = new LinkedHashMap<Integer, Chunk>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Chunk> eldest)
+			{
+				return size() > Math.max(MAX_CHUNKS, mostOnScreen + mostOnScreen/2);
+			}
+		};
+	}
+
+	/**
+	 * Draw the floors and walls of a layer that are on the screen.
+	 * @param snapshot the tick being drawn
+	 * @param image the frame, which graphics draws onto
+	 * @param transparent whether to draw the tiles see-through, see TRANSPARENT_ALPHA.
+	 */
+	public void draw(RenderSnapshot snapshot, BufferedImage image, Graphics2D graphics, Dimension canvasSize, int cx, int cy,
+			int layer, boolean transparent)
+	{
+		this.snapshot = snapshot;
+		if (game.getWorld() != world)
+		{
+			//a client can be sent a whole new world
+			chunks.clear();
+			world = game.getWorld();
+			world.addTileChangeListener(this);
+		}
+		for (Tile tile = changedTiles.poll(); tile != null; tile = changedTiles.poll())
+			forget(tile);
+		if (layer == 0)
+		{
+			//a new frame
+			onScreen = 0;
+			blits = 0;
+			baked = 0;
+		}
+
+		CameraDirection direction = snapshot.getDirection();
+		boolean rowsForward = direction == CameraDirection.NORTH || direction == CameraDirection.EAST;
+		boolean colsForward = direction == CameraDirection.NORTH || direction == CameraDirection.WEST;
+		if (rasterizer != null)
+			rasterizer.begin(image, graphics);
+
+		//draw the chunks from back to front, in the same order as the tiles inside them
+		for (int i = 0; i < numChunkRows; i++)
+		{
+			int chunkRow = rowsForward ? i : numChunkRows-1-i;
+			for (int j = 0; j < numChunkCols; j++)
+			{
+				int chunkCol = colsForward ? j : numChunkCols-1-j;
+				if (!isOnScreen(canvasSize, cx, cy, layer, chunkRow, chunkCol, direction))
+					continue;
+
+				onScreen++;
+				mostOnScreen = Math.max(mostOnScreen, onScreen);
+				Chunk chunk = getChunk(layer, chunkRow, chunkCol, direction, transparent);
+				if (chunk.image != null)
+				{
+					drawImage(graphics, rasterizer, chunk.image, cx+chunk.x, cy+chunk.y);
+					blits++;
+				}
+
+				for (int t = 0; t < chunk.animated.length; t++)
+				{
+					Tile tile = chunk.animated[t];
+					RenderUtil.convertCoordsToIso(tile.getCol(), tile.getRow(), layer, direction, vector);
+					blits += drawTile(graphics, rasterizer, tile, cx+vector.getXAsInt() - fTileW/2, cy+vector.getYAsInt() - fTileH/2, transparent);
+				}
+			}
+		}
+
+		if (rasterizer != null)
+			rasterizer.finish(); //before anything is drawn over it
+	}
+
+	/**
+	 * @return whether any of the chunk could be on the screen, worked out from its corners
+	 * so the chunk doesn't have to be drawn first.
+	 */
+	private boolean isOnScreen(Dimension canvasSize, int cx, int cy, int layer, int chunkRow, int chunkCol,
+			CameraDirection direction)
+	{
+		int fromRow = chunkRow*CHUNK_SIZE;
+		int fromCol = chunkCol*CHUNK_SIZE;
+		int toRow = Math.min(fromRow + CHUNK_SIZE, world.getNumRows()) - 1;
+		int toCol = Math.min(fromCol + CHUNK_SIZE, world.getNumCols()) - 1;
+
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for (int corner = 0; corner < 4; corner++)
+		{
+			int row = corner < 2 ? fromRow : toRow;
+			int col = corner % 2 == 0 ? fromCol : toCol;
+			RenderUtil.convertCoordsToIso(col, row, layer, direction, vector);
+			minX = Math.min(minX, vector.getXAsInt());
+			minY = Math.min(minY, vector.getYAsInt());
+			maxX = Math.max(maxX, vector.getXAsInt());
+			maxY = Math.max(maxY, vector.getYAsInt());
+		}
+
+		int left = cx + minX - fTileW/2;
+		int top = cy + minY - fTileH/2;
+		int right = cx + maxX - fTileW/2 + imageW;
+		int bottom = cy + maxY - fTileH/2 + imageH;
+		return right > 0 && bottom > 0 && left < canvasSize.width && top < canvasSize.height;
+	}
+
+	private int getKey(int layer, int chunkRow, int chunkCol, CameraDirection direction, boolean transparent)
+	{
+		int key = (layer*numChunkRows + chunkRow)*numChunkCols + chunkCol;
+		key = key*NUM_DIRECTIONS + direction.ordinal();
+		return key*2 + (transparent ? 1 : 0);
+	}
+
+	private Chunk getChunk(int layer, int chunkRow, int chunkCol, CameraDirection direction,
+			boolean transparent)
+	{
+		int key = getKey(layer, chunkRow, chunkCol, direction, transparent);
+		Chunk chunk = chunks.get(key);
+		if (chunk == null)
+		{
+			chunk = new Chunk();
+			bake(chunk, layer, chunkRow, chunkCol, direction, transparent);
+			chunks.put(key, chunk);
+		}
+		else if (!chunk.isLightingCurrent(snapshot.getLightLevels(layer)))
+		{
+			bake(chunk, layer, chunkRow, chunkCol, direction, transparent);
+		}
+		return chunk;
+	}
+
+	private int getShade(Tile tile)
+	{
+		return levelShades[snapshot.getLightLevel(tile)];
+	}
+
+	/**
+	 * Draw an image with the rasterizer, or with the graphics if it is null.
+	 */
+	private static void drawImage(Graphics2D graphics, StripRasterizer rasterizer, BufferedImage image, int x, int y)
+	{
+		if (rasterizer != null)
+			rasterizer.drawImage(image, x, y);
+		else
+			graphics.drawImage(image, x, y, null);
+	}
+
+	/**
+	 * Draw a frame of the atlas with the rasterizer, or with the graphics if it is null.
+	 */
+	private void drawFrame(Graphics2D graphics, StripRasterizer rasterizer, int frame, int x, int y, int alpha)
+	{
+		if (rasterizer != null)
+			rasterizer.drawImage(atlas.getPage(frame), atlas.getX(frame), atlas.getY(frame),
+					atlas.getWidth(frame), atlas.getHeight(frame), x, y, alpha);
+		else
+			atlas.draw(graphics, frame, x, y, alpha);
+	}
+
+	/**
+	 * Draw a tile's floor and walls, the same way WorldRenderer always has.
+	 * @param rasterizer what to draw it with, or null to use the graphics.
+	 * @return how many images were drawn.
+	 */
+	private int drawTile(Graphics2D graphics, StripRasterizer rasterizer, Tile tile, int x, int y, boolean transparent)
+	{
+		int alpha = transparent ? TRANSPARENT_ALPHA : 0xFF;
+		drawFrame(graphics, rasterizer, floorFrames[tile.getImageID()], x, y, alpha);
+
+		if (tile.getType() == TileType.WALL)
+		{
+			int imgID = tile.getWallImageID(Direction.UP);
+			int shade = getShade(tile);
+			y += fTileH/2;
+
+			drawFrame(graphics, rasterizer, wallFrames[imgID++], x, y, alpha);
+			//draw the shade on the left wall
+			drawFrame(graphics, rasterizer, leftWallShade, x, y, shadeAlphas[shade]);
+			x += wTileW;
+			//draw the shade on the right wall
+			drawFrame(graphics, rasterizer, wallFrames[imgID], x, y, alpha);
+			drawFrame(graphics, rasterizer, rightWallShade, x, y, shadeAlphas[shade]);
+			return 5;
+		}
+		return 1;
+	}
+
+	/**
+	 * Draw the tiles of the chunk into its images, (re)making them if needed.
+	 */
+	private void bake(Chunk chunk, int layer, int chunkRow, int chunkCol, CameraDirection direction,
+			boolean transparent)
+	{
+		baked++;
+		Tile[][] tiles = world.getLayers()[layer].getTiles();
+		int fromRow = chunkRow*CHUNK_SIZE;
+		int fromCol = chunkCol*CHUNK_SIZE;
+		int toRow = Math.min(fromRow + CHUNK_SIZE, tiles.length);
+		int toCol = Math.min(fromCol + CHUNK_SIZE, tiles[0].length);
+
+		//find out where the chunk goes and which tiles need drawing
+		List<Tile> drawn = new ArrayList<Tile>();
+		List<Tile> animated = new ArrayList<Tile>();
+		List<Tile> walls = new ArrayList<Tile>();
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for (int row = fromRow; row < toRow; row++)
+		{
+			for (int col = fromCol; col < toCol; col++)
+			{
+				Tile tile = tiles[row][col];
+				if (!tile.isVisible())
+					continue; //nothing to see
+
+				RenderUtil.convertCoordsToIso(col, row, layer, direction, vector);
+				minX = Math.min(minX, vector.getXAsInt());
+				minY = Math.min(minY, vector.getYAsInt());
+				maxX = Math.max(maxX, vector.getXAsInt());
+				maxY = Math.max(maxY, vector.getYAsInt());
+
+				if (tile.isAnimated())
+					animated.add(tile);
+				else
+				{
+					drawn.add(tile);
+					if (tile.getType() == TileType.WALL)
+						walls.add(tile);
+				}
+			}
+		}
+
+		chunk.animated = animated.toArray(new Tile[animated.size()]);
+		chunk.walls = walls.toArray(new Tile[walls.size()]);
+		chunk.wallShades = new int[chunk.walls.length];
+		if (drawn.isEmpty())
+		{
+			chunk.image = null;
+			return;
+		}
+
+		chunk.x = minX - fTileW/2;
+		chunk.y = minY - fTileH/2;
+		int width = maxX - minX + imageW;
+		int height = maxY - minY + imageH;
+		chunk.image = clearImage(chunk.image, width, height);
+
+		Graphics2D graphics = chunk.image.createGraphics();
+
+		//same order as drawing them one by one, so the walls overlap in the right way
+		boolean rowsForward = direction == CameraDirection.NORTH || direction == CameraDirection.EAST;
+		boolean colsForward = direction == CameraDirection.NORTH || direction == CameraDirection.WEST;
+		for (int i = fromRow; i < toRow; i++)
+		{
+			int row = rowsForward ? i : toRow-1-(i-fromRow);
+			for (int j = fromCol; j < toCol; j++)
+			{
+				int col = colsForward ? j : toCol-1-(j-fromCol);
+				Tile tile = tiles[row][col];
+
+				RenderUtil.convertCoordsToIso(col, row, layer, direction, vector);
+				int x = vector.getXAsInt() - fTileW/2 - chunk.x;
+				int y = vector.getYAsInt() - fTileH/2 - chunk.y;
+
+				if (tile.isVisible() && !tile.isAnimated())
+					drawTile(graphics, null, tile, x, y, transparent);
+			}
+		}
+		graphics.dispose();
+
+		for (int i = 0; i < chunk.walls.length; i++)
+			chunk.wallShades[i] = getShade(chunk.walls[i]);
+		chunk.light = snapshot.getLightLevels(layer);
+	}
+
+	/**
+	 * @return the image, emptied, or a new one if it isn't the right size.
+	 */
+	private BufferedImage clearImage(BufferedImage image, int width, int height)
+	{
+		if (image == null || image.getWidth() != width || image.getHeight() != height)
+			return RenderUtil.createCompatibleImage(width, height);
+
+		Graphics2D g = image.createGraphics();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, width, height);
+		g.dispose();
+		return image;
+	}
+
+	/**
+	 * Forget the chunk the tile is in, from every direction, so it is drawn again next time it is on screen.
+	 * Can be called from any thread, the chunk is forgotten at the start of the next draw().
+	 */
+	@Override
+	public void tileChanged(Tile tile)
+	{
+		changedTiles.add(tile);
+	}
+
+	private void forget(Tile tile)
+	{
+		int layer = tile.getLayer().getLayerNumber();
+		int chunkRow = tile.getRow() / CHUNK_SIZE;
+		int chunkCol = tile.getCol() / CHUNK_SIZE;
+		for (CameraDirection direction: CameraDirection.values())
+		{
+			chunks.remove(getKey(layer, chunkRow, chunkCol, direction, false));
+			chunks.remove(getKey(layer, chunkRow, chunkCol, direction, true));
+		}
+	}
+
+	/**
+	 * @return how many chunk images are being kept.
+	 */
+	public int size()
+	{
+		return chunks.size();
+	}
+
+	/**
+	 * @return how many images (chunks and animated tiles) were drawn onto the last frame.
+	 */
+	public int getBlits()
+	{
+		return blits;
+	}
+
+	/**
+	 * @return how many chunks had to be drawn into their images again for the last frame.
+	 */
+	public int getBaked()
+	{
+		return baked;
+	}
+
+	private class Chunk
+	{
+		private BufferedImage image; //null if there's nothing to see in the chunk
+		private int x; //where the image goes, relative to the camera
+		private int y;
+		private Tile[] animated;
+		private Tile[] walls;
+		private int[] wallShades; //the shade each wall was drawn with
+		private byte[] light; //the light on the layer when the walls were last checked, see RenderSnapshot.getLightLevels()
+
+		/**
+		 * The walls are only looked at again when the snapshot has copied the light on the layer again.
+		 * @param levels the light on the layer now
+		 * @return whether the walls are still as light as when the chunk was drawn.
+		 */
+		private boolean isLightingCurrent(byte[] levels)
+		{
+			if (levels == light)
+				return true;
+			for (int i = 0; i < walls.length; i++)
+			{
+				if (getShade(walls[i]) != wallShades[i])
+					return false;
+			}
+			light = levels;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package doharm.rendering;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps lots of small images (tiles, walls, sprites) packed together into a few big ones, called pages.
+ *
+ * Each image that is added becomes a frame, and is known by the number add() gives back.
+ * Frames are packed onto shelves, left to right then top to bottom, and a new page is started once
+ * a page is PAGE_SIZE high. Pages are made with RenderUtil.createCompatibleImage(), so they are
+ * in the format the screen draws fastest.
+ *
+ * There are no see-through copies of frames, instead a frame can be drawn with an alpha (0-255),
+ * which Java2D applies as it draws it.
+ * @author Roland
+ */
+public class TextureAtlas
+{
+	/** The most a page can be wide or high, unless a frame is bigger than that. */
+	public static final int PAGE_SIZE = 1024;
+
+	//so drawing see-through frames doesn't make a new composite each time
+	private static final AlphaComposite[] COMPOSITES = new AlphaComposite[256];
+	static
+	{
+		for (int alpha = 0; alpha < COMPOSITES.length; alpha++)
+			COMPOSITES[alpha] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha / 255f);
+	}
+
+	private List<BufferedImage> pages;
+	private int pageWidth; //how much of the page is used so far
+	private int shelfX; //where the next frame goes on the page
+	private int shelfY;
+	private int shelfHeight;
+
+	private int size;
+	private int[] pageNumbers;
+	private int[] xs;
+	private int[] ys;
+	private int[] widths;
+	private int[] heights;
+
+	public TextureAtlas()
+	{
+		pages = new ArrayList<BufferedImage>();
+		pageNumbers = new int[64];
+		xs = new int[64];
+		ys = new int[64];
+		widths = new int[64];
+		heights = new int[64];
+	}
+
+	/**
+	 * @return the composite for drawing with an alpha from 0 (invisible) to 255 (as it is).
+	 */
+	public static AlphaComposite getComposite(int alpha)
+	{
+		return COMPOSITES[alpha];
+	}
+
+	/**
+	 * Add a whole image.
+	 * @return the new frame.
+	 */
+	public int add(BufferedImage image)
+	{
+		return add(image, 0, 0, image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * Add part of an image, eg. one tile from a tileset.
+	 * @param sx
+	 * @param sy the top left of the part in the image
+	 * @return the new frame.
+	 */
+	public int add(BufferedImage image, int sx, int sy, int width, int height)
+	{
+		if (pages.isEmpty() || shelfX + width > PAGE_SIZE)
+		{
+			//start a new shelf
+			shelfX = 0;
+			shelfY += shelfHeight;
+			shelfHeight = 0;
+		}
+		if (pages.isEmpty() || shelfY + height > PAGE_SIZE)
+		{
+			//start a new page
+			pages.add(null);
+			pageWidth = 0;
+			shelfX = 0;
+			shelfY = 0;
+			shelfHeight = 0;
+		}
+		pageWidth = Math.max(pageWidth, shelfX + width);
+		shelfHeight = Math.max(shelfHeight, height);
+		BufferedImage page = fit(pages.get(pages.size()-1), pageWidth, shelfY + shelfHeight);
+		pages.set(pages.size()-1, page);
+
+		Graphics2D g = page.createGraphics();
+		g.setComposite(AlphaComposite.Src); //copied exactly, see-through parts included
+		g.drawImage(image, shelfX, shelfY, shelfX + width, shelfY + height, sx, sy, sx + width, sy + height, null);
+		g.dispose();
+
+		if (size == xs.length)
+			grow(size*2);
+		pageNumbers[size] = pages.size()-1;
+		xs[size] = shelfX;
+		ys[size] = shelfY;
+		widths[size] = width;
+		heights[size] = height;
+		shelfX += width;
+		return size++;
+	}
+
+	/**
+	 * @return the page, or a bigger copy of it if it isn't big enough.
+	 */
+	private BufferedImage fit(BufferedImage page, int width, int height)
+	{
+		if (page != null && page.getWidth() >= width && page.getHeight() >= height)
+			return page;
+
+		BufferedImage bigger = RenderUtil.createCompatibleImage(width, height);
+		if (page != null)
+		{
+			Graphics2D g = bigger.createGraphics();
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(page, 0, 0, null);
+			g.dispose();
+		}
+		return bigger;
+	}
+
+	private void grow(int capacity)
+	{
+		int[] oldPageNumbers = pageNumbers;
+		int[] oldXs = xs;
+		int[] oldYs = ys;
+		int[] oldWidths = widths;
+		int[] oldHeights = heights;
+		pageNumbers = new int[capacity];
+		xs = new int[capacity];
+		ys = new int[capacity];
+		widths = new int[capacity];
+		heights = new int[capacity];
+		System.arraycopy(oldPageNumbers, 0, pageNumbers, 0, size);
+		System.arraycopy(oldXs, 0, xs, 0, size);
+		System.arraycopy(oldYs, 0, ys, 0, size);
+		System.arraycopy(oldWidths, 0, widths, 0, size);
+		System.arraycopy(oldHeights, 0, heights, 0, size);
+	}
+
+	/**
+	 * Draw a frame with its top left at (x,y).
+	 */
+	public void draw(Graphics2D graphics, int frame, int x, int y)
+	{
+		int sx = xs[frame];
+		int sy = ys[frame];
+		int width = widths[frame];
+		int height = heights[frame];
+		graphics.drawImage(getPage(frame), x, y, x + width, y + height, sx, sy, sx + width, sy + height, null);
+	}
+
+	/**
+	 * Draw a frame with its top left at (x,y), made see-through.
+	 * @param alpha from 0 (invisible) to 255 (the same as draw() without one).
+	 */
+	public void draw(Graphics2D graphics, int frame, int x, int y, int alpha)
+	{
+		if (alpha == 0xFF)
+		{
+			draw(graphics, frame, x, y);
+			return;
+		}
+
+		Composite old = graphics.getComposite();
+		graphics.setComposite(COMPOSITES[alpha]);
+		draw(graphics, frame, x, y);
+		graphics.setComposite(old);
+	}
+
+	/**
+	 * @return how many frames there are.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public int getNumPages()
+	{
+		return pages.size();
+	}
+
+	/**
+	 * @return the page the frame is on.
+	 */
+	public BufferedImage getPage(int frame)
+	{
+		return pages.get(pageNumbers[frame]);
+	}
+
+	/**
+	 * @return where the frame is on its page.
+	 */
+	public int getX(int frame)
+	{
+		return xs[frame];
+	}
+
+	/**
+	 * @return where the frame is on its page.
+	 */
+	public int getY(int frame)
+	{
+		return ys[frame];
+	}
+
+	public int getWidth(int frame)
+	{
+		return widths[frame];
+	}
+
+	public int getHeight(int frame)
+	{
+		return heights[frame];
+	}
+}
@@ -1,64 +1,65 @@
 package doharm.rendering;
 
-import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.Set;
 
 import javax.imageio.ImageIO;
 
 import doharm.logic.AbstractGame;
 import doharm.logic.camera.Camera;
-import doharm.logic.entities.AbstractEntity;
+import doharm.logic.camera.CameraDirection;
 import doharm.logic.entities.EntityType;
-import doharm.logic.entities.characters.players.HumanPlayer;
-import doharm.logic.entities.characters.players.Player;
-import doharm.logic.entities.characters.players.PlayerType;
-import doharm.logic.entities.characters.Character;
-import doharm.logic.entities.items.Item;
-import doharm.logic.entities.items.misc.dragonballs.*;
-
+
 import doharm.logic.maths.MathUtils;
-
+
 import doharm.logic.physics.Vector;
-import doharm.logic.time.Time;
-import doharm.logic.weather.Weather;
 import doharm.logic.world.Layer;
 import doharm.logic.world.World;
-import doharm.logic.world.tiles.Direction;
 import doharm.logic.world.tiles.Tile;
-import doharm.logic.world.tiles.TileType;
+import doharm.rendering.RenderSnapshot.EntityState;
 import doharm.storage.TilesetLoader;
 import doharm.storage.WorldLoader;
 
 public class WorldRenderer 
 {
+	//whether to draw the terrain with a StripRasterizer, set with -Ddoharm.stripRaster=true
+	private static final boolean STRIP_RASTER = Boolean.getBoolean("doharm.stripRaster");
+
+	//drawn into while the one in front is on screen, then they swap over (see redraw() and paint())
 	private BufferedImage worldImage;
 	private Graphics2D graphics;
+	private BufferedImage frontImage;
+	private Graphics2D frontGraphics;
+	private final Object swapLock = new Object();
 
-	private BufferedImage pickImage;
-	private Graphics2D pickGraphics;
+	//the tile the mouse is nearest first, then its neighbours (row, column offsets)
+	private static final int[] PICK_ORDER = {0,0, -1,0, 1,0, 0,-1, 0,1, -1,-1, -1,1, 1,-1, 1,1};
+
+	//where the world was last drawn, for working out which tile the mouse is over
+	private volatile int renderX;
+	private volatile int renderY;
+	private volatile CameraDirection renderDirection = CameraDirection.NORTH;
+	private Vector pickVector = new Vector(0, 0);
 
 	private Dimension canvasSize;
 
 	private final int numShades = 100;
 
-	private BufferedImage[] floorShades;
-	private BufferedImage[] leftWallShades;
-	private BufferedImage[] rightWallShades;
-
-	private BufferedImage[] floorImages;
-	private BufferedImage[] wallImages;
+	//the tiles and walls, all packed into a few images
+	private TextureAtlas atlas;
 
-	private BufferedImage[] floorImagesTrans;//transparent versions of flootImages and wallImages.
-	private BufferedImage[] wallImagesTrans;
+	private int leftWallShade; //the frames of the wall shapes, drawn over walls with shadeAlphas to darken them
+	private int rightWallShade;
+	private int[] shadeAlphas;
 
-	private BufferedImage[] itemImages;
+	private int[] floorFrames; //the frame for each floor image ID
+	private int[] wallFrames; //the frame for each wall image ID
 
 
 	//private AffineTransform transform;
@@ -66,6 +67,12 @@ public class WorldRenderer
 
 	private PlayerRenderer playerRenderer;
 	private ItemRenderer itemRenderer;
+	private TerrainCache terrainCache;
+	private LightOverlay lightOverlay;
+	private DrawList[] drawLists; //one for each layer
+
+	private String[] hudLines = new String[6]; //the text in the top left, the last line is only shown while respawning
+	private long[] hudValues = new long[6]; //what each line was made from
 
 	private BufferedImage radarImg;
 	private BufferedImage radarIcon;
@@ -79,17 +86,17 @@ public class WorldRenderer
 
 
 
-	private int rowC;
-	private int colC;
-
-
 	public WorldRenderer(AbstractGame game){
+		this(game, STRIP_RASTER ? new StripRasterizer() : null);
+	}
 
-		rowC = 0;
-		colC = 0;
-
+	/**
+	 * @param rasterizer what to draw the terrain with, or null to use Java2D.
+	 */
+	public WorldRenderer(AbstractGame game, StripRasterizer rasterizer){
 
 		this.game = game;
+		atlas = new TextureAtlas();
 		playerRenderer = new PlayerRenderer(game);
 		itemRenderer = new ItemRenderer(game);
 		canvasSize = new Dimension();
@@ -99,8 +106,10 @@ public class WorldRenderer
 		newLoadTileSets();
 		RenderUtil.setImgDimensions(fTileW, fTileH);
 
-		createTransparentImages();
 		generateShadowTiles();
+		terrainCache = new TerrainCache(game, atlas, floorFrames, wallFrames, fTileW, fTileH, wTileW, wTileH,
+				leftWallShade, rightWallShade, shadeAlphas, rasterizer);
+		lightOverlay = new LightOverlay(game, numShades, fTileW, fTileH);
 
 
 	}
@@ -114,58 +123,79 @@ public class WorldRenderer
 
 		worldImage = new BufferedImage(canvasSize.width, canvasSize.height, BufferedImage.TYPE_INT_ARGB);
 		graphics = worldImage.createGraphics();
-
-		pickImage = new BufferedImage(canvasSize.width, canvasSize.height, BufferedImage.TYPE_INT_ARGB);
-		pickGraphics = pickImage.createGraphics();
 	}
 
 
+	/**
+	 * @return the last frame that was finished.
+	 */
 	public BufferedImage getImage() 
 	{
-		return worldImage;
+		return frontImage;
+	}
+
+	/**
+	 * Draw the last finished frame onto the screen, stretched to the given size.
+	 * Safe to call while the next frame is being drawn on another thread.
+	 */
+	public void paint(Graphics g, int width, int height)
+	{
+		synchronized (swapLock)
+		{
+			if (frontImage != null)
+				g.drawImage(frontImage, 0, 0, width, height, null);
+		}
+	}
+
+	public void redraw(Dimension canvasSize)
+	{
+		redraw(canvasSize, System.nanoTime());
 	}
 
-	public void redraw(Dimension canvasSize) 
+	/**
+	 * Draw the world as it was at the end of the last tick (see AbstractGame.getRenderSnapshot()),
+	 * with everything that moves drawn part of the way from where it was the tick before.
+	 * @param now System.nanoTime() for the frame, to work out how far through the tick it is.
+	 */
+	public void redraw(Dimension canvasSize, long now) 
 	{
-		if (!this.canvasSize.equals(canvasSize)){
+		RenderSnapshot snapshot = game.getRenderSnapshot();
+		if (snapshot == null)
+			return; //the game hasn't started yet
+		float alpha = snapshot.getAlpha(now);
+
+		if (worldImage == null || worldImage.getWidth() != canvasSize.width || worldImage.getHeight() != canvasSize.height){
 			createImage(canvasSize); //resize the canvas
 			//createRadarBack();
 		}
+		this.canvasSize = canvasSize;
 
 		Camera camera = game.getCamera();
-		Time time = game.getWorld().getTime();
-		Weather weather = game.getWorld().getWeather();
-		HumanPlayer humanPlayer = game.getWorld().getHumanPlayer();
 
 		//give the camera the canvas size so we can calculate the centre of the screen
 		camera.setCanvasDimensions(canvasSize);
 
 		/*transform.setToIdentity();
 
-		graphics.setTransform(transform);
-		pickGraphics.setTransform(transform);*/
+		graphics.setTransform(transform);*/
 
 		//clear the screen
 		graphics.setColor(Color.black);
 		graphics.fillRect(0, 0, canvasSize.width, canvasSize.height);
 
-
-		//clear the mouse pick image
-		pickGraphics.setColor(Color.black);
-		pickGraphics.fillRect(0, 0, canvasSize.width, canvasSize.height);
-
 
 		/*transform.translate(-camera.getRenderPosition().getX(), -camera.getRenderPosition().getY());
 
-		graphics.setTransform(transform);
-		pickGraphics.setTransform(transform);*/
+		graphics.setTransform(transform);*/
 
 
 		//draw the current game, based on the camera, etc.
 
-
-		renderWorldIso((int)-camera.getRenderPosition().getX(), (int)-camera.getRenderPosition().getY());
-		drawRadar();
+		Vector renderPosition = camera.getRenderPosition(snapshot.getCameraX(alpha), snapshot.getCameraY(alpha), snapshot.getDirection());
+		int cx = (int)-renderPosition.getX();
+		int cy = (int)-renderPosition.getY();
+		renderWorldIso(cx, cy, snapshot, alpha);
+		drawRadar(snapshot);
 		//TODO
 		//playerRenderer.redraw(graphics, fTileW, fTileH);
 
@@ -186,108 +216,158 @@ public class WorldRenderer
 		//transform.setToIdentity();
 		//graphics.setTransform(transform);
 
-		graphics.setColor(Color.white);
-		graphics.drawString("Direction: " + camera.getDirection().toString(), 10, 10);
-		graphics.drawString("Year: " + time.getYear() + ", Month: " + time.getMonth()+", Day: " + time.getDay(), 10, 30);
-		graphics.drawString("Time: " + (int)(time.getTimeOfDay()/1000) + " ("+time.getDayType().toString()+")", 10, 50);
-		graphics.drawString("Light: " + MathUtils.toDP(time.getLight(),2), 10, 70);
-		graphics.drawString("Weather: " + weather.getWeatherType().toString() + "("+MathUtils.toDP(weather.getConditions(),2)+")", 10, 90);
+		drawHud(snapshot, snapshot.getDirection());
 
-		if (!humanPlayer.isAlive())
+		//show the finished frame
+		synchronized (swapLock)
 		{
-			graphics.drawString("Respawning in " + humanPlayer.getTimeTillSpawn()/1000 +"s...", 10, 110);
+			BufferedImage image = worldImage;
+			Graphics2D g = graphics;
+			worldImage = frontImage;
+			graphics = frontGraphics;
+			frontImage = image;
+			frontGraphics = g;
+			renderX = cx;
+			renderY = cy;
+			renderDirection = snapshot.getDirection();
 		}
+	}
 
+	/**
+	 * Write the direction, time and weather in the top left.
+	 * Each line is only made again when what it shows changes.
+	 */
+	private void drawHud(RenderSnapshot snapshot, CameraDirection direction)
+	{
+		int seconds = (int)(snapshot.getTimeOfDay()/1000);
+		float light = MathUtils.toDP(snapshot.getLight(),2);
+		float conditions = MathUtils.toDP(snapshot.getConditions(),2);
+
+		if (hudChanged(0, direction.ordinal()))
+			hudLines[0] = "Direction: " + direction.toString();
+		if (hudChanged(1, ((long)snapshot.getYear() << 32) | (snapshot.getMonth() << 16) | snapshot.getDay()))
+			hudLines[1] = "Year: " + snapshot.getYear() + ", Month: " + snapshot.getMonth()+", Day: " + snapshot.getDay();
+		if (hudChanged(2, ((long)seconds << 32) | snapshot.getDayType().ordinal()))
+			hudLines[2] = "Time: " + seconds + " ("+snapshot.getDayType().toString()+")";
+		if (hudChanged(3, Float.floatToIntBits(light)))
+			hudLines[3] = "Light: " + light;
+		if (hudChanged(4, ((long)snapshot.getWeatherType().ordinal() << 32) | Float.floatToIntBits(conditions)))
+			hudLines[4] = "Weather: " + snapshot.getWeatherType().toString() + "("+conditions+")";
+		if (hudChanged(5, snapshot.getTimeTillSpawn()/1000))
+			hudLines[5] = "Respawning in " + snapshot.getTimeTillSpawn()/1000 +"s...";
+
+		graphics.setColor(Color.white);
+		int lines = snapshot.isPlayerAlive() ? hudLines.length-1 : hudLines.length;
+		for (int i = 0; i < lines; i++)
+			graphics.drawString(hudLines[i], 10, 10 + 20*i);
 	}
 
-	public int getPickColourAt(int mouseX, int mouseY)
+	/**
+	 * @return whether the HUD line has to be made again, because the value it shows isn't the same as last time.
+	 */
+	private boolean hudChanged(int line, long value)
 	{
-		if (mouseX < 0) mouseX = 0;
-		if (mouseY < 0) mouseY = 0;
-		if (mouseX > pickImage.getWidth()-1) mouseX = pickImage.getWidth()-1;
-		if (mouseY > pickImage.getHeight()-1) mouseY = pickImage.getHeight()-1;
+		if (hudLines[line] != null && hudValues[line] == value)
+			return false;
+		hudValues[line] = value;
+		return true;
+	}
 
-		return game.getWorld().pickRGBToTileRGB(pickImage.getRGB(mouseX, mouseY));
+	/**
+	 * Works out which tile of the ground layer is under the mouse, as it was last drawn.
+	 * The point is turned back into a row and column, and then checked against the shape of
+	 * that tile and its neighbours, since the corners of the square around a tile belong to the tiles next to it.
+	 * @return the walkable tile under the mouse, or null if there isn't one.
+	 */
+	public Tile getTileAt(int mouseX, int mouseY)
+	{
+		World world = game.getWorld();
+		int layer = 0;
+		Tile[][] tiles = world.getLayers()[layer].getTiles();
+		int x = mouseX - renderX;
+		int y = mouseY - renderY;
+		CameraDirection direction = renderDirection;
+
+		RenderUtil.convertIsoToCoords(x, y, layer, direction, pickVector);
+		int col = Math.round(pickVector.getX());
+		int row = Math.round(pickVector.getY());
+
+		for (int i = 0; i < PICK_ORDER.length; i += 2)
+		{
+			int r = row + PICK_ORDER[i];
+			int c = col + PICK_ORDER[i+1];
+			if (r < 0 || c < 0 || r >= tiles.length || c >= tiles[0].length)
+				continue;
+
+			RenderUtil.convertCoordsToIso(c, r, layer, direction, pickVector);
+			if (RenderUtil.isInTile(x - (pickVector.getXAsInt() - fTileW/2), y - (pickVector.getYAsInt() - fTileH/2)))
+				return tiles[r][c].isWalkable() ? tiles[r][c] : null;
+		}
+		return null;
 	}
 
 
-	private void renderWorldIso(int cx, int cy){
+	private void renderWorldIso(int cx, int cy, RenderSnapshot snapshot, float alpha){
 		World world = game.getWorld();
 		boolean isTransparent = false;
 		boolean drawLayer = true;
 		Layer[] layers = world.getLayers();
+		if (drawLists == null || drawLists.length != layers.length)
+		{
+			drawLists = new DrawList[layers.length];
+			for (int i = 0; i < layers.length; i++)
+				drawLists[i] = new DrawList();
+		}
 		if(drawLayer){
 			for(int layerCount = 0; layerCount < layers.length; layerCount++){
 
 
-				Tile[][] tiles = layers[layerCount].getTiles();
-
 				//TODO this must be changed when camera views are implemented.
 				//if(tile above the player with respect to the isometric view, 
 				//ie. the tile(s) obscuring view of the player, is not an invisible tile, make this entire layer transparent.
 				//and dont draw any subsequent layers.
 
-
-
+
+
 				if(isTransparent){
-					drawTiles(cx,cy,tiles, layerCount, floorImagesTrans, wallImagesTrans);
+					terrainCache.draw(snapshot, worldImage, graphics, canvasSize, cx, cy, layerCount, true);
 					drawLayer = false;
 				}
 				else{
-					drawTiles(cx,cy,tiles, layerCount, floorImages, wallImages);
+					terrainCache.draw(snapshot, worldImage, graphics, canvasSize, cx, cy, layerCount, false);
 				}
 
 
-				//TODO
-				//Draw players on this layer
-
-				for (AbstractEntity entity: world.getEntityFactory().getEntities())
+				//Draw the players and items on this layer that are on screen, from back to front
+				DrawList drawList = drawLists[layerCount];
+				drawList.build(snapshot.getEntities(layerCount), alpha, layerCount, snapshot.getDirection(), cx, cy, canvasSize, fTileW, fTileH);
+				for (int i = 0; i < drawList.size(); i++)
 				{
-					if (!entity.isAlive())
-						continue;
-
-					if (entity.getEntityType() == EntityType.CHARACTER)
+					if (drawList.get(i).getType() == EntityType.CHARACTER)
 					{
-						if(layerCount == entity.getCurrentLayer().getLayerNumber()){
-							playerRenderer.redrawPlayer(cx,cy,(Character)entity,graphics, fTileW, fTileH);
-						}
+						playerRenderer.redrawPlayer(drawList.getX(i),drawList.getY(i),drawList.get(i),graphics);
 					}
-					else if (entity.getEntityType() == EntityType.OBJECT)
+					else
 					{
-						if(layerCount == entity.getCurrentLayer().getLayerNumber()){
-							//playerRenderer.redrawPlayer(cx,cy,(Character)entity,graphics, fTileW, fTileH);
-						}
-					}
-				}
-
-				//TODO
-				//Draw items on this layer
-				for (Item item: world.getItemFactory().getEntities()){
-					if (!item.isOnGround() || !item.isAlive())
-						continue;
-
-					if(layerCount == item.getCurrentLayer().getLayerNumber()){
-						itemRenderer.redrawPlayer(cx,cy,item,graphics, fTileW, fTileH);
+						itemRenderer.redrawPlayer(drawList.getX(i),drawList.getY(i),drawList.get(i),graphics);
 					}
 				}
 
 				//Check if the next layer should be transparent
-				for (Player player: world.getPlayerFactory().getEntities()){
-					if(player.getPlayerType() == PlayerType.HUMAN &&  RenderUtil.isObscured(player, world)){
-						isTransparent = true;
-						break;
-					}
-				}
-				drawFloorShades(cx,cy,tiles, layerCount);
+				isTransparent = snapshot.isObscured();
+				lightOverlay.draw(snapshot, worldImage, cx, cy, layerCount);
 			}
 
 			
 			
-			for (AbstractEntity entity: world.getEntityFactory().getEntities())
+			for (DrawList drawList: drawLists)
 			{
-				if (entity.getEntityType() == EntityType.CHARACTER)
+				for (int i = 0; i < drawList.size(); i++)
 				{
-					playerRenderer.drawInfo(cx,cy,(Character)entity,graphics, fTileW, fTileH);
+					if (drawList.get(i).getType() == EntityType.CHARACTER)
+					{
+						playerRenderer.drawInfo(drawList.getX(i),drawList.getY(i),drawList.get(i),graphics);
+					}
 				}
 			}
 		}
@@ -301,7 +381,7 @@ public class WorldRenderer
 		int width = 400;
 		int height = width/2;
 
-		radarImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		radarImg = RenderUtil.createCompatibleImage(width, height);
 
 		Graphics2D g = (Graphics2D)radarImg.getGraphics();
 		g.setColor(new Color(0, 0.5f, 0.6f, 0.3f));
@@ -312,7 +392,7 @@ public class WorldRenderer
 		}		
 
 		int iconSize = 10;
-		radarIcon = new BufferedImage(iconSize, iconSize, BufferedImage.TYPE_INT_ARGB);
+		radarIcon = RenderUtil.createCompatibleImage(iconSize, iconSize);
 		g = (Graphics2D)radarIcon.getGraphics();
 		g.setColor(new Color(1, 0.7f, 0, 0.3f));
 		g.fillOval(0, 0, iconSize, iconSize);
@@ -325,46 +405,43 @@ public class WorldRenderer
 	/**
 	 * 
 	 */
-	private void drawRadar(){
+	private void drawRadar(RenderSnapshot snapshot){
 
 		int x = (int)canvasSize.getWidth()/2  - (int)radarImg.getWidth()/2;
 		int y = (int)canvasSize.getHeight()/2  - (int)radarImg.getHeight()/2;
 		graphics.drawImage(radarImg, x, y, null);
 
-		Set<DragonBall> balls = game.getWorld().getDragonRadar().getBalls();
 		//		Tile ptile = game.getWorld().getHumanPlayer().getCurrentTile();
-		for(DragonBall b : balls){
-			if(b.isOnGround()){
-				int colPlayer = (int)((game.getWorld().getHumanPlayer().getPosition().getX())/game.getWorld().getTileWidth());
-				int rowPlayer = (int)((game.getWorld().getHumanPlayer().getPosition().getY())/game.getWorld().getTileHeight());;
+		for(int b = 0; b < snapshot.getNumBalls(); b++){
+			int colPlayer = snapshot.getPlayerCol();
+			int rowPlayer = snapshot.getPlayerRow();
 
-				int colBall = (int) (b.getPosition().getX()/game.getWorld().getTileWidth());
-				int rowBall = (int) (b.getPosition().getY()/game.getWorld().getTileHeight());
+			int colBall = snapshot.getBallCol(b);
+			int rowBall = snapshot.getBallRow(b);
 
-				RenderUtil.convertCoordsToIso(colBall, rowBall, game.getWorld().getHumanPlayer().getCurrentLayer().getLayerNumber(), game.getCamera(), vb);
-				RenderUtil.convertCoordsToIso(colPlayer, rowPlayer, game.getWorld().getHumanPlayer().getCurrentLayer().getLayerNumber(), game.getCamera(), vp);
+			RenderUtil.convertCoordsToIso(colBall, rowBall, snapshot.getPlayerLayer(), snapshot.getDirection(), vb);
+			RenderUtil.convertCoordsToIso(colPlayer, rowPlayer, snapshot.getPlayerLayer(), snapshot.getDirection(), vp);
 
 
 
-				double theta = Math.atan2(vb.getY() -vp.getY(), vp.getX() - vb.getX())+Math.PI;
+			double theta = Math.atan2(vb.getY() -vp.getY(), vp.getX() - vb.getX())+Math.PI;
 
 
 
-				if(2*Math.pow(vb.getY() -vp.getY(), 2) + Math.pow(vb.getY() -vp.getY(), 2) >= (radarImg.getHeight()/2)){
-					//equation of required ellipse: x = r2*cosT        y =  rsineT 
+			if(2*Math.pow(vb.getY() -vp.getY(), 2) + Math.pow(vb.getY() -vp.getY(), 2) >= (radarImg.getHeight()/2)){
+				//equation of required ellipse: x = r2*cosT        y =  rsineT 
 
 
-					float maxDistance = (radarImg.getHeight()/2);
-					float distance = (float) Math.hypot(vp.getX() - vb.getX(), vb.getY() -vp.getY());
+				float maxDistance = (radarImg.getHeight()/2);
+				float distance = (float) Math.hypot(vp.getX() - vb.getX(), vb.getY() -vp.getY());
 
-					int r = (int)((radarImg.getHeight()/2));
+				int r = (int)((radarImg.getHeight()/2));
 
 
-					int xpos = (worldImage.getWidth()/2) + (int)(r*2*Math.cos(theta)) - radarIcon.getWidth() ;
-					int ypos = (worldImage.getHeight()/2) - (int)(r*Math.sin(theta)) ;
+				int xpos = (worldImage.getWidth()/2) + (int)(r*2*Math.cos(theta)) - radarIcon.getWidth() ;
+				int ypos = (worldImage.getHeight()/2) - (int)(r*Math.sin(theta)) ;
 
-					graphics.drawImage(radarIcon, xpos, ypos, null);
-				}
+				graphics.drawImage(radarIcon, xpos, ypos, null);
 			}
 
 		}
@@ -373,222 +450,15 @@ public class WorldRenderer
 	}
 
 
-	//for checking which tiles actually need to be rendered.
-	private int startRow = 0;
-	private int startCol = 0;
-	private int toRow = 0;
-	private int toCol = 0;
-	private Vector vector = new Vector(0, 0);
-
-	private void drawTiles(int cx, int cy, Tile[][] tiles, int layerCount, BufferedImage[] FI, BufferedImage[] WI){
-		graphics.setColor(new Color(1,0,1,0.4f));
-
-
-		setStartTo(tiles);
-
-
-		//		switch(game.getCamera().getDirection()){
-		//		case NORTH : rowC = -1; colC = -1; break;
-		//		case EAST : rowC = -1; colC = tiles[0].length; break;
-		//		case SOUTH : rowC = tiles.length; colC = tiles[0].length; break;
-		//		case WEST : rowC = tiles.length; colC = -1; break;
-		//		}
-
-		switch(game.getCamera().getDirection()){
-		case NORTH : rowC = startRow; colC = startCol; break;
-		case EAST : rowC = startRow; colC = toCol; break;
-		case SOUTH : rowC = toRow; colC = toCol; break;
-		case WEST : rowC = toRow; colC = startCol; break;
-		}
-
-
-		while(checkRowCon(tiles)){
-
-			while(checkColCon(tiles)){
-				if (rowC < 0 || rowC >= tiles.length || colC < 0 || colC >= tiles[0].length)
-					break;
-
-				Tile tile = tiles[rowC][colC];
-
-				BufferedImage image = FI[tile.getImageID()];
-
-
-				RenderUtil.convertCoordsToIso(colC, rowC, layerCount, game.getCamera(), vector);
-				int x = cx+vector.getXAsInt() - fTileW/2; //fTileW/2 added PLEASE leave in here   .... ok  ._.
-				int y = cy+vector.getYAsInt() - fTileH/2; //fTileH/2 added PLEASE leave in here
-				graphics.drawImage(image,x,y, null);
-
-				if(tile.isWalkable() && layerCount==0){
-					pickGraphics.drawImage(tile.getPickImage(), x,y,null);
-				}
-
-				//if(tile.getImageID() != 2 ){
-				if (tile.getType() == TileType.WALL)
-				{
-					int imgID = tile.getWallImageID(Direction.UP);
-
-
-					image = WI[imgID++];
-					y+=fTileH/2;
-
-					graphics.drawImage(image,x,y, null);
-
-					//					draw the shade on the left wall
-					graphics.drawImage(leftWallShades[(int)(tile.getLight()*(numShades-1))],x,y, null);
-					image = WI[imgID];
-					x+=wTileW;
-					//draw the shade on the right wall
-					graphics.drawImage(image,x,y, null);
-					graphics.drawImage(rightWallShades[(int)(tile.getLight()*(numShades-1))],x,y, null);
-				}
-
-			}
-			switch(game.getCamera().getDirection()){
-			case NORTH :colC = startCol; break;
-			case EAST :colC = toCol; break;
-			case SOUTH : colC = toCol; break;
-			case WEST : colC = startCol; break;
-			}
-
-
-		}
-
-	}
-
-
-	private void drawFloorShades(int cx, int cy, Tile[][] tiles, int layerCount){
-		graphics.setColor(new Color(1,0,1,0.4f));
-
-
-		setStartTo(tiles);
-
-
-		switch(game.getCamera().getDirection()){
-		case NORTH : rowC = startRow; colC = startCol; break;
-		case EAST : rowC = startRow; colC = toCol; break;
-		case SOUTH : rowC = toRow; colC = toCol; break;
-		case WEST : rowC = toRow; colC = startCol; break;
-		}
-
-
-		while(checkRowCon(tiles)){
-
-			while(checkColCon(tiles)){
-				if (rowC < 0 || rowC >= tiles.length || colC < 0 || colC >= tiles[0].length)
-					break;
-
-				Tile tile = tiles[rowC][colC];
-
-				RenderUtil.convertCoordsToIso(colC, rowC, layerCount, game.getCamera(), vector);
-				int x = cx+vector.getXAsInt() - fTileW/2; //fTileW/2 added PLEASE leave in here   .... ok  ._.
-				int y = cy+vector.getYAsInt() - fTileH/2; //fTileH/2 added PLEASE leave in here
-
-
-				if(tile.isVisible()){ 
-					graphics.drawImage(floorShades[(int)(tile.getLight()*(numShades-1))],x,y, null);
-
-				}
-
-
-			}
-			switch(game.getCamera().getDirection()){
-			case NORTH :colC = startCol; break;
-			case EAST :colC = toCol; break;
-			case SOUTH : colC = toCol; break;
-			case WEST : colC = startCol; break;
-			}
-
-
-		}
-
-	}
-
-
-	/**
-	 * sets fields indicating which rows and columns must be rendered
-	 */
-	private void setStartTo(Tile[][] tiles){
-		Tile t = game.getWorld().getHumanPlayer().getCurrentTile();
-		int middleX = t.getCol();
-		int middleY = t.getRow();
-
-		int width = canvasSize.width;
-
-		int ans = (int)((((width/2)/fTileW)+2)*1.7f);
-
-		ans = (int) Math.hypot(ans, ans);
-
-		startRow = Math.max(middleY-ans, -1);
-		startCol = Math.max(middleX-ans, -1);
-
-		toRow = Math.min(tiles.length, middleY + ans);
-		toCol = Math.min(tiles[0].length, middleX + ans);
-
-
-	}
-
-	private boolean checkRowCon(Tile[][] tiles){
-		switch(game.getCamera().getDirection()){
-
-		case NORTH : rowC++; return rowC < toRow;//tiles.length;
-		case EAST : rowC++; return rowC < toRow;//tiles.length;
-		case SOUTH : rowC--; return rowC >= startRow;//0;
-		case WEST : rowC--; return rowC >= startRow;//0;
-
-		}
-		return false;
-	}
-	private boolean checkColCon(Tile[][] tiles){
-		switch(game.getCamera().getDirection()){
-
-		case NORTH : colC++; return colC < toCol;//tiles[0].length;
-		case EAST : colC--; return colC >= startCol;//0;
-		case SOUTH : colC--; return colC >= startCol;//0;
-		case WEST : colC++; return colC < toCol;//tiles[0].length;
-
-		}
-		return false;
-
-	}
-
-
-	private void createTransparentImages(){
-
-		floorImagesTrans = new BufferedImage[floorImages.length];
-		wallImagesTrans = new BufferedImage[wallImages.length];
-		int count = 0;
-		for(BufferedImage img : floorImages){
-			BufferedImage transparentImage = new BufferedImage(fTileW, fTileH ,BufferedImage.TYPE_INT_ARGB);
-			Graphics2D transparentGraphics = transparentImage.createGraphics();
-			transparentGraphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.1f));
-			transparentGraphics.drawImage(img, 0,0,null);
-			floorImagesTrans[count++] = transparentImage;
-
-		}
-
-		count = 0;
-		for(BufferedImage img : wallImages){
-			BufferedImage transparentImage = new BufferedImage(wTileW, wTileH ,BufferedImage.TYPE_INT_ARGB);
-			Graphics2D transparentGraphics = transparentImage.createGraphics();
-			transparentGraphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.1f));
-			transparentGraphics.drawImage(img, 0,0,null);
-			wallImagesTrans[count++] = transparentImage;
-		}
-
-	}
-
 	private void generateShadowTiles(){
 
-		floorShades = new BufferedImage[numShades];
-		leftWallShades = new BufferedImage[numShades];
-		rightWallShades = new BufferedImage[numShades];
-		int wallC = 0;
+		//one black shape for each wall, made lighter as it is drawn
+		leftWallShade = atlas.add(RenderUtil.generateLeftWallImage(Color.black,fTileH,wTileW,wTileH));
+		rightWallShade = atlas.add(RenderUtil.generateRightWallImage(Color.black,fTileH,wTileW,wTileH));
+		shadeAlphas = new int[numShades];
 		for (int i = 0; i < numShades; i++){
 			float alpha = 1 - (float) i / numShades;
-			floorShades[i] = RenderUtil.generateIsoImage(new Color(0,0,0,alpha),fTileW,fTileH);
-			leftWallShades[wallC] = RenderUtil.generateLeftWallImage(new Color(0,0,0,alpha),fTileH,wTileW,wTileH);
-			rightWallShades[wallC++] = RenderUtil.generateRightWallImage(new Color(0,0,0,alpha),fTileH,wTileW,wTileH);
-
+			shadeAlphas[i] = new Color(0,0,0,alpha).getAlpha();
 		}
 	}
 
@@ -613,7 +483,7 @@ public class WorldRenderer
 			tileSet = ImageIO.read(new File("res/tilesets/"+tsl.getFloorTileSetImage()));
 
 			int numFloorImages = (tileSet.getHeight()/fTileH)*(tileSet.getWidth()/fTileW);
-			floorImages = new BufferedImage[numFloorImages];
+			floorFrames = new int[numFloorImages];
 
 
 
@@ -622,16 +492,13 @@ public class WorldRenderer
 				{
 
 
-					BufferedImage n = new BufferedImage(fTileW, fTileH, BufferedImage.TYPE_INT_ARGB);
-					Graphics2D g = n.createGraphics();
-					g.drawImage(tileSet,0, 0,fTileW, fTileH, c*fTileW, r*fTileH, fTileW*(c+1), (r+1)*fTileH, null);
-					floorImages[((tileSet.getHeight()/fTileH)*r) + c] = n;
+					floorFrames[((tileSet.getHeight()/fTileH)*r) + c] = atlas.add(tileSet, c*fTileW, r*fTileH, fTileW, fTileH);
 				}
 			}
 
 
 			int numWallImages = (tileSet.getHeight()/fTileH)*(tileSet.getWidth()/fTileW);
-			wallImages = new BufferedImage[numWallImages];
+			wallFrames = new int[numWallImages];
 
 			//load the wall tiles
 
@@ -641,11 +508,7 @@ public class WorldRenderer
 			{
 				for(int c = 0; c < tileSet.getWidth()/wTileW; c++)
 				{
-					BufferedImage n = new BufferedImage(wTileW, wTileH, BufferedImage.TYPE_INT_ARGB);
-					Graphics2D g = n.createGraphics();
-					g.drawImage(tileSet,0, 0,wTileW, wTileH, c*wTileW, r*wTileH, wTileW*(c+1), (r+1)*wTileH, null);
-
-					wallImages[((tileSet.getHeight()/wTileH)*r) + c] = n;
+					wallFrames[((tileSet.getHeight()/wTileH)*r) + c] = atlas.add(tileSet, c*wTileW, r*wTileH, wTileW, wTileH);
 				}
 			}
 
@@ -656,5 +519,34 @@ public class WorldRenderer
 	}
 
 
+
+	/**
+	 * @return how many images (chunks and animated tiles) the terrain took to draw in the last frame.
+	 */
+	public int getTerrainBlits()
+	{
+		return terrainCache.getBlits();
+	}
+
+	/**
+	 * @return how many terrain chunks had to be drawn into their images again for the last frame.
+	 */
+	public int getTerrainBaked()
+	{
+		return terrainCache.getBaked();
+	}
+
+	/**
+	 * @return how many characters and items were on screen in the last frame.
+	 */
+	public int getEntitiesDrawn()
+	{
+		int count = 0;
+		if (drawLists != null)
+		{
+			for (DrawList drawList: drawLists)
+				count += drawList.size();
+		}
+		return count;
+	}
 }
-
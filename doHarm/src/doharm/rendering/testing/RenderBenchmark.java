@@ -0,0 +1,193 @@
+package doharm.rendering.testing;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import doharm.logic.AbstractGame;
+import doharm.logic.camera.Camera;
+import doharm.logic.camera.CameraDirection;
+import doharm.logic.testing.Benchmark;
+import doharm.logic.world.World;
+import doharm.net.NetworkMode;
+import doharm.rendering.WorldRenderer;
+
+/**
+ * Measures how long WorldRenderer.redraw() takes, without a window, so changes made to the renderer
+ * can be compared against what was there before.
+ *
+ * For every world in res/worlds, every camera direction and a few window sizes, the camera is moved
+ * along the same path (corner to corner through the middle of the world) while the game runs,
+ * and each frame is timed on its own. The report has the percentiles of the frame times,
+ * how many images the terrain took to draw and how many chunks had to be made again,
+ * how many characters and items were drawn, and how much each frame allocated.
+ *
+ * Run from the project directory (so that res/ can be found), optionally with where to write the report
+ * (a CSV file, render-benchmark.csv by default) and the names of the worlds to use.
+ * Run it with the same -Ddoharm options as the game to measure them, eg. -Ddoharm.stripRaster=true.
+ * @author Roland
+ */
+public class RenderBenchmark
+{
+	private static final String REPORT = "render-benchmark.csv";
+	private static final int[][] SIZES = {{800, 600}, {1920, 1080}};
+	private static final int WARMUP_TICKS = 100; //let everything spawn
+	private static final int WARMUP_FRAMES = 50;
+	private static final int FRAMES = 200; //along each path
+	private static final String HEADER = "world,direction,width,height,terrain,frames,mean_us,p50_us,p90_us,p99_us,max_us," +
+			"terrain_blits,chunks_baked,entities,bytes_per_frame";
+
+	public static void main(String[] args) throws FileNotFoundException
+	{
+		String report = args.length > 0 ? args[0] : REPORT;
+		List<String> worldNames = new ArrayList<String>();
+		for (int i = 1; i < args.length; i++)
+			worldNames.add(args[i]);
+		if (worldNames.isEmpty())
+			worldNames = findWorlds();
+
+		//headless unless asked otherwise, the frames are never shown
+		if (System.getProperty("java.awt.headless") == null)
+			System.setProperty("java.awt.headless", "true");
+		String terrain = Boolean.getBoolean("doharm.stripRaster") ? "strips" : "java2d";
+
+		PrintWriter out = new PrintWriter(report);
+		out.println(HEADER);
+		for (String worldName: worldNames)
+		{
+			AbstractGame game = new AbstractGame(NetworkMode.OFFLINE, worldName){};
+			for (int i = 0; i < WARMUP_TICKS; i++)
+				game.run();
+			WorldRenderer renderer = new WorldRenderer(game);
+
+			for (int[] size: SIZES)
+			{
+				Dimension dimension = new Dimension(size[0], size[1]);
+				for (CameraDirection direction: CameraDirection.values())
+				{
+					Result result = measure(game, renderer, dimension, direction);
+					String line = worldName + "," + direction + "," + size[0] + "," + size[1] + "," + terrain + "," + result;
+					out.println(line);
+					out.flush();
+					System.out.println(line);
+				}
+			}
+		}
+		out.close();
+		System.out.println("Written to " + new File(report).getAbsolutePath());
+	}
+
+	/**
+	 * @return the worlds in res/worlds, in order of name.
+	 */
+	private static List<String> findWorlds()
+	{
+		List<String> worldNames = new ArrayList<String>();
+		File[] files = new File("res/worlds").listFiles();
+		if (files != null)
+		{
+			Arrays.sort(files);
+			for (File file: files)
+			{
+				if (new File(file, "world.txt").exists())
+					worldNames.add(file.getName());
+			}
+		}
+		return worldNames;
+	}
+
+	/**
+	 * Draw frames with the camera going from the top left corner of the world to the bottom right.
+	 */
+	private static Result measure(AbstractGame game, WorldRenderer renderer, Dimension size, CameraDirection direction)
+	{
+		Camera camera = game.getCamera();
+		while (camera.getDirection() != direction)
+			camera.turnRight();
+
+		World world = game.getWorld();
+		float width = world.getNumCols()*world.getTileWidth();
+		float height = world.getNumRows()*world.getTileHeight();
+
+		Result result = new Result(FRAMES);
+		for (int i = -WARMUP_FRAMES; i < FRAMES; i++)
+		{
+			//the game keeps running, so things move about, but the camera follows the path instead of the player
+			game.run();
+			float along = Math.max(0, i) / (float)(FRAMES-1);
+			camera.setPosition(along*width, along*height);
+			game.publishRenderSnapshot();
+
+			long bytesBefore = Benchmark.getAllocatedBytes();
+			long start = System.nanoTime();
+			renderer.redraw(size, start);
+			long nanos = System.nanoTime() - start;
+			long bytes = Benchmark.getAllocatedBytes() - bytesBefore;
+
+			if (i >= 0)
+				result.add(nanos, bytesBefore < 0 ? -1 : bytes, renderer.getTerrainBlits(), renderer.getTerrainBaked(),
+						renderer.getEntitiesDrawn());
+		}
+		return result;
+	}
+
+	/**
+	 * The frames drawn along one path.
+	 */
+	private static class Result
+	{
+		private int frames;
+		private long[] nanos;
+		private long bytes;
+		private long blits;
+		private long baked;
+		private long entities;
+
+		private Result(int capacity)
+		{
+			nanos = new long[capacity];
+		}
+
+		private void add(long frameNanos, long frameBytes, int frameBlits, int frameBaked, int frameEntities)
+		{
+			nanos[frames++] = frameNanos;
+			bytes = bytes < 0 || frameBytes < 0 ? -1 : bytes + frameBytes;
+			blits += frameBlits;
+			baked += frameBaked;
+			entities += frameEntities;
+		}
+
+		/**
+		 * @return the nanoseconds that the given fraction of frames took no longer than.
+		 */
+		private long getPercentile(long[] sorted, double fraction)
+		{
+			int index = (int)Math.ceil(fraction*frames) - 1;
+			return sorted[Math.max(0, Math.min(frames-1, index))];
+		}
+
+		/**
+		 * @return the columns of the report after the world, direction, size and terrain.
+		 */
+		@Override
+		public String toString()
+		{
+			long[] sorted = Arrays.copyOf(nanos, frames);
+			Arrays.sort(sorted);
+			long total = 0;
+			for (long frameNanos: sorted)
+				total += frameNanos;
+
+			//always with a . so it stays a CSV
+			return String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%.1f,%.2f,%.1f,%d", frames, total/frames/1000,
+					getPercentile(sorted, 0.5)/1000, getPercentile(sorted, 0.9)/1000, getPercentile(sorted, 0.99)/1000,
+					sorted[frames-1]/1000, (double)blits/frames, (double)baked/frames, (double)entities/frames,
+					bytes < 0 ? -1 : bytes/frames);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package doharm.rendering.testing;
+
+import java.awt.Dimension;
+
+import doharm.logic.AbstractGame;
+import doharm.logic.testing.Benchmark;
+import doharm.net.NetworkMode;
+import doharm.rendering.StripRasterizer;
+import doharm.rendering.WorldRenderer;
+
+/**
+ * Compares drawing whole frames with the terrain drawn by Java2D against drawing it with a StripRasterizer,
+ * at a few big window sizes, where there are the most pixels to share out between threads.
+ *
+ * The game isn't run while measuring, so both draw exactly the same frame.
+ * Run from the project directory (so that res/ can be found), optionally with the number of threads
+ * for the rasterizer (see -Ddoharm.rasterThreads).
+ * @author Roland
+ */
+public class TerrainBenchmark
+{
+	private static final int[][] SIZES = {{1280, 720}, {1920, 1080}, {2560, 1440}};
+	private static final int TICKS = 100; //let everything spawn and the camera find the player
+	private static final int WARMUP_FRAMES = 50;
+	private static final int FRAMES = 200;
+
+	public static void main(String[] args)
+	{
+		StripRasterizer rasterizer = args.length > 0 ? new StripRasterizer(Integer.parseInt(args[0])) : new StripRasterizer();
+
+		AbstractGame game = new AbstractGame(NetworkMode.OFFLINE){};
+		for (int i = 0; i < TICKS; i++)
+			game.run();
+
+		final WorldRenderer java2D = new WorldRenderer(game, null);
+		final WorldRenderer strips = new WorldRenderer(game, rasterizer);
+		for (int[] size: SIZES)
+		{
+			final Dimension dimension = new Dimension(size[0], size[1]);
+			Benchmark.Result before = new Benchmark("java2d " + size[0] + "x" + size[1])
+			{
+				@Override
+				protected void runOperation(int i)
+				{
+					java2D.redraw(dimension);
+				}
+			}.measure(WARMUP_FRAMES, FRAMES);
+			Benchmark.Result after = new Benchmark("strips(" + rasterizer.getNumThreads() + ") " + size[0] + "x" + size[1])
+			{
+				@Override
+				protected void runOperation(int i)
+				{
+					strips.redraw(dimension);
+				}
+			}.measure(WARMUP_FRAMES, FRAMES);
+			System.out.printf("%.2fx%n", after.getOperationsPerSecond() / before.getOperationsPerSecond());
+		}
+	}
+}
@@ -3,16 +3,31 @@ package doharm.storage;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Scanner;
 
 
+/**
+ * The tile IDs of one layer, one byte per tile (0-255), row after row.
+ * For a binary world (see WorldLoader) they are read straight out of the file, otherwise they are in memory.
+ */
 public class LayerData 
 {
-	private byte[][] tileIDs;
+	private ByteBuffer tileIDs;
+	private int numTilesX;
 	
 	public LayerData(WorldLoader worldLoader)
 	{
-		tileIDs = new byte[worldLoader.getNumTilesY()][worldLoader.getNumTilesX()];
+		this(worldLoader, ByteBuffer.allocate(worldLoader.getNumTilesX()*worldLoader.getNumTilesY()));
+	}
+	
+	/**
+	 * @param tileIDs numTilesX*numTilesY IDs, starting at position 0.
+	 */
+	public LayerData(WorldLoader worldLoader, ByteBuffer tileIDs)
+	{
+		this.tileIDs = tileIDs;
+		numTilesX = worldLoader.getNumTilesX();
 	}
 	
 	/**
@@ -34,29 +49,29 @@ public class LayerData
 				{
 					if (r == 0 || c == 0 || r == worldLoader.getNumTilesY()-1 || c == worldLoader.getNumTilesX()-1)
 					{
-						tileIDs[r][c] = 0;
+						setTileID(r, c, 0);
 						continue;
 					}
 					else
-						tileIDs[r][c] = 1;
+						setTileID(r, c, 1);
 					
 				}
 				else
 				{
 					if (worldLoader.getLayerData(layerNumber-1).getTileID(r, c) == 2)
 					{
-						tileIDs[r][c] = 2;
+						setTileID(r, c, 2);
 						continue;
 					}
 					double v = (1+Math.cos(r+c + r*c*Math.sin(c+r*c+c*r*r))/Math.PI)/2; //Math.random();
 					if (v < 0.5f)
-						tileIDs[r][c] = 2;
+						setTileID(r, c, 2);
 					else if (v < 0.8f)
-						tileIDs[r][c] = 1;
+						setTileID(r, c, 1);
 					else if (v < 0.9f)
-						tileIDs[r][c] = 3;
+						setTileID(r, c, 3);
 					else
-						tileIDs[r][c] = 0;
+						setTileID(r, c, 0);
 					
 				}
 			}
@@ -77,10 +92,10 @@ public class LayerData
 			for (int c = 0; c < worldLoader.getNumTilesX(); c++)
 			{
 				int read = line.charAt(c);
-				byte id = (byte) (read - '0');
+				int id = read - '0';
 				
 				
-				tileIDs[r][c] = id;
+				setTileID(r, c, id);
 			}
 		}
 		
@@ -90,7 +105,11 @@ public class LayerData
 	
 
 	public int getTileID(int y, int x) {
-		return tileIDs[y][x];
+		return tileIDs.get(y*numTilesX + x) & 0xFF;
+	}
+	
+	private void setTileID(int y, int x, int id) {
+		tileIDs.put(y*numTilesX + x, (byte)id);
 	}
 	
 }
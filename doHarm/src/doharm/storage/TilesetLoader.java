@@ -106,6 +106,10 @@ public class TilesetLoader
 	{
 		return Collections.unmodifiableList(wallTileData);
 	}
+	public List<RampTileData> getRampTileData()
+	{
+		return Collections.unmodifiableList(rampTileData);
+	}
 
 	
 	
@@ -153,5 +157,28 @@ public class TilesetLoader
 		return wallTileData.size();
 	}
 	
+	public RampTileData getRampTileData(int tileID) 
+	{
+		return rampTileData.get(tileID);
+	}
+	
+	/**
+	 * A RAMP floor tile uses the ramp with the same name.
+	 * @return the ramp with this name, or null if there isn't one.
+	 */
+	public RampTileData getRampTileData(String name) 
+	{
+		for (RampTileData data: rampTileData)
+		{
+			if (data.getName().equals(name))
+				return data;
+		}
+		return null;
+	}
+	
+	public int getNumRampTiles(){
+		return rampTileData.size();
+	}
+	
 	
 }
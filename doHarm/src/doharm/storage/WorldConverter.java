@@ -0,0 +1,150 @@
+package doharm.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a world's world.bin (see WorldLoader) from its text files, so it loads faster.
+ * The layers are written as they are, so they can be used straight from the file without being copied into memory.
+ * With -rle they are run-length encoded instead (if that makes them smaller), which makes the file much smaller
+ * but means they have to be decoded into memory when loaded.
+ *
+ * Run from the project directory (so that res/ can be found), optionally with -rle, and with the names of the worlds
+ * to convert, or none to convert every world in res/worlds. The text files are kept, and if they are changed afterwards
+ * (eg. by the editor) they are loaded instead until the world is converted again.
+ * @author Roland
+ */
+public class WorldConverter
+{
+	public static void main(String[] args) throws IOException
+	{
+		boolean rle = false;
+		List<String> worldNames = new ArrayList<String>();
+		for (String arg: args)
+		{
+			if (arg.equals("-rle"))
+				rle = true;
+			else
+				worldNames.add(arg);
+		}
+
+		if (worldNames.isEmpty())
+		{
+			File[] files = new File("res/worlds").listFiles();
+			if (files == null)
+				return;
+			for (File file: files)
+			{
+				if (new File(file, "world.txt").exists())
+					worldNames.add(file.getName());
+			}
+		}
+		for (String worldName: worldNames)
+			convert(worldName, rle);
+	}
+
+	/**
+	 * Write res/worlds/worldName/world.bin from world.txt and its layers.
+	 * @param rle whether to run-length encode the layers.
+	 */
+	public static void convert(String worldName, boolean rle) throws IOException
+	{
+		File binary = new File("res/worlds/" + worldName + "/" + WorldLoader.BINARY_FILE);
+		if (!new File("res/worlds/" + worldName + "/world.txt").exists())
+			throw new IOException("There is no world.txt for " + worldName);
+		if (binary.exists() && !binary.delete()) //otherwise it would be loaded instead of the text
+			throw new IOException("Can't replace " + binary);
+		WorldLoader loader = new WorldLoader(worldName);
+
+		File temp = new File(binary.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try
+		{
+			write(loader, out, rle);
+		}
+		finally
+		{
+			out.close();
+		}
+		if (!temp.renameTo(binary))
+			throw new IOException("Can't write " + binary);
+
+		long textSize = new File("res/worlds/" + worldName + "/world.txt").length();
+		File[] layerFiles = new File("res/worlds/" + worldName + "/layers").listFiles();
+		if (layerFiles != null)
+		{
+			for (File layerFile: layerFiles)
+				textSize += layerFile.length();
+		}
+		System.out.println(worldName + ": " + loader.getNumLayers() + " layers of " + loader.getNumTilesX() + "x" +
+				loader.getNumTilesY() + ", " + textSize + " bytes of text -> " + binary.length() + " bytes");
+	}
+
+	public static void write(WorldLoader loader, DataOutputStream out, boolean rle) throws IOException
+	{
+		out.writeInt(WorldLoader.MAGIC);
+		out.writeInt(WorldLoader.VERSION);
+		out.writeInt(loader.getNumTilesX());
+		out.writeInt(loader.getNumTilesY());
+		out.writeInt(loader.getNumLayers());
+		byte[] name = loader.getTilesetName().getBytes("UTF-8");
+		out.writeShort(name.length);
+		out.write(name);
+
+		for (int layer = 0; layer < loader.getNumLayers(); layer++)
+		{
+			LayerData layerData = loader.getLayerData(layer);
+			byte[] raw = new byte[loader.getNumTilesX()*loader.getNumTilesY()];
+			int i = 0;
+			for (int y = 0; y < loader.getNumTilesY(); y++)
+			{
+				for (int x = 0; x < loader.getNumTilesX(); x++)
+				{
+					int id = layerData.getTileID(y, x);
+					if (id < 0 || id > 0xFF)
+						throw new IOException("Tile ID " + id + " on layer " + layer + " doesn't fit in a byte");
+					raw[i++] = (byte)id;
+				}
+			}
+
+			byte[] encoded = rle ? encodeRLE(raw) : null;
+			if (encoded != null && encoded.length < raw.length)
+			{
+				out.writeByte(WorldLoader.RLE_LAYER);
+				out.writeInt(encoded.length);
+				out.write(encoded);
+			}
+			else
+			{
+				out.writeByte(WorldLoader.RAW_LAYER);
+				out.writeInt(raw.length);
+				out.write(raw);
+			}
+		}
+	}
+
+	/**
+	 * @return the tile IDs as (count, tile ID) pairs.
+	 */
+	private static byte[] encodeRLE(byte[] tileIDs)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int i = 0;
+		while (i < tileIDs.length)
+		{
+			int count = 1;
+			while (i + count < tileIDs.length && count < 0xFF && tileIDs[i + count] == tileIDs[i])
+				count++;
+			out.write(count);
+			out.write(tileIDs[i]);
+			i += count;
+		}
+		return out.toByteArray();
+	}
+}
@@ -1,25 +1,68 @@
 package doharm.storage;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
 
+/**
+ * Loads a world from res/worlds, either from world.txt and its layer files, or from world.bin
+ * (made from them by WorldConverter) if there is one that is at least as new as world.txt.
+ *
+ * world.bin is big-endian:
+ * MAGIC, VERSION (int), numTilesX, numTilesY, number of layers (ints), the tileset's file name
+ * (a short length then that many UTF-8 bytes), then for each layer RAW_LAYER or RLE_LAYER (a byte),
+ * the length of its data (int) and the data. A RAW_LAYER is one byte per tile, row after row,
+ * and a RLE_LAYER is the same but as (count, tile ID) byte pairs, the count from 1 to 255.
+ * The file is mapped into memory rather than read, so raw layers are used straight from it.
+ */
 public class WorldLoader 
 {
+	public static final String BINARY_FILE = "world.bin";
+	public static final int MAGIC = 0x44485744; //"DHWD"
+	public static final int VERSION = 1;
+	public static final byte RAW_LAYER = 0;
+	public static final byte RLE_LAYER = 1;
+	
 	private int numTilesX;
 	private int numTilesY;
 	private String worldDirectory;
+	private String tilesetName;
 	
 	private TilesetLoader tilesetLoader;
 	private List<LayerData> layers;
 
 	public WorldLoader(String worldDirectory) throws IOException
 	{
-		Scanner scanner = new Scanner(new File("res/worlds/"+worldDirectory+"/world.txt"));
+		this.worldDirectory = worldDirectory;
+		File text = new File("res/worlds/"+worldDirectory+"/world.txt");
+		File binary = new File("res/worlds/"+worldDirectory+"/"+BINARY_FILE);
+		if (binary.exists() && (!text.exists() || binary.lastModified() >= text.lastModified()))
+			loadBinary(binary);
+		else
+			loadText(text);
+	}
+	
+	/**
+	 * Load a world.bin from anywhere, eg. one just written by WorldConverter.
+	 */
+	public WorldLoader(File binary) throws IOException
+	{
+		this.worldDirectory = binary.getAbsoluteFile().getParentFile().getName();
+		loadBinary(binary);
+	}
+	
+	private void loadText(File file) throws IOException
+	{
+		Scanner scanner = new Scanner(file);
 		
 		boolean generate = false;
 		
@@ -27,6 +70,7 @@ public class WorldLoader
 		numTilesX = scanner.nextInt();
 		numTilesY = scanner.nextInt();
 		String tileset = scanner.next();
+		tilesetName = tileset;
 		
 		
 		if (generate)
@@ -39,7 +83,6 @@ public class WorldLoader
 		
 		
 		
-		this.worldDirectory = worldDirectory;
 		layers = new ArrayList<LayerData>();
 		
 		if (!generate)
@@ -61,6 +104,103 @@ public class WorldLoader
 		
 		tilesetLoader = new TilesetLoader(tileset);
 	}
+	
+	private void loadBinary(File file) throws IOException
+	{
+		ByteBuffer buffer;
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			FileChannel channel = in.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			in.close(); //the mapping stays
+		}
+		
+		if (buffer.remaining() < 4 || buffer.getInt() != MAGIC)
+			throw new IOException(file + " is not a world");
+		try
+		{
+			readBinary(buffer, file);
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException(file + " is cut short");
+		}
+	}
+	
+	/**
+	 * Read everything after MAGIC.
+	 */
+	private void readBinary(ByteBuffer buffer, File file) throws IOException
+	{
+		int version = buffer.getInt();
+		if (version != VERSION)
+			throw new IOException(file + " is version " + version + ", only version " + VERSION + " can be read");
+		
+		numTilesX = buffer.getInt();
+		numTilesY = buffer.getInt();
+		int numLayers = buffer.getInt();
+		if (numTilesX <= 0 || numTilesY <= 0 || numLayers < 0)
+			throw new IOException(file + " has a broken header");
+		byte[] name = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(name);
+		String tileset = new String(name, "UTF-8");
+		tilesetName = tileset;
+		
+		int layerSize = numTilesX*numTilesY;
+		layers = new ArrayList<LayerData>();
+		for (int layer = 0; layer < numLayers; layer++)
+		{
+			byte encoding = buffer.get();
+			int length = buffer.getInt();
+			if (length < 0 || length > buffer.remaining())
+				throw new IOException(file + " is cut short");
+			ByteBuffer data = buffer.slice();
+			data.limit(length);
+			buffer.position(buffer.position() + length);
+			
+			if (encoding == RAW_LAYER && length == layerSize)
+				layers.add(new LayerData(this, data));
+			else if (encoding == RLE_LAYER)
+				layers.add(new LayerData(this, decodeRLE(data, layerSize, file)));
+			else
+				throw new IOException(file + " has a broken layer " + layer);
+		}
+		
+		tilesetLoader = new TilesetLoader(tileset);
+	}
+	
+	/**
+	 * @return the tile IDs from (count, tile ID) pairs.
+	 */
+	private static ByteBuffer decodeRLE(ByteBuffer data, int layerSize, File file) throws IOException
+	{
+		byte[] tileIDs = new byte[layerSize];
+		int i = 0;
+		while (data.remaining() >= 2)
+		{
+			int count = data.get() & 0xFF;
+			byte id = data.get();
+			if (i + count > layerSize)
+				throw new IOException(file + " has a broken layer");
+			for (int end = i + count; i < end; i++)
+				tileIDs[i] = id;
+		}
+		if (i != layerSize)
+			throw new IOException(file + " has a broken layer");
+		return ByteBuffer.wrap(tileIDs);
+	}
+	
+	/**
+	 * @return the name of the tileset file, as it is written in the world file.
+	 */
+	public String getTilesetName()
+	{
+		return tilesetName;
+	}
 
 	public int getNumTilesX() 
 	{
@@ -0,0 +1,117 @@
+package doharm.storage.testing;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import doharm.storage.WorldConverter;
+import doharm.storage.WorldLoader;
+
+public class WorldLoaderTests {
+
+	@Test
+	public void worldsRaw() throws IOException
+	{
+		for (int i = 1; i <= 5; i++)
+			roundTrip("world" + i, false);
+	}
+	
+	@Test
+	public void worldsRLE() throws IOException
+	{
+		for (int i = 1; i <= 5; i++)
+			roundTrip("world" + i, true);
+	}
+	
+	@Test
+	public void truncatedWorld() throws IOException
+	{
+		byte[] whole = writeWorld(new WorldLoader("world1"), false);
+		int header = 4*5 + 2; //magic, version, size, layers, tileset name length
+		int[] lengths = {0, 2, 4, 6, 10, 14, header - 1, header + 1, whole.length/2, whole.length - 1};
+		for (int length: lengths)
+		{
+			File file = writeTemp(whole, length);
+			try
+			{
+				new WorldLoader(file);
+				fail("Loaded the first " + length + " of " + whole.length + " bytes");
+			}
+			catch (IOException e)
+			{
+				//expected
+			}
+			finally
+			{
+				file.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Write the world as world.bin, load it back and check every tile is the same.
+	 */
+	private void roundTrip(String worldName, boolean rle) throws IOException
+	{
+		WorldLoader text = new WorldLoader(worldName);
+		byte[] bytes = writeWorld(text, rle);
+		File file = writeTemp(bytes, bytes.length);
+		try
+		{
+			WorldLoader binary = new WorldLoader(file);
+			assertEquals(text.getNumTilesX(), binary.getNumTilesX());
+			assertEquals(text.getNumTilesY(), binary.getNumTilesY());
+			assertEquals(text.getNumLayers(), binary.getNumLayers());
+			assertEquals(text.getTilesetName(), binary.getTilesetName());
+			for (int layer = 0; layer < text.getNumLayers(); layer++)
+			{
+				for (int y = 0; y < text.getNumTilesY(); y++)
+				{
+					for (int x = 0; x < text.getNumTilesX(); x++)
+					{
+						assertEquals(worldName + " layer " + layer + " at " + x + "," + y,
+								text.getLayerData(layer).getTileID(y, x), binary.getLayerData(layer).getTileID(y, x));
+					}
+				}
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+	
+	private byte[] writeWorld(WorldLoader loader, boolean rle) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		WorldConverter.write(loader, out, rle);
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * @return a temporary file with the first length bytes.
+	 */
+	private File writeTemp(byte[] bytes, int length) throws IOException
+	{
+		File file = File.createTempFile("world", ".bin");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(bytes, 0, length);
+		}
+		finally
+		{
+			out.close();
+		}
+		return file;
+	}
+}